@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.lemaik.renderservice.benchmarks;
+
+import de.lemaik.renderservice.renderer.util.FileUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes a task directory with {@link FileUtil#deleteDirectory}. Each invocation deletes a freshly created directory
+ * with many small files (e.g. region files) and a few large ones (e.g. the octree).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class DeleteDirectoryBenchmark {
+    @Param({"100", "10000"})
+    public int files;
+
+    @Param({"256"})
+    public int largeFileSizeMiB;
+
+    private Path taskDirectory;
+
+    @Setup(Level.Invocation)
+    public void createTaskDirectory() throws IOException {
+        taskDirectory = Files.createTempDirectory("task-");
+        Random random = new Random(42);
+        byte[] smallFile = new byte[4096];
+        random.nextBytes(smallFile);
+        for (int i = 0; i < files; i++) {
+            Path directory = taskDirectory.resolve("region-" + (i / 1000));
+            Files.createDirectories(directory);
+            Files.write(directory.resolve("r." + i + ".mca"), smallFile);
+        }
+        byte[] chunk = new byte[1024 * 1024];
+        random.nextBytes(chunk);
+        try (OutputStream out = Files.newOutputStream(taskDirectory.resolve("scene.octree2"))) {
+            for (int i = 0; i < largeFileSizeMiB; i++) {
+                out.write(chunk);
+            }
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void removeLeftovers() throws IOException {
+        if (Files.exists(taskDirectory)) {
+            FileUtil.deleteDirectory(taskDirectory);
+        }
+    }
+
+    @Benchmark
+    public void deleteDirectory() throws IOException {
+        FileUtil.deleteDirectory(taskDirectory);
+    }
+}
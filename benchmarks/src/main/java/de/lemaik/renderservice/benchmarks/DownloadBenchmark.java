@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.lemaik.renderservice.benchmarks;
+
+import de.lemaik.renderservice.renderer.rendering.RenderServerApiClient;
+import de.lemaik.renderservice.renderer.rendering.Task;
+import de.lemaik.renderservice.renderer.util.FileUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downloads an octree with {@link RenderServerApiClient#downloadOctree}, with and without range requests (i.e.
+ * segmented downloads). The scene file store is disabled, so every invocation downloads the whole file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DownloadBenchmark {
+    /**
+     * Size of the downloaded file, in MiB.
+     */
+    @Param({"1", "64", "256"})
+    public int sizeMiB;
+
+    /**
+     * Whether the server supports range requests, which enables segmented downloads.
+     */
+    @Param({"true", "false"})
+    public boolean ranges;
+
+    /**
+     * Number of segments to download in parallel, see the `chunkycloud.http.downloadSegments` property.
+     */
+    @Param({"4"})
+    public int segments;
+
+    private LocalServer server;
+    private RenderServerApiClient apiClient;
+    private Task task;
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = new LocalServer();
+        server.setRangesSupported(ranges);
+        byte[] content = new byte[sizeMiB * 1024 * 1024];
+        new Random(42).nextBytes(content);
+        String octreeUrl = server.serve("/scene.octree2", content);
+        task = Tasks.create(server.getUrl() + "/scene.json", octreeUrl);
+        directory = Files.createTempDirectory("download-benchmark");
+        System.setProperty("chunkycloud.http.downloadSegments", Integer.toString(segments));
+        // the local server doesn't send caching headers, so the HTTP cache never stores anything
+        apiClient = new RenderServerApiClient(server.getUrl(), "benchmark", directory.resolve("cache").toFile(), 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        server.close();
+        FileUtil.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public Object downloadOctree() throws Exception {
+        File file = directory.resolve("scene.octree2").toFile();
+        Object result = apiClient.downloadOctree(task, file).get();
+        file.delete();
+        return result;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.lemaik.renderservice.benchmarks;
+
+import com.lexicalscope.jewel.cli.Option;
+
+import java.io.File;
+
+/**
+ * Commandline arguments of the {@link ThroughputHarness}, parsed by {@link com.lexicalscope.jewel.cli.CliFactory}.
+ */
+public interface HarnessArguments {
+    @Option(longName = "duration",
+            description = "how long to run the node, in seconds",
+            defaultValue = "300")
+    int getDuration();
+
+    @Option(longName = "jobs",
+            description = "number of jobs, the node switches between them",
+            defaultValue = "2")
+    int getJobs();
+
+    @Option(longName = "width",
+            description = "image width of the generated scenes",
+            defaultValue = "400")
+    int getWidth();
+
+    @Option(longName = "height",
+            description = "image height of the generated scenes",
+            defaultValue = "300")
+    int getHeight();
+
+    @Option(longName = "tile-size",
+            description = "width and height of the tiles the jobs are split into",
+            defaultValue = "100")
+    int getTileSize();
+
+    @Option(longName = "spp",
+            description = "samples per pixel of every task",
+            defaultValue = "16")
+    int getSpp();
+
+    @Option(longName = "scene",
+            description = "directory with a Chunky scene (scene.json, scene.octree2) to use instead of generated scenes",
+            defaultToNull = true)
+    File getScene();
+
+    @Option(longName = "resource-pack",
+            description = "resource pack that every job uses",
+            defaultToNull = true)
+    File getResourcePack();
+
+    @Option(longName = "latency",
+            description = "latency added to every API response, in milliseconds",
+            defaultValue = "0")
+    long getLatency();
+
+    @Option(longName = "bandwidth",
+            description = "bandwidth of the API, in KiB/s (0 for no limit)",
+            defaultValue = "0")
+    long getBandwidth();
+
+    @Option(longName = "failure-rate",
+            description = "probability of an API request failing, from 0 to 1",
+            defaultValue = "0")
+    double getFailureRate();
+
+    @Option(longName = "work-directory",
+            description = "directory for the node's jobs and caches, a temporary directory by default",
+            defaultToNull = true)
+    File getWorkDirectory();
+}
@@ -0,0 +1,403 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.lemaik.renderservice.benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A local stand-in for the ChunkyCloud API, so that the node can be run and measured without the real API.
+ * <p>
+ * Every job is split into tiles and the tasks of all jobs are leased in rounds, so the server never runs out of
+ * tasks. Results are received and discarded. Latency, bandwidth limits and failures can be injected to see how the
+ * node copes with a slow or unreliable API.
+ */
+public class MockApiServer implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MockApiServer.class);
+    private static final Gson gson = new Gson();
+    private static final Pattern TASK_PATH = Pattern.compile("/nodes/me/tasks/(\\d+)/(progress|upload|finish)");
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+    private final List<JobTemplate> jobs = new ArrayList<>();
+    private final Deque<JsonObject> queue = new ArrayDeque<>();
+    private final Map<Integer, JsonObject> leased = new HashMap<>();
+    private int nextTaskId = 1;
+
+    private volatile long latencyMillis;
+    private volatile double failureRate;
+    private volatile Throttle throttle;
+
+    private final AtomicLong leasedTasks = new AtomicLong();
+    private final AtomicLong finishedTasks = new AtomicLong();
+    private final AtomicLong releasedTasks = new AtomicLong();
+    private final AtomicLong injectedFailures = new AtomicLong();
+    private final AtomicLong uploadedBytes = new AtomicLong();
+
+    public MockApiServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "Mock API server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public String getUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    /**
+     * Set the latency that is added to every response.
+     *
+     * @param latencyMillis latency, in milliseconds
+     */
+    public void setLatency(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * Set the bandwidth that all downloads and uploads share.
+     *
+     * @param bytesPerSecond bandwidth in bytes per second, or 0 for no limit
+     */
+    public void setBandwidth(long bytesPerSecond) {
+        this.throttle = bytesPerSecond > 0 ? new Throttle(bytesPerSecond) : null;
+    }
+
+    /**
+     * Set the probability of a request failing with a server error.
+     *
+     * @param failureRate probability, from 0 to 1
+     */
+    public void setFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+    }
+
+    /**
+     * Add a job.
+     *
+     * @param scene        scene description
+     * @param octree       octree
+     * @param emittergrid  emitter grid, or null if the scene has none
+     * @param resourcePack resource pack, or null if the job uses none
+     * @param width        image width
+     * @param height       image height
+     * @param tileSize     width and height of the tiles the job is split into
+     * @param spp          samples per pixel of every task
+     */
+    public synchronized void addJob(byte[] scene, byte[] octree, byte[] emittergrid, byte[] resourcePack,
+                                    int width, int height, int tileSize, int spp) {
+        String jobId = "job-" + (jobs.size() + 1);
+        JsonObject job = new JsonObject();
+        job.addProperty("id", jobId);
+        job.addProperty("width", width);
+        job.addProperty("height", height);
+
+        JsonObject jobFiles = new JsonObject();
+        jobFiles.add("scene", serveFile("/files/" + jobId + "/scene.json", scene));
+        jobFiles.add("octree", serveFile("/files/" + jobId + "/scene.octree2", octree));
+        if (emittergrid != null) {
+            jobFiles.add("emittergrid", serveFile("/files/" + jobId + "/scene.emittergrid", emittergrid));
+        }
+        JsonArray resourcePacks = new JsonArray();
+        if (resourcePack != null) {
+            JsonObject pack = serveFile("/resourcepacks/" + (jobs.size() + 1) + ".zip", resourcePack);
+            pack.addProperty("id", jobs.size() + 1);
+            resourcePacks.add(pack);
+        }
+        jobFiles.add("resourcePacks", resourcePacks);
+
+        List<JsonObject> tiles = new ArrayList<>();
+        for (int y = 0; y < height; y += tileSize) {
+            for (int x = 0; x < width; x += tileSize) {
+                JsonObject tile = new JsonObject();
+                tile.addProperty("x", x);
+                tile.addProperty("y", y);
+                tile.addProperty("width", Math.min(tileSize, width - x));
+                tile.addProperty("height", Math.min(tileSize, height - y));
+                tiles.add(tile);
+            }
+        }
+        jobs.add(new JobTemplate(job, jobFiles, tiles, spp));
+    }
+
+    public long getLeasedTasks() {
+        return leasedTasks.get();
+    }
+
+    public long getFinishedTasks() {
+        return finishedTasks.get();
+    }
+
+    public long getReleasedTasks() {
+        return releasedTasks.get();
+    }
+
+    public long getInjectedFailures() {
+        return injectedFailures.get();
+    }
+
+    public long getUploadedBytes() {
+        return uploadedBytes.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private JsonObject serveFile(String path, byte[] content) {
+        files.put(path, content);
+        JsonObject file = new JsonObject();
+        file.addProperty("url", getUrl() + path);
+        try {
+            file.addProperty("sha256",
+                    HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        return file;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            if (latencyMillis > 0) {
+                try {
+                    Thread.sleep(latencyMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            if (failureRate > 0 && !path.equals("/nodes/me/events")
+                    && ThreadLocalRandom.current().nextDouble() < failureRate) {
+                injectedFailures.incrementAndGet();
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            byte[] file = files.get(path);
+            if (file != null) {
+                LocalServer.send(exchange, file, true, throttle);
+                return;
+            }
+            Matcher taskPath = TASK_PATH.matcher(path);
+            if (path.equals("/nodes/me/tasks/next")) {
+                nextTasks(exchange);
+            } else if (path.equals("/nodes/me/tasks/release")) {
+                release(exchange);
+            } else if (taskPath.matches()) {
+                int taskId = Integer.parseInt(taskPath.group(1));
+                switch (taskPath.group(2)) {
+                    case "progress" -> exchange.sendResponseHeaders(200, -1);
+                    case "upload" -> uploadUrls(exchange, taskId);
+                    default -> finish(exchange, taskId);
+                }
+            } else if (path.startsWith("/uploads/")) {
+                receiveUpload(exchange);
+            } else {
+                // also used for the event stream, which makes the node rely on progress reports
+                exchange.sendResponseHeaders(404, -1);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Handling {} failed", exchange.getRequestURI(), e);
+        }
+    }
+
+    private void nextTasks(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        int count = Integer.parseInt(query.getOrDefault("count", "1"));
+        String preferredJob = query.get("job");
+        JsonArray tasks = new JsonArray();
+        synchronized (this) {
+            if (jobs.isEmpty()) {
+                exchange.sendResponseHeaders(204, -1);
+                return;
+            }
+            if (queue.isEmpty()) {
+                enqueueRound();
+            }
+            String jobId = preferredJob != null && queue.stream().anyMatch(t -> getJobId(t).equals(preferredJob))
+                    ? preferredJob
+                    : getJobId(queue.peekFirst());
+            for (Iterator<JsonObject> it = queue.iterator(); it.hasNext() && tasks.size() < count; ) {
+                JsonObject task = it.next();
+                if (getJobId(task).equals(jobId)) {
+                    it.remove();
+                    leased.put(task.get("id").getAsInt(), task);
+                    tasks.add(task);
+                }
+            }
+        }
+        leasedTasks.addAndGet(tasks.size());
+        sendJson(exchange, 200, count > 1 ? tasks : tasks.get(0));
+    }
+
+    private void release(HttpExchange exchange) throws IOException {
+        JsonObject body;
+        try (InputStreamReader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+            body = gson.fromJson(reader, JsonObject.class);
+        }
+        synchronized (this) {
+            for (JsonElement id : body.getAsJsonArray("tasks")) {
+                JsonObject task = leased.remove(id.getAsInt());
+                if (task != null) {
+                    queue.addFirst(task);
+                    releasedTasks.incrementAndGet();
+                }
+            }
+        }
+        exchange.sendResponseHeaders(200, -1);
+    }
+
+    private void uploadUrls(HttpExchange exchange, int taskId) throws IOException {
+        String dumpFormats = exchange.getRequestHeaders().getFirst("X-Dump-Formats");
+        JsonObject uploadUrls = new JsonObject();
+        uploadUrls.addProperty("image", getUrl() + "/uploads/" + taskId + "/image");
+        uploadUrls.addProperty("dump", getUrl() + "/uploads/" + taskId + "/dump");
+        if (dumpFormats != null) {
+            // accept the first compact format the node offers
+            for (String format : dumpFormats.split(",\\s*")) {
+                if (format.equals("ccdump") || format.equals("ccdump2")) {
+                    uploadUrls.addProperty("dumpFormat", format);
+                    break;
+                }
+            }
+        }
+        JsonObject response = new JsonObject();
+        response.add("uploadUrls", uploadUrls);
+        sendJson(exchange, 200, response);
+    }
+
+    private void receiveUpload(HttpExchange exchange) throws IOException {
+        Throttle throttle = this.throttle;
+        try (InputStream in = throttle != null
+                ? throttle.wrap(exchange.getRequestBody())
+                : exchange.getRequestBody()) {
+            uploadedBytes.addAndGet(in.transferTo(OutputStream.nullOutputStream()));
+        }
+        exchange.sendResponseHeaders(200, -1);
+    }
+
+    private void finish(HttpExchange exchange, int taskId) throws IOException {
+        synchronized (this) {
+            if (leased.remove(taskId) == null) {
+                sendJson(exchange, 404, new JsonObject());
+                return;
+            }
+        }
+        finishedTasks.incrementAndGet();
+        exchange.sendResponseHeaders(200, -1);
+    }
+
+    /**
+     * Queue one task for every tile of every job.
+     */
+    private void enqueueRound() {
+        for (JobTemplate job : jobs) {
+            for (JsonObject tile : job.tiles) {
+                JsonObject task = new JsonObject();
+                task.addProperty("id", nextTaskId++);
+                task.addProperty("spp", job.spp);
+                task.add("tile", tile);
+                task.add("files", job.files);
+                task.add("job", job.job);
+                queue.addLast(task);
+            }
+        }
+    }
+
+    private static String getJobId(JsonObject task) {
+        return task.getAsJsonObject("job").get("id").getAsString();
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> parameters = new HashMap<>();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                int separator = parameter.indexOf('=');
+                if (separator > 0) {
+                    parameters.put(URLDecoder.decode(parameter.substring(0, separator), StandardCharsets.UTF_8),
+                            URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return parameters;
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, JsonElement json) throws IOException {
+        byte[] body = gson.toJson(json).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static class JobTemplate {
+        private final JsonObject job;
+        private final JsonObject files;
+        private final List<JsonObject> tiles;
+        private final int spp;
+
+        private JobTemplate(JsonObject job, JsonObject files, List<JsonObject> tiles, int spp) {
+            this.job = job;
+            this.files = files;
+            this.tiles = tiles;
+            this.spp = spp;
+        }
+    }
+}
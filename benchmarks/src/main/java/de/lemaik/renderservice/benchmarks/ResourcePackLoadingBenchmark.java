@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.lemaik.renderservice.benchmarks;
+
+import de.lemaik.renderservice.renderer.util.FileUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import se.llbit.chunky.resources.ResourcePackLoader;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Loads a resource pack with {@link ResourcePackLoader#loadResourcePacks}, like the node does when a job uses
+ * different resource packs than the previous job.
+ * <p>
+ * By default, a synthetic pack with block textures of the given resolution is generated. A real pack can be used by
+ * setting the {@code benchmark.resourcePack} system property to its path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ResourcePackLoadingBenchmark {
+    private static final String[] BLOCK_TEXTURES = {
+            "stone", "granite", "diorite", "andesite", "dirt", "coarse_dirt", "grass_block_top", "grass_block_side",
+            "cobblestone", "oak_planks", "spruce_planks", "birch_planks", "jungle_planks", "acacia_planks",
+            "dark_oak_planks", "bedrock", "sand", "red_sand", "gravel", "gold_ore", "iron_ore", "coal_ore",
+            "oak_log", "oak_log_top", "spruce_log", "spruce_log_top", "birch_log", "birch_log_top", "oak_leaves",
+            "spruce_leaves", "birch_leaves", "glass", "sandstone", "sandstone_top", "white_wool", "bricks",
+            "bookshelf", "mossy_cobblestone", "obsidian", "diamond_ore", "crafting_table_top", "snow", "ice", "clay",
+            "netherrack", "soul_sand", "glowstone", "stone_bricks", "water_still", "lava_still"
+    };
+
+    /**
+     * Resolution of the generated block textures, in pixels.
+     */
+    @Param({"16", "128"})
+    public int resolution;
+
+    private Path directory;
+    private List<File> resourcePacks;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String resourcePack = System.getProperty("benchmark.resourcePack");
+        if (resourcePack != null) {
+            resourcePacks = Collections.singletonList(new File(resourcePack));
+            return;
+        }
+        directory = Files.createTempDirectory("resource-pack-benchmark");
+        Path pack = directory.resolve("pack.zip");
+        Random random = new Random(42);
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(pack))) {
+            zip.putNextEntry(new ZipEntry("pack.mcmeta"));
+            zip.write("{\"pack\":{\"pack_format\":15,\"description\":\"Benchmark\"}}".getBytes());
+            zip.closeEntry();
+            for (String name : BLOCK_TEXTURES) {
+                zip.putNextEntry(new ZipEntry("assets/minecraft/textures/block/" + name + ".png"));
+                writeTexture(zip, random);
+                zip.closeEntry();
+            }
+        }
+        resourcePacks = Collections.singletonList(pack.toFile());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (directory != null) {
+            FileUtil.deleteDirectory(directory);
+        }
+    }
+
+    @Benchmark
+    public void loadResourcePacks() {
+        ResourcePackLoader.loadResourcePacks(resourcePacks);
+    }
+
+    private void writeTexture(OutputStream out, Random random) throws IOException {
+        BufferedImage image = new BufferedImage(resolution, resolution, BufferedImage.TYPE_INT_ARGB);
+        int base = random.nextInt(0xFFFFFF);
+        for (int y = 0; y < resolution; y++) {
+            for (int x = 0; x < resolution; x++) {
+                image.setRGB(x, y, 0xFF000000 | (base ^ random.nextInt(0x1F1F1F)));
+            }
+        }
+        ImageIO.write(image, "png", out);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.lemaik.renderservice.benchmarks;
+
+import de.lemaik.renderservice.renderer.encoding.CompactDump;
+import de.lemaik.renderservice.renderer.encoding.ParallelPngEncoder;
+import de.lemaik.renderservice.renderer.rendering.Tile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import se.llbit.chunky.renderer.renderdump.RenderDump;
+import se.llbit.chunky.renderer.scene.Scene;
+import se.llbit.util.TaskTracker;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes render results in the formats that the node uploads. The result is written to a stream that discards it,
+ * so that only the encoding is measured.
+ * <p>
+ * Render results can only be created by the Chunky wrapper, so this uses the encoders that the results delegate to.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResultEncodingBenchmark {
+    @Param({"400x300", "1920x1080", "3840x2160"})
+    public String size;
+
+    @Param({"6"})
+    public int pngCompressionLevel;
+
+    private int width;
+    private int height;
+    private int[] argb;
+    private Scene scene;
+    private ParallelPngEncoder pngEncoder;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] dimensions = size.split("x");
+        width = Integer.parseInt(dimensions[0]);
+        height = Integer.parseInt(dimensions[1]);
+        Random random = new Random(42);
+
+        // a noisy gradient, which compresses roughly like a rendered image
+        argb = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int noise = random.nextInt(16);
+                int r = Math.min(255, x * 255 / width + noise);
+                int g = Math.min(255, y * 255 / height + noise);
+                int b = Math.min(255, 128 + noise);
+                argb[y * width + x] = 0xFF000000 | r << 16 | g << 8 | b;
+            }
+        }
+
+        scene = new Scene();
+        new Tile(0, 0, width, height).applyToScene(scene, width, height);
+        double[] samples = scene.getSampleBuffer();
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = random.nextDouble();
+        }
+        scene.spp = 100;
+        scene.renderTime = 60_000;
+        pngEncoder = new ParallelPngEncoder(pngCompressionLevel);
+    }
+
+    @Benchmark
+    public void png() throws IOException {
+        pngEncoder.write(OutputStream.nullOutputStream(), argb, width, height, false);
+    }
+
+    @Benchmark
+    public void dump() throws IOException {
+        RenderDump.save(OutputStream.nullOutputStream(), scene, TaskTracker.NONE);
+    }
+
+    @Benchmark
+    public void compactDumpHalf() throws IOException {
+        new CompactDump(width, height, scene.spp, scene.renderTime, scene.getSampleBuffer())
+                .write(OutputStream.nullOutputStream(), CompactDump.Precision.HALF);
+    }
+
+    @Benchmark
+    public void compactDumpFloat() throws IOException {
+        new CompactDump(width, height, scene.spp, scene.renderTime, scene.getSampleBuffer())
+                .write(OutputStream.nullOutputStream(), CompactDump.Precision.FLOAT);
+    }
+}
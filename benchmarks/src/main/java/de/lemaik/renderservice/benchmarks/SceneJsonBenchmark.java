@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.lemaik.renderservice.benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import de.lemaik.renderservice.renderer.rendering.RenderServerApiClient;
+import de.lemaik.renderservice.renderer.rendering.Task;
+import de.lemaik.renderservice.renderer.util.FileUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downloads a scene description with {@link RenderServerApiClient#downloadScene}, which sets the scene name while
+ * streaming it, and writes it to disk, like the node does for every new job.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SceneJsonBenchmark {
+    /**
+     * Number of entities in the scene, which make up most of the size of large scene descriptions.
+     */
+    @Param({"100", "10000", "100000"})
+    public int entities;
+
+    private LocalServer server;
+    private RenderServerApiClient apiClient;
+    private Task task;
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = new LocalServer();
+        directory = Files.createTempDirectory("scene-json-benchmark");
+        // the local server doesn't send caching headers, so the HTTP cache never stores anything
+        apiClient = new RenderServerApiClient(server.getUrl(), "benchmark", directory.resolve("cache").toFile(), 1);
+        String sceneUrl = server.serve("/scene.json", createScene(entities).getBytes(StandardCharsets.UTF_8));
+        task = Tasks.create(sceneUrl, null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        server.close();
+        FileUtil.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public File downloadAndWrite() throws Exception {
+        return apiClient.downloadScene(task, "scene", null, directory.resolve("scene.json").toFile()).get();
+    }
+
+    /**
+     * Create a scene description with the structure of a Chunky scene and the given number of entities.
+     */
+    static String createScene(int entities) {
+        Random random = new Random(42);
+        JsonObject scene = new JsonObject();
+        scene.addProperty("sdfVersion", 9);
+        scene.addProperty("name", "benchmark");
+        scene.addProperty("width", 1920);
+        scene.addProperty("height", 1080);
+        scene.addProperty("spp", 0);
+        scene.addProperty("sppTarget", 1000);
+        JsonObject camera = new JsonObject();
+        JsonObject position = new JsonObject();
+        position.addProperty("x", 12.5);
+        position.addProperty("y", 80.0);
+        position.addProperty("z", -3.25);
+        camera.add("position", position);
+        camera.addProperty("fov", 70.0);
+        scene.add("camera", camera);
+        JsonObject sky = new JsonObject();
+        sky.addProperty("skyMode", "SIMULATED");
+        sky.addProperty("skyLight", 1.0);
+        scene.add("sky", sky);
+        JsonArray chunks = new JsonArray();
+        for (int i = 0; i < entities / 10; i++) {
+            JsonArray chunk = new JsonArray();
+            chunk.add(random.nextInt(1000) - 500);
+            chunk.add(random.nextInt(1000) - 500);
+            chunks.add(chunk);
+        }
+        scene.add("chunkList", chunks);
+        JsonArray entityList = new JsonArray();
+        for (int i = 0; i < entities; i++) {
+            JsonObject entity = new JsonObject();
+            entity.addProperty("kind", "painting");
+            JsonObject entityPosition = new JsonObject();
+            entityPosition.addProperty("x", random.nextDouble() * 1000);
+            entityPosition.addProperty("y", random.nextDouble() * 256);
+            entityPosition.addProperty("z", random.nextDouble() * 1000);
+            entity.add("position", entityPosition);
+            entity.addProperty("art", "kebab");
+            entity.addProperty("angle", random.nextInt(4) * 90.0);
+            entityList.add(entity);
+        }
+        scene.add("entities", entityList);
+        return new Gson().toJson(scene);
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.lemaik.renderservice.benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import de.lemaik.renderservice.renderer.rendering.Task;
+
+/**
+ * Helpers for setting up benchmarks.
+ */
+final class Tasks {
+    private Tasks() {
+    }
+
+    /**
+     * Create a task like the API would send it.
+     *
+     * @param sceneUrl  URL of the scene description
+     * @param octreeUrl URL of the octree, or null
+     * @return task
+     */
+    static Task create(String sceneUrl, String octreeUrl) {
+        JsonObject job = new JsonObject();
+        job.addProperty("id", "benchmark");
+        job.addProperty("width", 1920);
+        job.addProperty("height", 1080);
+        JsonObject files = new JsonObject();
+        JsonObject scene = new JsonObject();
+        scene.addProperty("url", sceneUrl);
+        files.add("scene", scene);
+        if (octreeUrl != null) {
+            JsonObject octree = new JsonObject();
+            octree.addProperty("url", octreeUrl);
+            files.add("octree", octree);
+        }
+        files.add("resourcePacks", new JsonArray());
+        JsonObject task = new JsonObject();
+        task.addProperty("id", 1);
+        task.addProperty("spp", 100);
+        task.add("job", job);
+        task.add("files", files);
+        return new Gson().fromJson(task, Task.class);
+    }
+}
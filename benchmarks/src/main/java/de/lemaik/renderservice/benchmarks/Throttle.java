@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.lemaik.renderservice.benchmarks;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the bandwidth of all streams that are wrapped by it together, like a network link.
+ */
+public class Throttle {
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    private final long bytesPerSecond;
+    private long nextFree = System.nanoTime();
+
+    /**
+     * Create a new throttle.
+     *
+     * @param bytesPerSecond bandwidth, in bytes per second
+     */
+    public Throttle(long bytesPerSecond) {
+        if (bytesPerSecond <= 0) {
+            throw new IllegalArgumentException("The bandwidth must be positive");
+        }
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * Wait until the given number of bytes may be transferred.
+     *
+     * @param bytes number of bytes
+     */
+    public void acquire(int bytes) throws InterruptedIOException {
+        long wait;
+        synchronized (this) {
+            long now = System.nanoTime();
+            nextFree = Math.max(nextFree, now) + bytes * TimeUnit.SECONDS.toNanos(1) / bytesPerSecond;
+            wait = nextFree - now;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    public OutputStream wrap(OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                while (len > 0) {
+                    int count = Math.min(len, CHUNK_SIZE);
+                    acquire(count);
+                    out.write(b, off, count);
+                    off += count;
+                    len -= count;
+                }
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                acquire(1);
+                out.write(b);
+            }
+        };
+    }
+
+    public InputStream wrap(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int read = in.read(b, off, Math.min(len, CHUNK_SIZE));
+                if (read > 0) {
+                    acquire(read);
+                }
+                return read;
+            }
+
+            @Override
+            public int read() throws IOException {
+                int read = in.read();
+                if (read >= 0) {
+                    acquire(1);
+                }
+                return read;
+            }
+        };
+    }
+}
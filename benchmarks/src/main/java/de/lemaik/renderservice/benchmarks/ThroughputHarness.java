@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.lemaik.renderservice.benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.lexicalscope.jewel.cli.Cli;
+import com.lexicalscope.jewel.cli.CliFactory;
+import de.lemaik.renderservice.renderer.Main;
+import de.lemaik.renderservice.renderer.application.CommandlineArguments;
+import de.lemaik.renderservice.renderer.application.HeadlessRenderer;
+import de.lemaik.renderservice.renderer.metrics.Metrics;
+import de.lemaik.renderservice.renderer.util.FileUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Runs the render node against a {@link MockApiServer} for a fixed time and reports its throughput, i.e. the tasks per
+ * hour, the time it didn't render and the time it spent in each phase.
+ * <p>
+ * Usage: {@code ThroughputHarness [harness options] [-- node options]}. The node options are the regular options of
+ * the render node, except for the API URL and key.
+ */
+public class ThroughputHarness {
+    private static final String[] PHASES = {"download", "scene_load", "render", "encode", "upload"};
+
+    private ThroughputHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int separator = Arrays.asList(args).indexOf("--");
+        String[] harnessArgs = separator >= 0 ? Arrays.copyOfRange(args, 0, separator) : args;
+        List<String> nodeArgs = separator >= 0
+                ? new ArrayList<>(Arrays.asList(args).subList(separator + 1, args.length))
+                : new ArrayList<>();
+
+        Cli<HarnessArguments> cli = CliFactory.createCli(HarnessArguments.class);
+        HarnessArguments arguments;
+        try {
+            arguments = cli.parseArguments(harnessArgs);
+        } catch (Exception e) {
+            System.out.println(cli.getHelpMessage());
+            return;
+        }
+
+        Path workDirectory = arguments.getWorkDirectory() != null
+                ? arguments.getWorkDirectory().toPath()
+                : Files.createTempDirectory("chunkycloud-harness");
+        try (MockApiServer server = new MockApiServer()) {
+            server.setLatency(arguments.getLatency());
+            server.setBandwidth(arguments.getBandwidth() * 1024);
+            server.setFailureRate(arguments.getFailureRate());
+            byte[] resourcePack = arguments.getResourcePack() != null
+                    ? Files.readAllBytes(arguments.getResourcePack().toPath())
+                    : null;
+            for (int i = 0; i < arguments.getJobs(); i++) {
+                addJob(server, arguments, i, resourcePack);
+            }
+
+            nodeArgs.addAll(List.of("--api", server.getUrl(), "--api-key", "mock"));
+            addDefault(nodeArgs, "--job-path", workDirectory.resolve("rs_jobs"));
+            addDefault(nodeArgs, "--texturepacks-path", workDirectory.resolve("rs_texturepacks"));
+            addDefault(nodeArgs, "--cache-directory", workDirectory.resolve("rs_cache"));
+            addDefault(nodeArgs, "--scene-store-directory", workDirectory.resolve("rs_scenes"));
+            CommandlineArguments nodeArguments = CliFactory.parseArguments(CommandlineArguments.class,
+                    nodeArgs.toArray(new String[0]));
+            HeadlessRenderer node = new HeadlessRenderer(Main.createSettings(nodeArguments, "mock"));
+
+            long start = System.nanoTime();
+            node.start();
+            Thread.sleep(arguments.getDuration() * 1000L);
+            node.stop();
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            report(server, elapsed);
+        }
+        if (arguments.getWorkDirectory() == null) {
+            FileUtil.deleteDirectory(workDirectory);
+        }
+        // Chunky's threads keep the JVM alive
+        System.exit(0);
+    }
+
+    private static void addJob(MockApiServer server, HarnessArguments arguments, int index, byte[] resourcePack)
+            throws IOException {
+        if (arguments.getScene() != null) {
+            Path scene = arguments.getScene().toPath();
+            Path emittergrid = scene.resolve("scene.emittergrid");
+            JsonObject json = new Gson().fromJson(Files.readString(scene.resolve("scene.json")), JsonObject.class);
+            server.addJob(Files.readAllBytes(scene.resolve("scene.json")),
+                    Files.readAllBytes(scene.resolve("scene.octree2")),
+                    Files.exists(emittergrid) ? Files.readAllBytes(emittergrid) : null,
+                    resourcePack, json.get("width").getAsInt(), json.get("height").getAsInt(),
+                    arguments.getTileSize(), arguments.getSpp());
+        } else {
+            server.addJob(generateScene(arguments.getWidth(), arguments.getHeight(), index), emptyOctree(), null,
+                    resourcePack, arguments.getWidth(), arguments.getHeight(), arguments.getTileSize(),
+                    arguments.getSpp());
+        }
+    }
+
+    /**
+     * Generate a scene that only contains the sky. Each job gets a different camera, so that the node can't re-use
+     * the scene of the previous job.
+     */
+    private static byte[] generateScene(int width, int height, int index) {
+        JsonObject scene = new JsonObject();
+        scene.addProperty("sdfVersion", 9);
+        scene.addProperty("name", "harness-" + index);
+        scene.addProperty("width", width);
+        scene.addProperty("height", height);
+        scene.addProperty("spp", 0);
+        scene.addProperty("renderTime", 0);
+        scene.addProperty("pathTrace", true);
+        scene.addProperty("rayDepth", 5);
+        JsonObject camera = new JsonObject();
+        JsonObject position = new JsonObject();
+        position.addProperty("x", 0);
+        position.addProperty("y", 64 + index);
+        position.addProperty("z", 0);
+        camera.add("position", position);
+        JsonObject orientation = new JsonObject();
+        orientation.addProperty("roll", 0);
+        orientation.addProperty("pitch", -0.3);
+        orientation.addProperty("yaw", 0.5 * index);
+        camera.add("orientation", orientation);
+        camera.addProperty("projectionMode", "PINHOLE");
+        camera.addProperty("fov", 70);
+        scene.add("camera", camera);
+        JsonObject sky = new JsonObject();
+        sky.addProperty("skyMode", "SIMULATED");
+        sky.addProperty("skyLight", 1);
+        scene.add("sky", sky);
+        scene.add("chunkList", new JsonArray());
+        return new Gson().toJson(scene).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Create an octree file without any content. Chunky can't load it and renders the scene without geometry.
+     */
+    private static byte[] emptyOctree() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new GZIPOutputStream(out).close();
+        return out.toByteArray();
+    }
+
+    private static void addDefault(List<String> args, String option, Path value) {
+        if (!args.contains(option)) {
+            args.add(option);
+            args.add(value.toString());
+        }
+    }
+
+    private static void report(MockApiServer server, double elapsedSeconds) {
+        double renderSeconds = Metrics.PHASE_DURATION.getSum("render");
+        System.out.printf(Locale.ROOT, "Duration:          %.1f s%n", elapsedSeconds);
+        System.out.printf(Locale.ROOT, "Finished tasks:    %d (%.1f per hour)%n", server.getFinishedTasks(),
+                server.getFinishedTasks() * 3600 / elapsedSeconds);
+        System.out.printf(Locale.ROOT, "Leased tasks:      %d (%d released)%n", server.getLeasedTasks(),
+                server.getReleasedTasks());
+        System.out.printf(Locale.ROOT, "Injected failures: %d%n", server.getInjectedFailures());
+        System.out.printf(Locale.ROOT, "Uploaded:          %.1f MiB%n", server.getUploadedBytes() / 1024.0 / 1024);
+        System.out.printf(Locale.ROOT, "Idle:              %.1f %%%n",
+                100 * Math.max(0, 1 - renderSeconds / elapsedSeconds));
+        System.out.println();
+        System.out.printf(Locale.ROOT, "%-12s %8s %12s %10s%n", "Phase", "Count", "Total (s)", "Mean (s)");
+        for (String phase : PHASES) {
+            long count = Metrics.PHASE_DURATION.getCount(phase);
+            double sum = Metrics.PHASE_DURATION.getSum(phase);
+            System.out.printf(Locale.ROOT, "%-12s %8d %12.2f %10.3f%n", phase, count, sum,
+                    count > 0 ? sum / count : 0);
+        }
+    }
+}
@@ -22,20 +22,27 @@ import com.lexicalscope.jewel.cli.CliFactory;
 import de.lemaik.renderservice.renderer.application.CommandlineArguments;
 import de.lemaik.renderservice.renderer.application.HeadlessRenderer;
 import de.lemaik.renderservice.renderer.application.RendererSettings;
+import de.lemaik.renderservice.renderer.application.SceneBenchmark;
 import de.lemaik.renderservice.renderer.chunky.FilteringLogReceiver;
 import de.lemaik.renderservice.renderer.chunky.Slf4jLogReceiver;
+import de.lemaik.renderservice.renderer.encoding.CompactDump;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import se.llbit.log.Level;
 import se.llbit.log.Log;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 
 /**
  * The main class.
  */
 public class Main {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Main.class);
     public static final String VERSION;
     public static final int VERSION_CODE = 3;
 
@@ -59,6 +66,11 @@ public class Main {
             return;
         }
 
+        if (arguments.getBenchmark() != null) {
+            runBenchmark(arguments);
+            return;
+        }
+
         String apiKey = Optional.ofNullable(arguments.getApiKey()).orElse(System.getenv("API_KEY"));
         if (apiKey == null) {
             String apiKeyFile = arguments.getApiKeyFile();
@@ -76,16 +88,96 @@ public class Main {
             }
         }
 
-        RendererSettings settings = new RendererSettings(
-                arguments.getCpuLoad(),
-                arguments.getThreads(),
-                arguments.getJobPath(),
-                arguments.getTexturepacksPath(),
-                arguments.getApiUrl(),
-                arguments.getCacheDirectory(),
-                arguments.getMaxCacheSize(),
-                apiKey
-        );
+        RendererSettings settings;
+        try {
+            settings = createSettings(arguments, apiKey);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(-1);
+            return;
+        }
         new HeadlessRenderer(settings).start();
     }
+
+    private static void runBenchmark(CommandlineArguments arguments) {
+        List<Integer> threadCounts = arguments.getBenchmarkThreads() != null
+                ? arguments.getBenchmarkThreads().stream().sorted().toList()
+                : SceneBenchmark.getDefaultThreadCounts();
+        List<Integer> cpuLoads = arguments.getBenchmarkCpuLoads() != null
+                ? arguments.getBenchmarkCpuLoads()
+                : List.of(arguments.getCpuLoad());
+        try {
+            new SceneBenchmark(arguments.getBenchmark().toPath(), arguments.getBenchmarkSpp(), threadCounts, cpuLoads,
+                    arguments.getPngCompressionLevel()).run(System.out);
+        } catch (Exception e) {
+            LOGGER.error("The benchmark failed", e);
+            System.exit(-1);
+        }
+        // Chunky's render threads keep running otherwise
+        System.exit(0);
+    }
+
+    /**
+     * Create the renderer settings from the given commandline arguments.
+     *
+     * @param arguments commandline arguments
+     * @param apiKey    API key
+     * @return renderer settings
+     * @throws IllegalArgumentException if an argument is invalid
+     */
+    public static RendererSettings createSettings(CommandlineArguments arguments, String apiKey) {
+        CompactDump.Precision compactDumpPrecision = null;
+        if (arguments.getCompactDumps() != null) {
+            try {
+                compactDumpPrecision = CompactDump.Precision.valueOf(arguments.getCompactDumps().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid compact dump precision, must be float or half", e);
+            }
+        }
+
+        if (arguments.isAdaptiveSampling() && compactDumpPrecision == null) {
+            // only compact dumps can contain the sample count of every pixel
+            throw new IllegalArgumentException("Adaptive sampling requires --compact-dumps");
+        }
+        if (arguments.getConvergenceThreshold() != null && arguments.getConvergenceThreshold() <= 0) {
+            throw new IllegalArgumentException("The convergence threshold must be positive");
+        }
+        if (arguments.getRenderSlots() < 1) {
+            throw new IllegalArgumentException("The number of render slots must be at least 1");
+        }
+        if (arguments.getSlotCpus() != null && arguments.getSlotCpus().size() != arguments.getRenderSlots()) {
+            throw new IllegalArgumentException("Expected CPUs for " + arguments.getRenderSlots()
+                    + " render slot(s) but got " + arguments.getSlotCpus().size());
+        }
+
+        RendererSettings settings = new RendererSettings(arguments.getApiUrl(), apiKey);
+        settings.setCpuLoad(arguments.getCpuLoad());
+        settings.setThreads(arguments.getThreads());
+        settings.setPngCompressionLevel(arguments.getPngCompressionLevel());
+        settings.setJobPath(arguments.getJobPath());
+        settings.setTexturepacksPath(arguments.getTexturepacksPath());
+        settings.setMaxTexturepacksSize(arguments.getMaxTexturepacksSize());
+        settings.setTextureCacheSize(arguments.getTextureCacheSize());
+        settings.setCacheDirectory(arguments.getCacheDirectory());
+        settings.setMaxCacheSize(arguments.getMaxCacheSize());
+        settings.setSceneStoreDirectory(arguments.getSceneStoreDirectory());
+        settings.setMaxSceneStoreSize(arguments.getMaxSceneStoreSize());
+        settings.setPrefetchTasks(arguments.getPrefetchTasks());
+        settings.setLongPollTimeout(arguments.getLongPollTimeout());
+        settings.setLeaseBatchSize(arguments.getLeaseBatchSize());
+        settings.setMergeTiles(arguments.isMergeTiles());
+        settings.setAdaptiveSppPerPass(arguments.isAdaptiveSppPerPass());
+        settings.setConvergenceThreshold(arguments.getConvergenceThreshold());
+        settings.setAdaptiveSampling(arguments.isAdaptiveSampling());
+        settings.setRenderSlots(arguments.getRenderSlots());
+        settings.setSlotCpus(arguments.getSlotCpus());
+        settings.setUploadQueueSize(arguments.getUploadQueueSize());
+        settings.setStreamUploads(arguments.isStreamUploads());
+        settings.setCompactDumpPrecision(compactDumpPrecision);
+        settings.setStreamOctree(arguments.isStreamOctree());
+        settings.setMetricsHost(arguments.getMetricsHost());
+        settings.setMetricsPort(arguments.getMetricsPort());
+        settings.setJfrEvents(arguments.isJfrEvents());
+        return settings;
+    }
 }
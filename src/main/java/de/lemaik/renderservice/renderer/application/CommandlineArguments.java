@@ -20,6 +20,7 @@ package de.lemaik.renderservice.renderer.application;
 import com.lexicalscope.jewel.cli.Option;
 
 import java.io.File;
+import java.util.List;
 
 /**
  * Commandline arguments, parsed by {@link com.lexicalscope.jewel.cli.CliFactory}.
@@ -36,11 +37,26 @@ public interface CommandlineArguments {
             defaultValue = "2")
     int getThreads();
 
+    @Option(longName = "png-compression-level",
+            description = "PNG compression level, from 0 (fastest) to 9 (smallest)",
+            defaultValue = "6")
+    int getPngCompressionLevel();
+
     @Option(longName = "texturepacks-path",
             description = "path for texturepacks",
             defaultToNull = true)
     File getTexturepacksPath();
 
+    @Option(longName = "max-texturepacks-size",
+            description = "maximum size of the cached texturepacks, in mb",
+            defaultToNull = true)
+    Long getMaxTexturepacksSize();
+
+    @Option(longName = "texture-cache-size",
+            description = "memory for decoded textures of recently used texturepacks, in mb (0 to disable)",
+            defaultValue = "0")
+    long getTextureCacheSize();
+
     @Option(longName = "job-path",
             description = "path for temporary job data",
             defaultToNull = true)
@@ -61,6 +77,110 @@ public interface CommandlineArguments {
             defaultToNull = true)
     Long getMaxCacheSize();
 
+    @Option(longName = "scene-store-directory",
+            description = "directory to keep downloaded octrees and emitter grids in",
+            defaultToNull = true)
+    File getSceneStoreDirectory();
+
+    @Option(longName = "max-scene-store-size",
+            description = "maximum size of the scene store, in mb (0 to disable the scene store)",
+            defaultToNull = true)
+    Long getMaxSceneStoreSize();
+
+    @Option(longName = "prefetch-tasks",
+            description = "Number of tasks to lease and download ahead while rendering (0 to disable)",
+            defaultValue = "0")
+    int getPrefetchTasks();
+
+    @Option(longName = "long-poll-timeout",
+            description = "Maximum time in seconds the API may hold a request for the next task (0 to disable long polling)",
+            defaultValue = "25")
+    int getLongPollTimeout();
+
+    @Option(longName = "lease-batch-size",
+            description = "Maximum number of tasks of the same job to lease per request",
+            defaultValue = "1")
+    int getLeaseBatchSize();
+
+    @Option(longName = "merge-tiles",
+            description = "Render adjacent queued tiles of the same job in one pass")
+    boolean isMergeTiles();
+
+    @Option(longName = "adaptive-spp-per-pass",
+            description = "Tune the samples per pixel that are rendered per pass for the best render speed")
+    boolean isAdaptiveSppPerPass();
+
+    @Option(longName = "convergence-threshold",
+            description = "Stop rendering a task before its target spp once its noise is below this threshold, e.g. 0.01",
+            defaultToNull = true)
+    Double getConvergenceThreshold();
+
+    @Option(longName = "adaptive-sampling",
+            description = "Render more samples for noisy areas of a tile than for converged ones")
+    boolean isAdaptiveSampling();
+
+    @Option(longName = "render-slots",
+            description = "Number of tasks to render at the same time, each with the given number of threads",
+            defaultValue = "1")
+    int getRenderSlots();
+
+    @Option(longName = "slot-cpus",
+            description = "CPUs to pin each render slot to, e.g. 0-7 8-15 (Linux only)",
+            defaultToNull = true)
+    List<String> getSlotCpus();
+
+    @Option(longName = "upload-queue-size",
+            description = "Number of results to upload in the background while rendering the next task (0 to disable)",
+            defaultValue = "0")
+    int getUploadQueueSize();
+
+    @Option(longName = "stream-uploads",
+            description = "Encode results directly into the upload request with chunked transfer encoding instead of writing them to disk first")
+    boolean isStreamUploads();
+
+    @Option(longName = "compact-dumps",
+            description = "Offer to upload render dumps in the compact format (float or half precision)",
+            defaultToNull = true)
+    String getCompactDumps();
+
+    @Option(longName = "stream-octree",
+            description = "Load octrees while they are being downloaded")
+    boolean isStreamOctree();
+
+    @Option(longName = "metrics-port",
+            description = "Port to serve Prometheus metrics on (disabled if not set)",
+            defaultToNull = true)
+    Integer getMetricsPort();
+
+    @Option(longName = "metrics-host",
+            description = "Address to serve Prometheus metrics on",
+            defaultValue = "127.0.0.1")
+    String getMetricsHost();
+
+    @Option(longName = "jfr-events",
+            description = "Emit Java Flight Recorder events for task phases")
+    boolean isJfrEvents();
+
+    @Option(longName = "benchmark",
+            description = "Render the scene in the given directory with several settings, report the speed and exit",
+            defaultToNull = true)
+    File getBenchmark();
+
+    @Option(longName = "benchmark-spp",
+            description = "Samples per pixel to render in the benchmark",
+            defaultValue = "100")
+    int getBenchmarkSpp();
+
+    @Option(longName = "benchmark-threads",
+            description = "Thread counts to benchmark (powers of two up to the number of processors by default)",
+            defaultToNull = true)
+    List<Integer> getBenchmarkThreads();
+
+    @Option(longName = "benchmark-cpu-loads",
+            description = "CPU loads to benchmark (the CPU load by default)",
+            defaultToNull = true)
+    List<Integer> getBenchmarkCpuLoads();
+
     @Option(longName = "api-key",
             description = "API Key",
             defaultToNull = true)
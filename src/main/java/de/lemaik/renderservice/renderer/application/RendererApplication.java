@@ -18,16 +18,30 @@
 package de.lemaik.renderservice.renderer.application;
 
 import de.lemaik.renderservice.renderer.Main;
+import de.lemaik.renderservice.renderer.chunky.TextureCache;
+import de.lemaik.renderservice.renderer.metrics.FlightRecorderEvents;
+import de.lemaik.renderservice.renderer.metrics.MetricsServer;
+import de.lemaik.renderservice.renderer.rendering.ControlChannel;
+import de.lemaik.renderservice.renderer.rendering.ProgressReporter;
 import de.lemaik.renderservice.renderer.rendering.RenderServerApiClient;
 import de.lemaik.renderservice.renderer.rendering.RenderWorker;
+import de.lemaik.renderservice.renderer.rendering.ResourcePackDownloader;
+import de.lemaik.renderservice.renderer.rendering.ResourcePackStack;
+import de.lemaik.renderservice.renderer.rendering.SceneFileStore;
+import de.lemaik.renderservice.renderer.util.FileUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import se.llbit.chunky.JsonSettings;
 import se.llbit.chunky.PersistentSettings;
 import se.llbit.chunky.main.Version;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 public abstract class RendererApplication {
     private static final Logger LOGGER = LoggerFactory.getLogger(RendererApplication.class);
@@ -37,7 +51,10 @@ public abstract class RendererApplication {
     private Path jobDirectory;
     private Path resourcePacksPath;
 
-    private RenderWorker worker;
+    private final List<RenderWorker> workers = new ArrayList<>();
+    private ControlChannel controlChannel;
+    private ProgressReporter progressReporter;
+    private MetricsServer metricsServer;
 
     public RendererApplication(RendererSettings settings) {
         this.settings = settings;
@@ -45,13 +62,42 @@ public abstract class RendererApplication {
                 settings.getApiUrl(), settings.getApiKey(),
                 settings.getCacheDirectory()
                         .orElse(Paths.get(System.getProperty("user.dir"), "rs_cache").toFile()),
-                settings.getMaxCacheSize().orElse(512L)
+                settings.getMaxCacheSize().orElse(512L),
+                createSceneFileStore(settings)
         );
     }
 
+    private static SceneFileStore createSceneFileStore(RendererSettings settings) {
+        long maxSize = settings.getMaxSceneStoreSize().orElse(0L);
+        if (maxSize <= 0) {
+            return null;
+        }
+        Path directory = settings.getSceneStoreDirectory()
+                .map(File::toPath)
+                .orElse(Paths.get(System.getProperty("user.dir"), "rs_scenes"));
+        LOGGER.info("Scene store path: " + directory);
+        try {
+            return new SceneFileStore(directory, maxSize * 1024 * 1024);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not create the scene store", e);
+        }
+    }
+
     public void start() {
         LOGGER.info("Render node version: " + Main.VERSION + " (version code " + Main.VERSION_CODE + ")");
         LOGGER.info("Chunky version: " + Version.getVersion());
+        if (getSettings().isJfrEvents()) {
+            FlightRecorderEvents.setEnabled(true);
+        }
+        if (getSettings().getMetricsPort().isPresent()) {
+            try {
+                metricsServer = new MetricsServer(getSettings().getMetricsHost().orElse("127.0.0.1"),
+                        getSettings().getMetricsPort().get());
+                metricsServer.start();
+            } catch (IOException e) {
+                throw new RuntimeException("Could not start the metrics server", e);
+            }
+        }
         if (getSettings().getJobPath().isPresent()) {
             jobDirectory = getSettings().getJobPath().get().toPath();
         } else {
@@ -60,15 +106,7 @@ public abstract class RendererApplication {
         LOGGER.info("Job path: " + jobDirectory);
         jobDirectory.toFile().mkdirs();
 
-        Path chunkyHome = Paths.get(System.getProperty("user.dir"), "rs_chunky");
-        chunkyHome.toFile().mkdirs();
-
-        PersistentSettings.changeSettingsDirectory(chunkyHome.toFile());
-        PersistentSettings.settings = new JsonSettings();
-        PersistentSettings.setDisableDefaultTextures(true);
-        PersistentSettings.save();
-
-        LOGGER.info("Chunky home: " + chunkyHome);
+        initializeChunky();
 
         if (getSettings().getTexturepacksPath().isPresent()) {
             resourcePacksPath = getSettings().getTexturepacksPath().get().toPath();
@@ -77,11 +115,60 @@ public abstract class RendererApplication {
         }
         LOGGER.info("Resource packs path: " + resourcePacksPath);
         resourcePacksPath.toFile().mkdirs();
+        ResourcePackDownloader.getInstance().setMaxCacheSize(
+                getSettings().getMaxTexturepacksSize().orElse(2048L) * 1024 * 1024);
 
-        worker = new RenderWorker(getSettings().getThreads().orElse(Runtime.getRuntime().availableProcessors()),
-                getSettings().getCpuLoad().orElse(100),
-                jobDirectory, resourcePacksPath, api);
-        worker.start();
+        Path uploadSpoolPath = null;
+        if (!getSettings().isStreamUploads()) {
+            uploadSpoolPath = jobDirectory.resolve("uploads");
+            LOGGER.info("Upload spool path: " + uploadSpoolPath);
+            try {
+                if (Files.exists(uploadSpoolPath)) {
+                    // remove results that were left over from a previous run
+                    FileUtil.deleteDirectory(uploadSpoolPath);
+                }
+                Files.createDirectories(uploadSpoolPath);
+            } catch (IOException e) {
+                throw new RuntimeException("Could not create the upload spool directory", e);
+            }
+        }
+
+        TextureCache textureCache = getSettings().getTextureCacheSize().orElse(0L) > 0
+                ? new TextureCache(getSettings().getTextureCacheSize().get() * 1024 * 1024)
+                : null;
+        ResourcePackStack resourcePacks = new ResourcePackStack(resourcePacksPath, textureCache);
+        controlChannel = new ControlChannel(api);
+        controlChannel.start();
+        progressReporter = new ProgressReporter(api, controlChannel);
+
+        int slots = getSettings().getRenderSlots().orElse(1);
+        for (int slot = 0; slot < slots; slot++) {
+            RenderWorker worker = new RenderWorker(getSettings(), slot, jobDirectory, resourcePacksPath,
+                    uploadSpoolPath, api, resourcePacks, progressReporter, controlChannel);
+            if (slots > 1) {
+                worker.setName("Render slot " + (slot + 1));
+            }
+            workers.add(worker);
+        }
+        LOGGER.info("Starting {} render slot(s)", slots);
+        for (RenderWorker worker : workers) {
+            worker.start();
+        }
+    }
+
+    /**
+     * Make Chunky use its own settings directory with default settings and without the default textures.
+     */
+    static void initializeChunky() {
+        Path chunkyHome = Paths.get(System.getProperty("user.dir"), "rs_chunky");
+        chunkyHome.toFile().mkdirs();
+
+        PersistentSettings.changeSettingsDirectory(chunkyHome.toFile());
+        PersistentSettings.settings = new JsonSettings();
+        PersistentSettings.setDisableDefaultTextures(true);
+        PersistentSettings.save();
+
+        LOGGER.info("Chunky home: " + chunkyHome);
     }
 
     public RendererSettings getSettings() {
@@ -90,12 +177,21 @@ public abstract class RendererApplication {
 
     public void stop() {
         try {
-            LOGGER.info("Waiting for worker to stop...");
-            worker.interrupt();
-            worker.join();
-            LOGGER.info("Worker stopped");
+            LOGGER.info("Waiting for workers to stop...");
+            for (RenderWorker worker : workers) {
+                worker.interrupt();
+            }
+            for (RenderWorker worker : workers) {
+                worker.join();
+            }
+            LOGGER.info("Workers stopped");
         } catch (InterruptedException e) {
             LOGGER.error("Could not gracefully stop the renderer");
         }
+        controlChannel.interrupt();
+        progressReporter.shutdown();
+        if (metricsServer != null) {
+            metricsServer.stop();
+        }
     }
 }
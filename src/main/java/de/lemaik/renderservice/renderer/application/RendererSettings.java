@@ -17,7 +17,10 @@
 
 package de.lemaik.renderservice.renderer.application;
 
+import de.lemaik.renderservice.renderer.encoding.CompactDump;
+
 import java.io.File;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -27,22 +30,42 @@ public class RendererSettings {
 
     private Integer cpuLoad;
     private Integer threads;
+    private Integer pngCompressionLevel;
     private File jobPath;
     private File texturepacksPath;
-    private String apiUrl;
+    private Long maxTexturepacksSize;
+    private Long textureCacheSize;
+    private final String apiUrl;
     private File cacheDirectory;
     private Long maxCacheSize;
+    private File sceneStoreDirectory;
+    private Long maxSceneStoreSize;
+    private Integer prefetchTasks;
+    private Integer longPollTimeout;
+    private Integer leaseBatchSize;
+    private boolean mergeTiles;
+    private boolean adaptiveSppPerPass;
+    private Double convergenceThreshold;
+    private boolean adaptiveSampling;
+    private Integer renderSlots;
+    private List<String> slotCpus;
+    private Integer uploadQueueSize;
+    private boolean streamUploads;
+    private CompactDump.Precision compactDumpPrecision;
+    private boolean streamOctree;
+    private String metricsHost;
+    private Integer metricsPort;
+    private boolean jfrEvents;
     private final String apiKey;
 
-    public RendererSettings(Integer cpuLoad, Integer threads, File jobPath, File texturepacksPath,
-                            String apiUrl, File cacheDirectory, Long maxCacheSize, String apiKey) {
-        this.cpuLoad = cpuLoad;
-        this.threads = threads;
-        this.jobPath = jobPath;
-        this.texturepacksPath = texturepacksPath;
+    /**
+     * Create new settings. All other settings are optional and use their defaults unless they are set.
+     *
+     * @param apiUrl URL of the API
+     * @param apiKey API key
+     */
+    public RendererSettings(String apiUrl, String apiKey) {
         this.apiUrl = apiUrl;
-        this.cacheDirectory = cacheDirectory;
-        this.maxCacheSize = maxCacheSize;
         this.apiKey = apiKey;
     }
 
@@ -50,18 +73,58 @@ public class RendererSettings {
         return Optional.ofNullable(cpuLoad);
     }
 
+    public void setCpuLoad(Integer cpuLoad) {
+        this.cpuLoad = cpuLoad;
+    }
+
     public Optional<Integer> getThreads() {
         return Optional.ofNullable(threads);
     }
 
+    public void setThreads(Integer threads) {
+        this.threads = threads;
+    }
+
+    public Optional<Integer> getPngCompressionLevel() {
+        return Optional.ofNullable(pngCompressionLevel);
+    }
+
+    public void setPngCompressionLevel(Integer pngCompressionLevel) {
+        this.pngCompressionLevel = pngCompressionLevel;
+    }
+
     public Optional<File> getJobPath() {
         return Optional.ofNullable(jobPath);
     }
 
+    public void setJobPath(File jobPath) {
+        this.jobPath = jobPath;
+    }
+
     public Optional<File> getTexturepacksPath() {
         return Optional.ofNullable(texturepacksPath);
     }
 
+    public void setTexturepacksPath(File texturepacksPath) {
+        this.texturepacksPath = texturepacksPath;
+    }
+
+    public Optional<Long> getMaxTexturepacksSize() {
+        return Optional.ofNullable(maxTexturepacksSize);
+    }
+
+    public void setMaxTexturepacksSize(Long maxTexturepacksSize) {
+        this.maxTexturepacksSize = maxTexturepacksSize;
+    }
+
+    public Optional<Long> getTextureCacheSize() {
+        return Optional.ofNullable(textureCacheSize);
+    }
+
+    public void setTextureCacheSize(Long textureCacheSize) {
+        this.textureCacheSize = textureCacheSize;
+    }
+
     public String getApiUrl() {
         return apiUrl;
     }
@@ -70,10 +133,162 @@ public class RendererSettings {
         return Optional.ofNullable(cacheDirectory);
     }
 
+    public void setCacheDirectory(File cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
     public Optional<Long> getMaxCacheSize() {
         return Optional.ofNullable(maxCacheSize);
     }
 
+    public void setMaxCacheSize(Long maxCacheSize) {
+        this.maxCacheSize = maxCacheSize;
+    }
+
+    public Optional<File> getSceneStoreDirectory() {
+        return Optional.ofNullable(sceneStoreDirectory);
+    }
+
+    public void setSceneStoreDirectory(File sceneStoreDirectory) {
+        this.sceneStoreDirectory = sceneStoreDirectory;
+    }
+
+    public Optional<Long> getMaxSceneStoreSize() {
+        return Optional.ofNullable(maxSceneStoreSize);
+    }
+
+    public void setMaxSceneStoreSize(Long maxSceneStoreSize) {
+        this.maxSceneStoreSize = maxSceneStoreSize;
+    }
+
+    public Optional<Integer> getPrefetchTasks() {
+        return Optional.ofNullable(prefetchTasks);
+    }
+
+    public void setPrefetchTasks(Integer prefetchTasks) {
+        this.prefetchTasks = prefetchTasks;
+    }
+
+    public Optional<Integer> getLongPollTimeout() {
+        return Optional.ofNullable(longPollTimeout);
+    }
+
+    public void setLongPollTimeout(Integer longPollTimeout) {
+        this.longPollTimeout = longPollTimeout;
+    }
+
+    public Optional<Integer> getLeaseBatchSize() {
+        return Optional.ofNullable(leaseBatchSize);
+    }
+
+    public void setLeaseBatchSize(Integer leaseBatchSize) {
+        this.leaseBatchSize = leaseBatchSize;
+    }
+
+    public boolean isMergeTiles() {
+        return mergeTiles;
+    }
+
+    public void setMergeTiles(boolean mergeTiles) {
+        this.mergeTiles = mergeTiles;
+    }
+
+    public boolean isAdaptiveSppPerPass() {
+        return adaptiveSppPerPass;
+    }
+
+    public void setAdaptiveSppPerPass(boolean adaptiveSppPerPass) {
+        this.adaptiveSppPerPass = adaptiveSppPerPass;
+    }
+
+    public Optional<Double> getConvergenceThreshold() {
+        return Optional.ofNullable(convergenceThreshold);
+    }
+
+    public void setConvergenceThreshold(Double convergenceThreshold) {
+        this.convergenceThreshold = convergenceThreshold;
+    }
+
+    public boolean isAdaptiveSampling() {
+        return adaptiveSampling;
+    }
+
+    public void setAdaptiveSampling(boolean adaptiveSampling) {
+        this.adaptiveSampling = adaptiveSampling;
+    }
+
+    public Optional<Integer> getRenderSlots() {
+        return Optional.ofNullable(renderSlots);
+    }
+
+    public void setRenderSlots(Integer renderSlots) {
+        this.renderSlots = renderSlots;
+    }
+
+    public Optional<List<String>> getSlotCpus() {
+        return Optional.ofNullable(slotCpus);
+    }
+
+    public void setSlotCpus(List<String> slotCpus) {
+        this.slotCpus = slotCpus;
+    }
+
+    public Optional<Integer> getUploadQueueSize() {
+        return Optional.ofNullable(uploadQueueSize);
+    }
+
+    public void setUploadQueueSize(Integer uploadQueueSize) {
+        this.uploadQueueSize = uploadQueueSize;
+    }
+
+    public boolean isStreamUploads() {
+        return streamUploads;
+    }
+
+    public void setStreamUploads(boolean streamUploads) {
+        this.streamUploads = streamUploads;
+    }
+
+    public Optional<CompactDump.Precision> getCompactDumpPrecision() {
+        return Optional.ofNullable(compactDumpPrecision);
+    }
+
+    public void setCompactDumpPrecision(CompactDump.Precision compactDumpPrecision) {
+        this.compactDumpPrecision = compactDumpPrecision;
+    }
+
+    public boolean isStreamOctree() {
+        return streamOctree;
+    }
+
+    public void setStreamOctree(boolean streamOctree) {
+        this.streamOctree = streamOctree;
+    }
+
+    public Optional<String> getMetricsHost() {
+        return Optional.ofNullable(metricsHost);
+    }
+
+    public void setMetricsHost(String metricsHost) {
+        this.metricsHost = metricsHost;
+    }
+
+    public Optional<Integer> getMetricsPort() {
+        return Optional.ofNullable(metricsPort);
+    }
+
+    public void setMetricsPort(Integer metricsPort) {
+        this.metricsPort = metricsPort;
+    }
+
+    public boolean isJfrEvents() {
+        return jfrEvents;
+    }
+
+    public void setJfrEvents(boolean jfrEvents) {
+        this.jfrEvents = jfrEvents;
+    }
+
     public String getApiKey() {
         return apiKey;
     }
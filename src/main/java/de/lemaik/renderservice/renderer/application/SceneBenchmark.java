@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.lemaik.renderservice.renderer.application;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import de.lemaik.renderservice.renderer.chunky.ChunkyWrapper;
+import de.lemaik.renderservice.renderer.rendering.Task;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.llbit.chunky.resources.ResourcePackLoader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+
+/**
+ * Renders a local scene with several thread counts and CPU loads and reports the render speed, e.g. to size new
+ * hardware or to compare JVM flags without the API.
+ * <p>
+ * The scene directory must contain a scene saved by Chunky. Resource packs (zip files) in the directory are loaded
+ * before rendering. Every setting renders the whole image with the given spp after a short warm-up.
+ */
+public class SceneBenchmark {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SceneBenchmark.class);
+
+    private final Path sceneDirectory;
+    private final int spp;
+    private final List<Integer> threadCounts;
+    private final List<Integer> cpuLoads;
+    private final int pngCompressionLevel;
+
+    /**
+     * Create a new benchmark.
+     *
+     * @param sceneDirectory      scene directory
+     * @param spp                 samples per pixel to render with every setting
+     * @param threadCounts        thread counts to benchmark, in ascending order
+     * @param cpuLoads            CPU loads to benchmark
+     * @param pngCompressionLevel PNG compression level, only used to create the renderer
+     */
+    public SceneBenchmark(Path sceneDirectory, int spp, List<Integer> threadCounts, List<Integer> cpuLoads,
+                          int pngCompressionLevel) {
+        this.sceneDirectory = sceneDirectory;
+        this.spp = spp;
+        this.threadCounts = threadCounts;
+        this.cpuLoads = cpuLoads;
+        this.pngCompressionLevel = pngCompressionLevel;
+    }
+
+    /**
+     * Get the default thread counts to benchmark, i.e. the powers of two up to the number of processors and the
+     * number of processors itself.
+     *
+     * @return thread counts, in ascending order
+     */
+    public static List<Integer> getDefaultThreadCounts() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int threads = 1; threads < processors; threads *= 2) {
+            threadCounts.add(threads);
+        }
+        threadCounts.add(processors);
+        return threadCounts;
+    }
+
+    /**
+     * Run the benchmark and print the results.
+     *
+     * @param out stream to print the results to
+     */
+    public void run(PrintStream out) throws IOException, InterruptedException, ExecutionException {
+        File sceneFile = findSceneFile();
+        JsonObject sceneJson;
+        try (Reader reader = Files.newBufferedReader(sceneFile.toPath())) {
+            sceneJson = new Gson().fromJson(reader, JsonObject.class);
+        }
+        int width = sceneJson.get("width").getAsInt();
+        int height = sceneJson.get("height").getAsInt();
+
+        RendererApplication.initializeChunky();
+        List<File> resourcePacks;
+        try (Stream<Path> files = Files.list(sceneDirectory)) {
+            resourcePacks = files.filter(f -> f.getFileName().toString().endsWith(".zip")).sorted().map(Path::toFile)
+                    .toList();
+        }
+        if (!resourcePacks.isEmpty()) {
+            LOGGER.info("Loading resource packs: {}", resourcePacks);
+            ResourcePackLoader.loadResourcePacks(resourcePacks);
+        }
+
+        out.printf(Locale.ROOT, "Scene %s, %dx%d, %d spp%n%n", sceneFile, width, height, spp);
+        out.printf(Locale.ROOT, "%8s %9s %10s %14s %11s %15s%n",
+                "Threads", "CPU load", "Time (s)", "Samples/s", "Efficiency", "Peak heap (MiB)");
+        for (int cpuLoad : cpuLoads) {
+            double baseSpeedPerThread = 0;
+            for (int threads : threadCounts) {
+                resetPeakHeapUsage();
+                ChunkyWrapper chunky = new ChunkyWrapper(threads, cpuLoad, pngCompressionLevel);
+                chunky.loadScene(sceneFile);
+                LOGGER.info("Warming up with {} threads at {}% CPU load", threads, cpuLoad);
+                chunky.render(createTask(width, height, Math.max(1, spp / 10))).get();
+
+                LOGGER.info("Rendering with {} threads at {}% CPU load", threads, cpuLoad);
+                long start = System.nanoTime();
+                chunky.render(createTask(width, height, spp)).get();
+                double seconds = (System.nanoTime() - start) / 1e9;
+                double samplesPerSecond = (double) width * height * spp / seconds;
+                if (baseSpeedPerThread == 0) {
+                    baseSpeedPerThread = samplesPerSecond / threads;
+                }
+                out.printf(Locale.ROOT, "%8d %8d%% %10.2f %14.0f %10.0f%% %15.0f%n",
+                        threads, cpuLoad, seconds, samplesPerSecond,
+                        100 * samplesPerSecond / threads / baseSpeedPerThread,
+                        getPeakHeapUsage() / 1024.0 / 1024.0);
+            }
+        }
+        out.println();
+        out.println("Efficiency is the speed per thread relative to the speed per thread with the fewest threads.");
+    }
+
+    private File findSceneFile() throws IOException {
+        Path sceneFile = sceneDirectory.resolve("scene.json");
+        if (Files.exists(sceneFile)) {
+            return sceneFile.toFile();
+        }
+        try (Stream<Path> files = Files.list(sceneDirectory)) {
+            List<Path> sceneFiles = files.filter(f -> f.getFileName().toString().endsWith(".json")).toList();
+            if (sceneFiles.size() != 1) {
+                throw new IOException("Expected exactly one scene file in " + sceneDirectory + ", found "
+                        + sceneFiles.size());
+            }
+            return sceneFiles.get(0).toFile();
+        }
+    }
+
+    private static Task createTask(int width, int height, int spp) {
+        JsonObject job = new JsonObject();
+        job.addProperty("id", "benchmark");
+        job.addProperty("width", width);
+        job.addProperty("height", height);
+        JsonObject tile = new JsonObject();
+        tile.addProperty("x", 0);
+        tile.addProperty("y", 0);
+        tile.addProperty("width", width);
+        tile.addProperty("height", height);
+        JsonObject task = new JsonObject();
+        task.addProperty("id", 0);
+        task.addProperty("spp", spp);
+        task.add("tile", tile);
+        task.add("job", job);
+        return new Gson().fromJson(task, Task.class);
+    }
+
+    private static void resetPeakHeapUsage() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * Get the peak heap usage since the last reset. This is the sum of the peaks of the heap pools, which may have
+     * been reached at different times, so it is an upper bound.
+     */
+    private static long getPeakHeapUsage() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
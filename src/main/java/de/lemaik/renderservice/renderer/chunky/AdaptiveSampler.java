@@ -0,0 +1,316 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.lemaik.renderservice.renderer.chunky;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Distributes the samples of a render unevenly, so that noisy areas get more samples than converged ones.
+ * <p>
+ * Chunky renders the same number of samples for every pixel of its canvas, so the image is rendered uniformly with a
+ * quarter of the target spp first. The error of every block is then estimated like in {@link ConvergenceCheck} and the
+ * remaining samples of the task are split between the blocks, so that their expected errors become equal. Blocks with
+ * the same number of extra samples are combined into rectangular regions, which are rendered with Chunky one after
+ * another and merged into the image. Every pixel keeps its own sample count.
+ */
+public class AdaptiveSampler {
+    /**
+     * Minimum target spp of a task to sample adaptively, lower targets are rendered uniformly.
+     */
+    public static final int MIN_TARGET_SPP = 64;
+    private static final int MIN_BLOCK_SIZE = 16;
+    private static final int MAX_BLOCKS = 256;
+    private static final int MAX_EXTRA_SPP_FACTOR = 8;
+    private static final int LEVELS = 8;
+
+    private final int width;
+    private final int height;
+    private final int targetSpp;
+    private final int blockSize;
+    private double[] snapshot;
+    private int snapshotSpp;
+    private double[] samples;
+    private int[] sampleCounts;
+    private long totalSamples;
+
+    /**
+     * Create a new adaptive sampler for a render.
+     *
+     * @param width     width of the rendered image
+     * @param height    height of the rendered image
+     * @param targetSpp average samples per pixel to render
+     */
+    public AdaptiveSampler(int width, int height, int targetSpp) {
+        this.width = width;
+        this.height = height;
+        this.targetSpp = targetSpp;
+        this.blockSize = Math.max(MIN_BLOCK_SIZE, (int) Math.ceil(Math.sqrt((double) width * height / MAX_BLOCKS)));
+    }
+
+    /**
+     * Get the samples per pixel to render uniformly before sampling adaptively.
+     *
+     * @return spp of the uniform pass
+     */
+    public int getUniformSpp() {
+        return Math.max(ConvergenceCheck.MIN_SPP, targetSpp / 4);
+    }
+
+    /**
+     * Update the sampler while rendering uniformly. This must be called after every pass, while the sample buffer is
+     * not modified.
+     *
+     * @param samples sample buffer, with three channels per pixel
+     * @param spp     samples per pixel in the buffer
+     */
+    public void update(double[] samples, int spp) {
+        if (snapshot == null && spp >= getUniformSpp() / 2) {
+            snapshot = samples.clone();
+            snapshotSpp = spp;
+        }
+    }
+
+    /**
+     * Plan the regions to render after rendering uniformly. The given sample buffer is used to merge the rendered
+     * regions into.
+     *
+     * @param samples sample buffer of the uniformly rendered image
+     * @param spp     samples per pixel in the buffer
+     * @return regions to render, empty if the image is converged or the target spp is reached
+     */
+    public List<Region> plan(double[] samples, int spp) {
+        this.samples = samples;
+        sampleCounts = new int[width * height];
+        Arrays.fill(sampleCounts, spp);
+        totalSamples = (long) spp * width * height;
+        long budget = ((long) targetSpp - spp) * width * height;
+        if (budget <= 0) {
+            return Collections.emptyList();
+        }
+        if (snapshot == null || spp <= snapshotSpp) {
+            // the error can't be estimated, render the remaining samples uniformly
+            snapshot = null;
+            return Collections.singletonList(new Region(0, 0, width, height, targetSpp - spp));
+        }
+
+        int blocksX = (width + blockSize - 1) / blockSize;
+        int blocksY = (height + blockSize - 1) / blockSize;
+        double[] errors = ConvergenceCheck.getBlockErrors(samples, spp, snapshot, snapshotSpp, width, height,
+                blockSize);
+        snapshot = null;
+        int[] extraSpp = allocate(errors, blocksX, spp, budget);
+
+        List<Region> regions = new ArrayList<>();
+        long planned = 0;
+        for (int i = 0; i < extraSpp.length; i++) {
+            int blockWidth = Math.min(blockSize, width - (i % blocksX) * blockSize);
+            int blockHeight = Math.min(blockSize, height - (i / blocksX) * blockSize);
+            planned += (long) extraSpp[i] * blockWidth * blockHeight;
+        }
+        long pixels = (long) width * height;
+        int leftoverSpp = (int) ((budget - planned) / pixels);
+        if (leftoverSpp > 0) {
+            // samples that were lost by rounding or by the limit of a block are rendered uniformly
+            regions.add(new Region(0, 0, width, height, leftoverSpp));
+        }
+        // the remaining samples are fewer than the pixels, they are rendered with one more sample for as many rows
+        // and pixels of the next row, so that the total is exactly the budget and the average spp is the target spp
+        long remaining = budget - planned - leftoverSpp * pixels;
+        int rows = (int) (remaining / width);
+        int rest = (int) (remaining % width);
+        if (rows > 0) {
+            regions.add(new Region(0, 0, width, rows, 1));
+        }
+        if (rest > 0) {
+            regions.add(new Region(0, rows, rest, 1, 1));
+        }
+        List<Region> previousRow = Collections.emptyList();
+        for (int blockY = 0; blockY < blocksY; blockY++) {
+            int y = blockY * blockSize;
+            int rowHeight = Math.min(blockSize, height - y);
+            List<Region> row = new ArrayList<>();
+            for (int blockX = 0; blockX < blocksX; ) {
+                int extra = extraSpp[blockY * blocksX + blockX];
+                int runEnd = blockX + 1;
+                while (runEnd < blocksX && extraSpp[blockY * blocksX + runEnd] == extra) {
+                    runEnd++;
+                }
+                if (extra > 0) {
+                    int x = blockX * blockSize;
+                    int runWidth = Math.min(runEnd * blockSize, width) - x;
+                    Region above = null;
+                    for (Region region : previousRow) {
+                        if (region.x == x && region.width == runWidth && region.spp == extra) {
+                            above = region;
+                            break;
+                        }
+                    }
+                    if (above != null) {
+                        above.height += rowHeight;
+                        row.add(above);
+                    } else {
+                        Region region = new Region(x, y, runWidth, rowHeight, extra);
+                        regions.add(region);
+                        row.add(region);
+                    }
+                }
+                blockX = runEnd;
+            }
+            previousRow = row;
+        }
+        return regions;
+    }
+
+    /**
+     * Split the budget between the blocks, so that their expected errors become equal. A block with the error e at s
+     * spp has the error e * sqrt(s / n) at n spp, so the blocks need s * e² / E² spp for an error of E. E is found by
+     * bisection. The extra spp are rounded down to at most {@value #LEVELS} levels, so that blocks can be combined
+     * and the total never exceeds the budget.
+     */
+    private int[] allocate(double[] errors, int blocksX, int spp, long budget) {
+        long[] blockPixels = new long[errors.length];
+        for (int i = 0; i < errors.length; i++) {
+            int blockWidth = Math.min(blockSize, width - (i % blocksX) * blockSize);
+            int blockHeight = Math.min(blockSize, height - (i / blocksX) * blockSize);
+            blockPixels[i] = (long) blockWidth * blockHeight;
+        }
+        double maxExtra = (double) targetSpp * MAX_EXTRA_SPP_FACTOR;
+        double low = 0;
+        double high = 1;
+        while (samplesFor(errors, blockPixels, spp, maxExtra, high) < budget && high < 1e30) {
+            high *= 2;
+        }
+        for (int i = 0; i < 64; i++) {
+            double middle = (low + high) / 2;
+            if (samplesFor(errors, blockPixels, spp, maxExtra, middle) < budget) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+
+        double[] extra = new double[errors.length];
+        double max = 0;
+        for (int i = 0; i < errors.length; i++) {
+            extra[i] = extraSppFor(errors[i], spp, maxExtra, low);
+            max = Math.max(max, extra[i]);
+        }
+        int step = Math.max(1, (int) Math.ceil(max / LEVELS));
+        int[] rounded = new int[errors.length];
+        for (int i = 0; i < errors.length; i++) {
+            rounded[i] = (int) Math.floor(extra[i] / step) * step;
+        }
+        return rounded;
+    }
+
+    private static double samplesFor(double[] errors, long[] blockPixels, int spp, double maxExtra,
+                                     double inverseSquaredError) {
+        double samples = 0;
+        for (int i = 0; i < errors.length; i++) {
+            samples += blockPixels[i] * extraSppFor(errors[i], spp, maxExtra, inverseSquaredError);
+        }
+        return samples;
+    }
+
+    private static double extraSppFor(double error, int spp, double maxExtra, double inverseSquaredError) {
+        return Math.max(0, Math.min(maxExtra, spp * error * error * inverseSquaredError - spp));
+    }
+
+    /**
+     * Merge the samples of a rendered region into the image.
+     *
+     * @param region        region
+     * @param regionSamples sample buffer of the region
+     * @param regionSpp     samples per pixel that were rendered for the region
+     */
+    public void add(Region region, double[] regionSamples, int regionSpp) {
+        for (int y = 0; y < region.height; y++) {
+            for (int x = 0; x < region.width; x++) {
+                int pixel = (region.y + y) * width + region.x + x;
+                int count = sampleCounts[pixel];
+                double weight = (double) regionSpp / (count + regionSpp);
+                for (int c = 0; c < 3; c++) {
+                    int i = pixel * 3 + c;
+                    samples[i] += (regionSamples[(y * region.width + x) * 3 + c] - samples[i]) * weight;
+                }
+                sampleCounts[pixel] = count + regionSpp;
+            }
+        }
+        totalSamples += (long) regionSpp * region.width * region.height;
+    }
+
+    /**
+     * Get the number of samples of every pixel.
+     *
+     * @return sample counts, row by row
+     */
+    public int[] getSampleCounts() {
+        return sampleCounts;
+    }
+
+    /**
+     * Get the average number of samples per pixel.
+     *
+     * @return average spp, rounded to the nearest integer
+     */
+    public int getAverageSpp() {
+        return (int) Math.round((double) totalSamples / ((long) width * height));
+    }
+
+    /**
+     * A rectangular part of the image to render with additional samples.
+     */
+    public static class Region {
+        private final int x;
+        private final int y;
+        private final int width;
+        private int height;
+        private final int spp;
+
+        private Region(int x, int y, int width, int height, int spp) {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.spp = spp;
+        }
+
+        public int getX() {
+            return x;
+        }
+
+        public int getY() {
+            return y;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public int getSpp() {
+            return spp;
+        }
+    }
+}
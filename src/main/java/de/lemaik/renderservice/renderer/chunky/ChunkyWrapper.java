@@ -17,7 +17,11 @@
 
 package de.lemaik.renderservice.renderer.chunky;
 
+import de.lemaik.renderservice.renderer.encoding.CompactDump;
+import de.lemaik.renderservice.renderer.encoding.ParallelPngEncoder;
+import de.lemaik.renderservice.renderer.metrics.RenderEvent;
 import de.lemaik.renderservice.renderer.rendering.Task;
+import de.lemaik.renderservice.renderer.rendering.Tile;
 import se.llbit.chunky.renderer.DefaultRenderManager;
 import se.llbit.chunky.renderer.RenderStatus;
 import se.llbit.chunky.renderer.SnapshotControl;
@@ -25,22 +29,44 @@ import se.llbit.chunky.renderer.export.PictureExportFormats;
 import se.llbit.chunky.renderer.renderdump.RenderDump;
 import se.llbit.chunky.renderer.scene.Scene;
 import se.llbit.chunky.renderer.scene.SynchronousSceneManager;
+import se.llbit.chunky.resources.BitmapImage;
+import se.llbit.json.JsonObject;
+import se.llbit.json.JsonParser;
 import se.llbit.util.TaskTracker;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntSupplier;
 
 public class ChunkyWrapper {
     private final VoidRenderContext context;
     private final SynchronousSceneManager sceneManager;
     private final DefaultRenderManager renderer;
     private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final ParallelPngEncoder pngEncoder;
+    private SppPerPassTuner sppPerPassTuner;
+    private double convergenceThreshold;
+    private BooleanSupplier adaptiveSampling = () -> false;
+    private boolean captureResults;
+    private ConvergenceCheck convergenceCheck;
+    private AdaptiveSampler adaptiveSampler;
+    private volatile IntSupplier adaptiveProgress;
 
-    public ChunkyWrapper(int threads, int cpuLoad) {
+    public ChunkyWrapper(int threads, int cpuLoad, int pngCompressionLevel) {
+        pngEncoder = new ParallelPngEncoder(pngCompressionLevel);
         context = new VoidRenderContext();
         context.setRenderThreadCount(threads);
         renderer = new DefaultRenderManager(context, true);
@@ -50,6 +76,15 @@ public class ChunkyWrapper {
         renderer.setSnapshotControl(new SnapshotControl() {
             @Override
             public boolean saveSnapshot(Scene scene, int nextSpp) {
+                // called by the renderer after every pass
+                if (adaptiveSampler != null) {
+                    adaptiveSampler.update(scene.getSampleBuffer(), nextSpp);
+                }
+                if (convergenceCheck != null && nextSpp < scene.getTargetSpp()
+                        && convergenceCheck.update(scene.getSampleBuffer(), nextSpp)) {
+                    // the renderer stops once the buffered scene reaches its target spp
+                    scene.setTargetSpp(nextSpp);
+                }
                 return false;
             }
 
@@ -60,51 +95,415 @@ public class ChunkyWrapper {
         });
     }
 
+    /**
+     * Set the tuner for the samples per pass. Without a tuner, one sample per pass is rendered.
+     *
+     * @param sppPerPassTuner tuner, or null
+     */
+    public void setSppPerPassTuner(SppPerPassTuner sppPerPassTuner) {
+        this.sppPerPassTuner = sppPerPassTuner;
+    }
+
+    /**
+     * Set the error at which a render is stopped before reaching its target spp, see {@link ConvergenceCheck}.
+     *
+     * @param convergenceThreshold threshold, or 0 to always render the target spp
+     */
+    public void setConvergenceThreshold(double convergenceThreshold) {
+        this.convergenceThreshold = convergenceThreshold;
+    }
+
+    /**
+     * Enable or disable spending more samples on noisy areas, see {@link AdaptiveSampler}. The given condition is
+     * checked before every render, e.g. so that adaptive sampling stops once the server rejected the sample counts.
+     *
+     * @param adaptiveSampling condition to sample adaptively
+     */
+    public void setAdaptiveSampling(BooleanSupplier adaptiveSampling) {
+        this.adaptiveSampling = adaptiveSampling;
+    }
+
+    /**
+     * Enable or disable copying the samples of every result out of the renderer, so that results can be written
+     * while the next task is rendering. Otherwise, results must be written before the next render starts.
+     *
+     * @param captureResults true to copy the samples of results
+     */
+    public void setCaptureResults(boolean captureResults) {
+        this.captureResults = captureResults;
+    }
+
     public void loadScene(File scene) throws IOException, InterruptedException {
         sceneManager.loadScene(scene.getParentFile(), scene.getName().substring(0, scene.getName().length() - ".json".length()));
     }
 
+    /**
+     * Load a scene, reading some of its files from the given sources instead of the scene directory.
+     *
+     * @param scene       scene file
+     * @param fileSources sources of scene files, by file name
+     */
+    public void loadScene(File scene, Map<String, VoidRenderContext.SceneFileSource> fileSources)
+            throws IOException, InterruptedException {
+        fileSources.forEach(context::setSceneFileSource);
+        try {
+            loadScene(scene);
+        } finally {
+            context.clearSceneFileSources();
+        }
+    }
+
+    /**
+     * Apply the settings (e.g. camera and sky) of the given scene description to the loaded scene, keeping its octree.
+     *
+     * @param scene scene description
+     */
+    public void applySceneSettings(InputStream scene) throws IOException {
+        JsonObject json;
+        try (InputStream in = scene) {
+            json = new JsonParser(in).parse().object();
+        } catch (JsonParser.SyntaxError e) {
+            throw new IOException("Invalid scene description", e);
+        }
+        sceneManager.withEditSceneProtected(loadedScene -> loadedScene.importFromJson(json));
+    }
+
     public Future<RenderResult> render(Task task) throws InterruptedException {
+        Future<List<RenderResult>> results = render(Collections.singletonList(task));
+        return new Future<>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                return results.cancel(mayInterruptIfRunning);
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return results.isCancelled();
+            }
+
+            @Override
+            public boolean isDone() {
+                return results.isDone();
+            }
+
+            @Override
+            public RenderResult get() throws InterruptedException, ExecutionException {
+                return results.get().get(0);
+            }
+
+            @Override
+            public RenderResult get(long timeout, TimeUnit unit)
+                    throws InterruptedException, ExecutionException, TimeoutException {
+                return results.get(timeout, unit).get(0);
+            }
+        };
+    }
+
+    /**
+     * Render multiple tasks of the same job with the same spp in one pass. The tiles of the tasks must cover their
+     * bounding box exactly (see {@link Tile#union}). The bounding box is rendered once and its samples are split into
+     * one result per task afterwards.
+     *
+     * @param tasks tasks to render
+     * @return future of the results, in the order of the tasks
+     */
+    public Future<List<RenderResult>> render(List<Task> tasks) throws InterruptedException {
+        Task first = tasks.get(0);
+        Tile bounds = Tile.union(tasks.stream().map(Task::getTile).toList());
+        if (bounds == null) {
+            throw new IllegalArgumentException("The tiles can't be rendered together");
+        }
+        for (Task task : tasks) {
+            if (!task.getJob().getId().equals(first.getJob().getId()) || task.getSpp() != first.getSpp()) {
+                throw new IllegalArgumentException("Only tasks of the same job with the same spp can be rendered together");
+            }
+        }
+        int fullWidth = first.getJob().getWidth();
+        int fullHeight = first.getJob().getHeight();
         return executor.submit(() -> {
-            context.setSppPerPass(1);
-            sceneManager.getScene().refresh();
-            sceneManager.withEditSceneProtected(scene -> {
-                task.getTile().applyToScene(scene, task.getJob().getWidth(), task.getJob().getHeight());
-                scene.setTargetSpp(task.getSpp());
-            });
-            sceneManager.applySceneChanges();
-            sceneManager.getScene().startHeadlessRender();
-            renderer.run();
+            List<RenderEvent> events = new ArrayList<>(tasks.size());
+            for (Task task : tasks) {
+                RenderEvent event = new RenderEvent();
+                event.setTask(task);
+                event.targetSpp = task.getSpp();
+                event.begin();
+                events.add(event);
+            }
+            long pixels = (long) bounds.getWidth() * bounds.getHeight();
+            int sppPerPass = sppPerPassTuner != null ? sppPerPassTuner.choose(pixels, first.getSpp()) : 1;
+            boolean adaptiveTask = first.getSpp() >= AdaptiveSampler.MIN_TARGET_SPP && adaptiveSampling.getAsBoolean();
+            AdaptiveSampler sampler = adaptiveTask
+                    ? new AdaptiveSampler(bounds.getWidth(), bounds.getHeight(), first.getSpp())
+                    : null;
+            ConvergenceCheck check = convergenceThreshold > 0
+                    ? new ConvergenceCheck(bounds.getWidth(), bounds.getHeight(), convergenceThreshold)
+                    : null;
+            int uniformSppPerPass = sppPerPass;
+            if (sampler != null) {
+                // the sampler needs a copy of the samples at about half of the uniform spp
+                uniformSppPerPass = Math.min(sppPerPass, Math.max(1, sampler.getUniformSpp() / 2));
+            }
+            RenderStatus status = render(bounds, fullWidth, fullHeight,
+                    sampler != null ? sampler.getUniformSpp() : first.getSpp(), uniformSppPerPass, check, sampler);
 
-            RenderStatus status = renderer.getRenderStatus();
             Scene renderedScene = sceneManager.getScene();
             renderedScene.renderTime = status.getRenderTime();
             renderedScene.spp = status.getSpp();
+            if (sppPerPassTuner != null && uniformSppPerPass == sppPerPass) {
+                sppPerPassTuner.record(pixels, sppPerPass, status.getSpp(), status.getRenderTime());
+            }
 
-            return new RenderResult() {
-                @Override
-                public void writePngImage(OutputStream outputStream) throws IOException {
-                    renderer.bufferedScene.writeFrame(outputStream, PictureExportFormats.PNG, TaskTracker.NONE);
+            boolean adaptive = sampler != null && (check == null || !check.isConverged());
+            Scene resultScene;
+            if (captureResults || adaptive) {
+                // rendering the adaptive regions re-uses the buffered scene
+                resultScene = capture(bounds, fullWidth, fullHeight, status);
+            } else {
+                resultScene = renderer.bufferedScene;
+                synchronized (resultScene) {
+                    resultScene.renderTime = status.getRenderTime();
+                    resultScene.spp = status.getSpp();
                 }
+            }
+            int[] sampleCounts = null;
+            if (adaptive) {
+                sampleCounts = renderAdaptively(sampler, resultScene, bounds, fullWidth, fullHeight, sppPerPass);
+            }
+            for (RenderEvent event : events) {
+                event.spp = resultScene.spp;
+                event.sppPerPass = sppPerPass;
+                event.converged = check != null && check.isConverged();
+                event.commit();
+            }
 
-                @Override
-                public void writeDump(OutputStream outputStream) throws IOException {
-                    RenderDump.save(outputStream, renderer.bufferedScene, TaskTracker.NONE);
-                }
-            };
+            if (tasks.size() == 1) {
+                return Collections.singletonList(createResult(first, resultScene, sampleCounts));
+            }
+            // the slices are copies, so they can always be written while the next task is rendering
+            List<RenderResult> results = new ArrayList<>(tasks.size());
+            for (Task task : tasks) {
+                results.add(createResult(task, slice(resultScene, bounds, task.getTile(), fullWidth, fullHeight),
+                        sampleCounts != null ? slice(sampleCounts, bounds, task.getTile()) : null));
+            }
+            return results;
+        });
+    }
+
+    /**
+     * Render a tile of the loaded scene. The samples are left in the buffered scene of the renderer.
+     *
+     * @param tile       tile to render
+     * @param spp        samples per pixel to render
+     * @param sppPerPass samples per pixel to render per pass
+     * @param check      convergence check to stop the render early, or null
+     * @param sampler    adaptive sampler to update while rendering, or null
+     * @return render status
+     */
+    private RenderStatus render(Tile tile, int fullWidth, int fullHeight, int spp, int sppPerPass,
+                                ConvergenceCheck check, AdaptiveSampler sampler) throws InterruptedException {
+        context.setSppPerPass(sppPerPass);
+        sceneManager.getScene().refresh();
+        sceneManager.withEditSceneProtected(scene -> {
+            tile.applyToScene(scene, fullWidth, fullHeight);
+            scene.setTargetSpp(spp);
         });
+        sceneManager.applySceneChanges();
+        sceneManager.getScene().startHeadlessRender();
+        convergenceCheck = check;
+        adaptiveSampler = sampler;
+        try {
+            renderer.run();
+        } finally {
+            convergenceCheck = null;
+            adaptiveSampler = null;
+        }
+        return renderer.getRenderStatus();
+    }
+
+    /**
+     * Render the regions that the adaptive sampler picked after the uniform pass and merge them into the captured
+     * scene.
+     *
+     * @return number of samples of every pixel
+     */
+    private int[] renderAdaptively(AdaptiveSampler sampler, Scene capturedScene, Tile bounds, int fullWidth,
+                                   int fullHeight, int sppPerPass) throws InterruptedException {
+        List<AdaptiveSampler.Region> regions = sampler.plan(capturedScene.getSampleBuffer(), capturedScene.spp);
+        long pixels = (long) bounds.getWidth() * bounds.getHeight();
+        long renderedSamples = pixels * capturedScene.spp;
+        try {
+            for (AdaptiveSampler.Region region : regions) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                long regionPixels = (long) region.getWidth() * region.getHeight();
+                long samplesBefore = renderedSamples;
+                adaptiveProgress = () -> (int) ((samplesBefore + regionPixels * renderer.getRenderStatus().getSpp())
+                        / pixels);
+                // passes that divide the spp of the region, so that it doesn't get more samples than planned
+                int regionSppPerPass = Math.min(sppPerPass, region.getSpp());
+                while (region.getSpp() % regionSppPerPass != 0) {
+                    regionSppPerPass--;
+                }
+                RenderStatus status = render(new Tile(bounds.getX() + region.getX(), bounds.getY() + region.getY(),
+                                region.getWidth(), region.getHeight()), fullWidth, fullHeight, region.getSpp(),
+                        regionSppPerPass, null, null);
+                synchronized (renderer.bufferedScene) {
+                    sampler.add(region, renderer.bufferedScene.getSampleBuffer(), status.getSpp());
+                }
+                capturedScene.renderTime += status.getRenderTime();
+                renderedSamples += regionPixels * status.getSpp();
+            }
+        } finally {
+            adaptiveProgress = null;
+        }
+        capturedScene.spp = sampler.getAverageSpp();
+        return sampler.getSampleCounts();
     }
 
+    /**
+     * Create the result of a task.
+     *
+     * @param scene        scene with the samples of the task, either captured or the buffered scene of the renderer
+     * @param sampleCounts per-pixel sample counts, or null if all pixels have the same spp
+     */
+    private RenderResult createResult(Task task, Scene scene, int[] sampleCounts) {
+        return new RenderResult() {
+            @Override
+            public int getSpp() {
+                return scene.spp;
+            }
+
+            @Override
+            public boolean hasSampleCounts() {
+                return sampleCounts != null;
+            }
+
+            @Override
+            public void writePngImage(OutputStream outputStream) throws IOException {
+                if (scene.transparentSky()) {
+                    // the alpha channel is only computed by Chunky's own PNG export
+                    scene.writeFrame(outputStream, PictureExportFormats.PNG, TaskTracker.NONE);
+                } else {
+                    scene.postProcessFrame(TaskTracker.Task.NONE);
+                    BitmapImage frame = scene.getBackBuffer();
+                    pngEncoder.write(outputStream, frame.data, frame.width, frame.height, false);
+                }
+            }
+
+            @Override
+            public void writeDump(OutputStream outputStream) throws IOException {
+                RenderDump.save(outputStream, scene, TaskTracker.NONE);
+            }
+
+            @Override
+            public void writeCompactDump(OutputStream outputStream, CompactDump.Precision precision,
+                                         boolean withSampleCounts) throws IOException {
+                new CompactDump(task.getTile().getWidth(), task.getTile().getHeight(), scene.spp,
+                        scene.renderTime, scene.getSampleBuffer(),
+                        withSampleCounts ? sampleCounts : null).write(outputStream, precision);
+            }
+        };
+    }
+
+    /**
+     * Copy the rendered samples into a new scene that is detached from the renderer, so that the result can be
+     * written while the next task is rendering.
+     */
+    private Scene capture(Tile tile, int fullWidth, int fullHeight, RenderStatus status) {
+        Scene captured = new Scene();
+        synchronized (renderer.bufferedScene) {
+            captured.copyState(renderer.bufferedScene);
+            // (re-)allocates the sample buffer of the captured scene
+            tile.applyToScene(captured, fullWidth, fullHeight);
+            double[] samples = renderer.bufferedScene.getSampleBuffer();
+            System.arraycopy(samples, 0, captured.getSampleBuffer(), 0, samples.length);
+        }
+        captured.renderTime = status.getRenderTime();
+        captured.spp = status.getSpp();
+        return captured;
+    }
+
+    /**
+     * Copy the samples of a tile out of a captured scene that contains them. The render time is split by area.
+     */
+    private static Scene slice(Scene captured, Tile bounds, Tile tile, int fullWidth, int fullHeight) {
+        Scene slice = new Scene();
+        slice.copyState(captured);
+        tile.applyToScene(slice, fullWidth, fullHeight);
+        copyTile(captured.getSampleBuffer(), bounds, tile, slice.getSampleBuffer(), 3);
+        slice.renderTime = captured.renderTime * tile.getWidth() * tile.getHeight()
+                / ((long) bounds.getWidth() * bounds.getHeight());
+        slice.spp = captured.spp;
+        return slice;
+    }
+
+    /**
+     * Copy the sample counts of a tile out of the sample counts of the bounds that contain it.
+     */
+    private static int[] slice(int[] sampleCounts, Tile bounds, Tile tile) {
+        int[] slice = new int[tile.getWidth() * tile.getHeight()];
+        copyTile(sampleCounts, bounds, tile, slice, 1);
+        return slice;
+    }
+
+    /**
+     * Copy the values of a tile out of an array that contains the values of bounds that contain the tile, row by row.
+     *
+     * @param source         values of the bounds, e.g. samples or sample counts
+     * @param bounds         bounds that contain the tile
+     * @param tile           tile
+     * @param target         array to copy the values of the tile to
+     * @param valuesPerPixel number of values per pixel, e.g. 3 for RGB samples
+     */
+    static void copyTile(Object source, Tile bounds, Tile tile, Object target, int valuesPerPixel) {
+        int rowLength = tile.getWidth() * valuesPerPixel;
+        for (int y = 0; y < tile.getHeight(); y++) {
+            int sourceOffset = ((tile.getY() - bounds.getY() + y) * bounds.getWidth() + tile.getX() - bounds.getX())
+                    * valuesPerPixel;
+            System.arraycopy(source, sourceOffset, target, y * rowLength, rowLength);
+        }
+    }
+
+    /**
+     * Get the samples per pixel of the current render. While sampling adaptively, this is the average spp.
+     *
+     * @return current spp
+     */
     public int getCurrentSpp() {
-        return renderer.getRenderStatus().getSpp();
+        IntSupplier progress = adaptiveProgress;
+        return progress != null ? progress.getAsInt() : renderer.getRenderStatus().getSpp();
     }
 
     public abstract class RenderResult {
         private RenderResult() {
         }
 
+        /**
+         * Get the samples per pixel that were rendered, which is less than the target spp of the task if the render
+         * converged early.
+         *
+         * @return rendered spp
+         */
+        public abstract int getSpp();
+
         public abstract void writePngImage(OutputStream outputStream) throws IOException;
 
         public abstract void writeDump(OutputStream outputStream) throws IOException;
+
+        /**
+         * Check if the pixels of this result have different numbers of samples, see {@link AdaptiveSampler}.
+         *
+         * @return true if the result has per-pixel sample counts
+         */
+        public abstract boolean hasSampleCounts();
+
+        /**
+         * Write this result as a compact dump.
+         *
+         * @param withSampleCounts true to include the per-pixel sample counts, if there are any (version 2)
+         */
+        public abstract void writeCompactDump(OutputStream outputStream, CompactDump.Precision precision,
+                                              boolean withSampleCounts) throws IOException;
     }
 }
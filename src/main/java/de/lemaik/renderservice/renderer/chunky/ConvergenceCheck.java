@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.lemaik.renderservice.renderer.chunky;
+
+/**
+ * Estimates the noise of a render from its running sample buffer, so that rendering can stop once the image has
+ * converged.
+ * <p>
+ * Chunky only keeps the mean of the samples of every pixel, not their variance. Instead, the check keeps a copy of
+ * the buffer and compares it to the buffer at about twice the spp, which estimates the error of the newer buffer
+ * (see Dammertz et al., "A Hierarchical Automatic Stopping Condition for Monte Carlo Global Illumination"). The error
+ * of a pixel is the absolute difference of its channels divided by the square root of its brightness, so that dark
+ * pixels may be relatively noisier than bright ones. The image is split into blocks of
+ * {@value #BLOCK_SIZE}×{@value #BLOCK_SIZE} pixels and it has converged if the mean error of every block is below the
+ * threshold, so that a small noisy area isn't averaged away by a large converged one.
+ */
+public class ConvergenceCheck {
+    /**
+     * Minimum spp before the render may stop.
+     */
+    public static final int MIN_SPP = 16;
+    private static final int BLOCK_SIZE = 8;
+
+    private final int width;
+    private final int height;
+    private final double threshold;
+    private double[] snapshot;
+    private int snapshotSpp;
+    private boolean converged;
+
+    /**
+     * Create a new convergence check for a render.
+     *
+     * @param width     width of the rendered image
+     * @param height    height of the rendered image
+     * @param threshold maximum error of a converged block
+     */
+    public ConvergenceCheck(int width, int height, double threshold) {
+        this.width = width;
+        this.height = height;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Check if the render has converged. This must be called after every pass, while the sample buffer is not
+     * modified.
+     *
+     * @param samples sample buffer, with three channels per pixel
+     * @param spp     samples per pixel in the buffer
+     * @return true if the render has converged and can be stopped
+     */
+    public boolean update(double[] samples, int spp) {
+        if (snapshot == null) {
+            if (spp >= MIN_SPP / 2) {
+                snapshot = samples.clone();
+                snapshotSpp = spp;
+            }
+            return false;
+        }
+        if (spp < Math.max(MIN_SPP, snapshotSpp * 2)) {
+            return false;
+        }
+        if (getMaxBlockError(samples, spp) < threshold) {
+            converged = true;
+            return true;
+        }
+        System.arraycopy(samples, 0, snapshot, 0, samples.length);
+        snapshotSpp = spp;
+        return false;
+    }
+
+    /**
+     * Check if the render was found to be converged.
+     *
+     * @return true if {@link #update} returned true
+     */
+    public boolean isConverged() {
+        return converged;
+    }
+
+    private double getMaxBlockError(double[] samples, int spp) {
+        double maxError = 0;
+        for (double error : getBlockErrors(samples, spp, snapshot, snapshotSpp, width, height, BLOCK_SIZE)) {
+            maxError = Math.max(maxError, error);
+        }
+        return maxError;
+    }
+
+    /**
+     * Estimate the error of every block of an image by comparing it to a copy with fewer samples.
+     *
+     * @param samples     sample buffer
+     * @param spp         samples per pixel in the sample buffer
+     * @param snapshot    copy of the sample buffer with fewer samples
+     * @param snapshotSpp samples per pixel in the copy
+     * @param width       width of the image
+     * @param height      height of the image
+     * @param blockSize   width and height of the blocks
+     * @return mean error of the pixels of every block, row by row
+     */
+    static double[] getBlockErrors(double[] samples, int spp, double[] snapshot, int snapshotSpp,
+                                   int width, int height, int blockSize) {
+        // the difference of the means at s0 and s1 spp has the variance of a mean at s1 spp times (s1 - s0) / s0
+        double scale = Math.sqrt((double) snapshotSpp / (spp - snapshotSpp));
+        int blocksX = (width + blockSize - 1) / blockSize;
+        int blocksY = (height + blockSize - 1) / blockSize;
+        double[] errors = new double[blocksX * blocksY];
+        for (int blockY = 0; blockY < blocksY; blockY++) {
+            for (int blockX = 0; blockX < blocksX; blockX++) {
+                int minX = blockX * blockSize;
+                int minY = blockY * blockSize;
+                int maxX = Math.min(minX + blockSize, width);
+                int maxY = Math.min(minY + blockSize, height);
+                double blockError = 0;
+                for (int y = minY; y < maxY; y++) {
+                    for (int x = minX; x < maxX; x++) {
+                        int i = (y * width + x) * 3;
+                        double difference = Math.abs(samples[i] - snapshot[i])
+                                + Math.abs(samples[i + 1] - snapshot[i + 1])
+                                + Math.abs(samples[i + 2] - snapshot[i + 2]);
+                        double brightness = samples[i] + samples[i + 1] + samples[i + 2];
+                        if (difference > 0) {
+                            blockError += difference * scale / Math.sqrt(Math.max(brightness, 1e-4));
+                        }
+                    }
+                }
+                errors[blockY * blocksX + blockX] = blockError / ((maxX - minX) * (maxY - minY));
+            }
+        }
+        return errors;
+    }
+}
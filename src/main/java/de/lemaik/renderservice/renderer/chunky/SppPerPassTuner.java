@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.lemaik.renderservice.renderer.chunky;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Picks the number of samples per pixel that Chunky renders per pass, based on the render speed of previous tasks.
+ * <p>
+ * Every pass ends with a synchronization of all render threads, which is noticeable on machines with many cores and
+ * on small tiles. Rendering more samples per pass reduces that overhead, but makes progress reports and aborts
+ * coarser. The tuner measures the speed of every render and climbs from one sample per pass to the fastest setting.
+ * It keeps the measured speeds per size class (the number of rendered pixels, in powers of four), since the best
+ * setting depends on the amount of work per pass. Neighbouring settings are tried again from time to time, so that
+ * the tuner follows changes in the scenes.
+ */
+public class SppPerPassTuner {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SppPerPassTuner.class);
+    private static final int MAX_SPP_PER_PASS = 32;
+    private static final double MAX_PASS_SECONDS = 5;
+    private static final int EXPLORE_INTERVAL = 20;
+    private static final long MIN_RENDER_TIME_MILLIS = 500;
+    private static final double SMOOTHING = 0.3;
+
+    private final Map<Integer, SizeClass> sizeClasses = new HashMap<>();
+
+    /**
+     * Pick the samples per pass for a render.
+     *
+     * @param pixels    number of pixels to render
+     * @param targetSpp samples per pixel to render
+     * @return samples per pass, a divisor of the target spp so that the render doesn't overshoot it
+     */
+    public synchronized int choose(long pixels, int targetSpp) {
+        SizeClass sizeClass = sizeClasses.computeIfAbsent(getSizeClass(pixels), c -> new SizeClass());
+        int best = sizeClass.getBest(pixels, targetSpp);
+        int next = best;
+        int up = best * 2;
+        if (!sizeClass.speeds.containsKey(best)) {
+            // measure the current best setting first
+            next = best;
+        } else if (isAllowed(sizeClass, up, pixels, targetSpp) && !sizeClass.speeds.containsKey(up)) {
+            next = up;
+        } else if (++sizeClass.rendersSinceExploring >= EXPLORE_INTERVAL) {
+            sizeClass.rendersSinceExploring = 0;
+            sizeClass.exploreUp = !sizeClass.exploreUp;
+            int neighbour = sizeClass.exploreUp ? up : best / 2;
+            if (neighbour >= 1 && isAllowed(sizeClass, neighbour, pixels, targetSpp)) {
+                next = neighbour;
+            }
+        }
+        if (next != sizeClass.lastChoice) {
+            LOGGER.info("Rendering {} pixels with {} samples per pass", pixels, next);
+            sizeClass.lastChoice = next;
+        }
+        return next;
+    }
+
+    /**
+     * Record the speed of a render.
+     *
+     * @param pixels           number of rendered pixels
+     * @param sppPerPass       samples per pass that were used
+     * @param spp              rendered samples per pixel
+     * @param renderTimeMillis render time, in milliseconds
+     */
+    public synchronized void record(long pixels, int sppPerPass, int spp, long renderTimeMillis) {
+        if (renderTimeMillis < MIN_RENDER_TIME_MILLIS || spp <= 0) {
+            // too short to tell the settings apart
+            return;
+        }
+        SizeClass sizeClass = sizeClasses.computeIfAbsent(getSizeClass(pixels), c -> new SizeClass());
+        double speed = (double) pixels * spp / (renderTimeMillis / 1000.0);
+        sizeClass.speeds.merge(sppPerPass, speed, (old, current) -> old + SMOOTHING * (current - old));
+    }
+
+    private static boolean isAllowed(SizeClass sizeClass, int sppPerPass, long pixels, int targetSpp) {
+        if (sppPerPass > MAX_SPP_PER_PASS || targetSpp % sppPerPass != 0) {
+            return false;
+        }
+        // estimate the duration of a pass from the fastest known speed
+        double speed = sizeClass.speeds.values().stream().mapToDouble(Double::doubleValue).max().orElse(0);
+        return speed == 0 || pixels * sppPerPass / speed <= MAX_PASS_SECONDS;
+    }
+
+    private static int getSizeClass(long pixels) {
+        return (63 - Long.numberOfLeadingZeros(Math.max(1, pixels))) / 2;
+    }
+
+    private static class SizeClass {
+        private final Map<Integer, Double> speeds = new HashMap<>();
+        private int rendersSinceExploring;
+        private boolean exploreUp;
+        private int lastChoice = 1;
+
+        /**
+         * Get the fastest allowed setting, or one sample per pass if none was measured yet.
+         */
+        private int getBest(long pixels, int targetSpp) {
+            int best = 1;
+            double bestSpeed = 0;
+            for (Map.Entry<Integer, Double> entry : speeds.entrySet()) {
+                if (entry.getValue() > bestSpeed && isAllowed(this, entry.getKey(), pixels, targetSpp)) {
+                    best = entry.getKey();
+                    bestSpeed = entry.getValue();
+                }
+            }
+            return best;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.lemaik.renderservice.renderer.chunky;
+
+import de.lemaik.renderservice.renderer.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.llbit.chunky.resources.BitmapImage;
+import se.llbit.chunky.resources.Texture;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the decoded textures of recently used resource pack stacks in memory, so that switching back to a stack
+ * doesn't need to open and decode its packs again.
+ * <p>
+ * A snapshot contains the images of all textures that are referenced by static fields of {@link Texture}. Other
+ * resources that Chunky loads from resource packs (e.g. biome color maps) are not part of the snapshot, so this cache
+ * should only be enabled if the used packs don't change them.
+ */
+public class TextureCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TextureCache.class);
+    private static final List<Texture> TEXTURES = findTextures();
+
+    private final long maxSize;
+    private final LinkedHashMap<List<String>, Snapshot> snapshots = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+
+    /**
+     * Create a new texture cache.
+     *
+     * @param maxSize maximum size of the cached images, in bytes
+     */
+    public TextureCache(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Restore the textures of the given resource pack stack, if they are cached.
+     *
+     * @param stack resource pack stack, identified by the hashes of the packs in order
+     * @return true if the textures were restored, false if they need to be loaded
+     */
+    public synchronized boolean restore(List<String> stack) {
+        Snapshot snapshot = snapshots.get(stack);
+        Metrics.recordCacheLookup("texture_cache", snapshot != null);
+        if (snapshot == null) {
+            return false;
+        }
+        for (int i = 0; i < TEXTURES.size(); i++) {
+            if (snapshot.images[i] != null) {
+                TEXTURES.get(i).setTexture(snapshot.images[i]);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Store the currently loaded textures as the textures of the given resource pack stack.
+     *
+     * @param stack resource pack stack, identified by the hashes of the packs in order
+     */
+    public synchronized void store(List<String> stack) {
+        BitmapImage[] images = new BitmapImage[TEXTURES.size()];
+        Set<BitmapImage> counted = Collections.newSetFromMap(new IdentityHashMap<>());
+        long snapshotSize = 0;
+        for (int i = 0; i < images.length; i++) {
+            images[i] = TEXTURES.get(i).getBitmap();
+            if (images[i] != null && counted.add(images[i])) {
+                snapshotSize += (long) images[i].data.length * Integer.BYTES;
+            }
+        }
+        if (snapshotSize > maxSize) {
+            LOGGER.info("Textures of {} are too large to be cached ({} bytes)", stack, snapshotSize);
+            return;
+        }
+
+        Snapshot previous = snapshots.put(stack, new Snapshot(images, snapshotSize));
+        if (previous != null) {
+            size -= previous.size;
+        }
+        size += snapshotSize;
+        Iterator<Map.Entry<List<String>, Snapshot>> iterator = snapshots.entrySet().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            Map.Entry<List<String>, Snapshot> eldest = iterator.next();
+            if (!eldest.getKey().equals(stack)) {
+                size -= eldest.getValue().size;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Find all textures that are referenced by static fields of {@link Texture}, including texture arrays.
+     */
+    private static List<Texture> findTextures() {
+        Set<Texture> textures = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Texture> ordered = new ArrayList<>();
+        for (Field field : Texture.class.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers())) {
+                continue;
+            }
+            try {
+                if (Texture.class.isAssignableFrom(field.getType())) {
+                    field.setAccessible(true);
+                    Texture texture = (Texture) field.get(null);
+                    if (texture != null && textures.add(texture)) {
+                        ordered.add(texture);
+                    }
+                } else if (field.getType().isArray() && Texture.class.isAssignableFrom(field.getType().getComponentType())) {
+                    field.setAccessible(true);
+                    Texture[] array = (Texture[]) field.get(null);
+                    if (array != null) {
+                        for (Texture texture : array) {
+                            if (texture != null && textures.add(texture)) {
+                                ordered.add(texture);
+                            }
+                        }
+                    }
+                }
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                LOGGER.warn("Could not access texture {}", field.getName(), e);
+            }
+        }
+        return ordered;
+    }
+
+    private static class Snapshot {
+        private final BitmapImage[] images;
+        private final long size;
+
+        private Snapshot(BitmapImage[] images, long size) {
+            this.images = images;
+            this.size = size;
+        }
+    }
+}
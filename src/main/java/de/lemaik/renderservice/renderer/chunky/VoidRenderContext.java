@@ -22,16 +22,53 @@ import se.llbit.chunky.main.Chunky;
 import se.llbit.chunky.main.ChunkyOptions;
 import se.llbit.chunky.renderer.RenderContext;
 
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * A {@link RenderContext} for Chunky that does not save any files.
+ * A {@link RenderContext} for Chunky that does not save any files. Scene files can be provided as streams instead of
+ * reading them from the scene directory.
  */
 public class VoidRenderContext extends RenderContext {
+    private final Map<String, SceneFileSource> sceneFileSources = new ConcurrentHashMap<>();
+
     public VoidRenderContext() {
         super(new Chunky(ChunkyOptions.getDefaults()));
     }
 
+    /**
+     * Read the given scene file from the given source the next time Chunky loads it.
+     *
+     * @param fileName scene file name, e.g. {@code scene.octree2}
+     * @param source   source of the file
+     */
+    public void setSceneFileSource(String fileName, SceneFileSource source) {
+        sceneFileSources.put(fileName, source);
+    }
+
+    public void clearSceneFileSources() {
+        sceneFileSources.clear();
+    }
+
+    @Override
+    public InputStream getSceneFileInputStream(String fileName) throws FileNotFoundException {
+        SceneFileSource source = sceneFileSources.remove(fileName);
+        if (source == null) {
+            return super.getSceneFileInputStream(fileName);
+        }
+        try {
+            return source.open();
+        } catch (IOException e) {
+            FileNotFoundException exception = new FileNotFoundException("Could not open " + fileName);
+            exception.initCause(e);
+            throw exception;
+        }
+    }
+
     @Override
     public OutputStream getSceneFileOutputStream(String fileName) {
         return new OutputStream() {
@@ -49,4 +86,9 @@ public class VoidRenderContext extends RenderContext {
     public void setSppPerPass(int sppPerPass) {
         config.sppPerPass = sppPerPass;
     }
+
+    @FunctionalInterface
+    public interface SceneFileSource {
+        InputStream open() throws IOException;
+    }
 }
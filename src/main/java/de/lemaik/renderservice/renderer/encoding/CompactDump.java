@@ -0,0 +1,424 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.lemaik.renderservice.renderer.encoding;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A compact render dump format that is compressed in parallel.
+ * <p>
+ * All numbers are big endian. The dump starts with a header:
+ * <pre>
+ *   "CCDP"           magic
+ *   int version      1, or 2 if the dump contains sample counts
+ *   int width
+ *   int height
+ *   int spp
+ *   long renderTime  milliseconds
+ *   byte precision   0 for 32-bit floats, 1 for 16-bit half floats
+ *   int rowsPerChunk
+ *   int chunkCount
+ * </pre>
+ * followed by {@code chunkCount} chunks, each consisting of an int length and that many bytes of zlib data. A chunk
+ * contains the RGB samples of {@code rowsPerChunk} rows (the last chunk may contain less rows). The bytes of the
+ * samples in a chunk are shuffled into planes (first byte of every value, then the second byte of every value, ...)
+ * before compressing them, which compresses floating point values much better.
+ * <p>
+ * Version 2 is used for renders that rendered a different number of samples for every pixel. The spp in its header
+ * is the average spp. The sample chunks are followed by one more chunk that contains the number of samples of every
+ * pixel as ints, shuffled in the same way.
+ */
+public class CompactDump {
+    public static final String FORMAT_NAME = "ccdump";
+    /**
+     * Name of the format with per-pixel sample counts (version 2), which servers that only read version 1 don't
+     * accept.
+     */
+    public static final String FORMAT_NAME_WITH_SAMPLE_COUNTS = "ccdump2";
+
+    private static final byte[] MAGIC = "CCDP".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+    private static final int VERSION_WITH_SAMPLE_COUNTS = 2;
+    private static final int CHUNK_SIZE = 1024 * 1024; // uncompressed bytes per chunk
+
+    private final int width;
+    private final int height;
+    private final int spp;
+    private final long renderTime;
+    private final double[] samples;
+    private final int[] sampleCounts;
+
+    /**
+     * Create a new dump.
+     *
+     * @param width      width, in pixels
+     * @param height     height, in pixels
+     * @param spp        samples per pixel
+     * @param renderTime render time, in milliseconds
+     * @param samples    RGB samples, row by row
+     */
+    public CompactDump(int width, int height, int spp, long renderTime, double[] samples) {
+        this(width, height, spp, renderTime, samples, null);
+    }
+
+    /**
+     * Create a new dump with per-pixel sample counts.
+     *
+     * @param width        width, in pixels
+     * @param height       height, in pixels
+     * @param spp          average samples per pixel
+     * @param renderTime   render time, in milliseconds
+     * @param samples      RGB samples, row by row
+     * @param sampleCounts number of samples of every pixel, row by row, or null if every pixel has {@code spp} samples
+     */
+    public CompactDump(int width, int height, int spp, long renderTime, double[] samples, int[] sampleCounts) {
+        if (samples.length < width * height * 3) {
+            throw new IllegalArgumentException("Expected " + (width * height * 3) + " samples but got " + samples.length);
+        }
+        if (sampleCounts != null && sampleCounts.length < width * height) {
+            throw new IllegalArgumentException("Expected " + (width * height) + " sample counts but got "
+                    + sampleCounts.length);
+        }
+        this.width = width;
+        this.height = height;
+        this.spp = spp;
+        this.renderTime = renderTime;
+        this.samples = samples;
+        this.sampleCounts = sampleCounts;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getSpp() {
+        return spp;
+    }
+
+    public long getRenderTime() {
+        return renderTime;
+    }
+
+    public double[] getSamples() {
+        return samples;
+    }
+
+    /**
+     * Get the number of samples of every pixel.
+     *
+     * @return sample counts, row by row, or null if every pixel has {@link #getSpp()} samples
+     */
+    public int[] getSampleCounts() {
+        return sampleCounts;
+    }
+
+    public void write(OutputStream out, Precision precision) throws IOException {
+        write(out, precision, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Write this dump. The chunks are compressed in parallel on the given executor.
+     *
+     * @param out       output stream
+     * @param precision precision of the written samples
+     * @param executor  executor to compress the chunks on
+     * @throws IOException if writing the dump fails
+     */
+    public void write(OutputStream out, Precision precision, Executor executor) throws IOException {
+        int rowsPerChunk = Math.max(1, CHUNK_SIZE / (width * 3 * precision.bytes));
+        List<CompletableFuture<byte[]>> chunks = new ArrayList<>();
+        for (int firstRow = 0; firstRow < height; firstRow += rowsPerChunk) {
+            int start = firstRow * width * 3;
+            int end = Math.min(height, firstRow + rowsPerChunk) * width * 3;
+            chunks.add(CompletableFuture.supplyAsync(() -> compressChunk(start, end, precision), executor));
+        }
+        if (sampleCounts != null) {
+            chunks.add(CompletableFuture.supplyAsync(this::compressSampleCounts, executor));
+        }
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.write(MAGIC);
+        data.writeInt(sampleCounts != null ? VERSION_WITH_SAMPLE_COUNTS : VERSION);
+        data.writeInt(width);
+        data.writeInt(height);
+        data.writeInt(spp);
+        data.writeLong(renderTime);
+        data.writeByte(precision.id);
+        data.writeInt(rowsPerChunk);
+        data.writeInt(sampleCounts != null ? chunks.size() - 1 : chunks.size());
+        for (CompletableFuture<byte[]> chunk : chunks) {
+            byte[] compressed;
+            try {
+                compressed = chunk.join();
+            } catch (CompletionException e) {
+                throw new IOException("Compressing the dump failed", e.getCause());
+            }
+            data.writeInt(compressed.length);
+            data.write(compressed);
+        }
+        data.flush();
+    }
+
+    private byte[] compressChunk(int start, int end, Precision precision) {
+        int count = end - start;
+        byte[] shuffled = new byte[count * precision.bytes];
+        for (int i = 0; i < count; i++) {
+            int bits = precision == Precision.HALF
+                    ? floatToHalf((float) samples[start + i])
+                    : Float.floatToRawIntBits((float) samples[start + i]);
+            for (int b = 0; b < precision.bytes; b++) {
+                shuffled[b * count + i] = (byte) (bits >>> ((precision.bytes - 1 - b) * 8));
+            }
+        }
+        return compress(shuffled);
+    }
+
+    private byte[] compressSampleCounts() {
+        int count = width * height;
+        byte[] shuffled = new byte[count * 4];
+        for (int i = 0; i < count; i++) {
+            for (int b = 0; b < 4; b++) {
+                shuffled[b * count + i] = (byte) (sampleCounts[i] >>> ((3 - b) * 8));
+            }
+        }
+        return compress(shuffled);
+    }
+
+    private static byte[] compress(byte[] shuffled) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(shuffled);
+            deflater.finish();
+            byte[] compressed = new byte[Math.max(64, shuffled.length / 2)];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                length += deflater.deflate(compressed, length, compressed.length - length);
+            }
+            return Arrays.copyOf(compressed, length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Read a dump.
+     *
+     * @param in input stream
+     * @return the dump
+     * @throws IOException if the dump is invalid or reading it fails
+     */
+    public static CompactDump read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        byte[] magic = new byte[MAGIC.length];
+        data.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a compact dump");
+        }
+        int version = data.readInt();
+        if (version != VERSION && version != VERSION_WITH_SAMPLE_COUNTS) {
+            throw new IOException("Unsupported compact dump version " + version);
+        }
+        int width = data.readInt();
+        int height = data.readInt();
+        int spp = data.readInt();
+        long renderTime = data.readLong();
+        Precision precision = Precision.byId(data.readByte());
+        int rowsPerChunk = data.readInt();
+        int chunkCount = data.readInt();
+        if (width <= 0 || height <= 0 || rowsPerChunk <= 0
+                || chunkCount != (height + rowsPerChunk - 1) / rowsPerChunk) {
+            throw new IOException("Invalid compact dump header");
+        }
+
+        double[] samples = new double[width * height * 3];
+        int[] sampleCounts = null;
+        Inflater inflater = new Inflater();
+        try {
+            for (int chunk = 0; chunk < chunkCount; chunk++) {
+                int start = chunk * rowsPerChunk * width * 3;
+                int count = Math.min(height - chunk * rowsPerChunk, rowsPerChunk) * width * 3;
+                byte[] compressed = new byte[data.readInt()];
+                data.readFully(compressed);
+
+                byte[] shuffled = new byte[count * precision.bytes];
+                inflate(inflater, compressed, shuffled, "chunk " + chunk);
+
+                for (int i = 0; i < count; i++) {
+                    int bits = 0;
+                    for (int b = 0; b < precision.bytes; b++) {
+                        bits = (bits << 8) | (shuffled[b * count + i] & 0xff);
+                    }
+                    samples[start + i] = precision == Precision.HALF ? halfToFloat(bits) : Float.intBitsToFloat(bits);
+                }
+            }
+            if (version == VERSION_WITH_SAMPLE_COUNTS) {
+                int count = width * height;
+                byte[] compressed = new byte[data.readInt()];
+                data.readFully(compressed);
+                byte[] shuffled = new byte[count * 4];
+                inflate(inflater, compressed, shuffled, "sample counts");
+                sampleCounts = new int[count];
+                for (int i = 0; i < count; i++) {
+                    sampleCounts[i] = (shuffled[i] & 0xff) << 24 | (shuffled[count + i] & 0xff) << 16
+                            | (shuffled[2 * count + i] & 0xff) << 8 | (shuffled[3 * count + i] & 0xff);
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Invalid compact dump data", e);
+        } finally {
+            inflater.end();
+        }
+        return new CompactDump(width, height, spp, renderTime, samples, sampleCounts);
+    }
+
+    private static void inflate(Inflater inflater, byte[] compressed, byte[] target, String name)
+            throws DataFormatException, IOException {
+        inflater.reset();
+        inflater.setInput(compressed);
+        int length = 0;
+        while (length < target.length && !inflater.finished()) {
+            int read = inflater.inflate(target, length, target.length - length);
+            if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                break;
+            }
+            length += read;
+        }
+        if (length != target.length || !inflater.finished()) {
+            throw new IOException("Invalid compact dump " + name);
+        }
+    }
+
+    /**
+     * Convert a float to IEEE 754 half precision, rounding to the nearest even value.
+     */
+    static int floatToHalf(float value) {
+        int bits = Float.floatToRawIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int exponent = (bits >>> 23) & 0xff;
+        int mantissa = bits & 0x7fffff;
+
+        if (exponent == 0xff) {
+            // infinity or NaN
+            return sign | 0x7c00 | (mantissa != 0 ? 0x200 : 0);
+        }
+        int halfExponent = exponent - 127 + 15;
+        if (halfExponent >= 0x1f) {
+            // clamp to the largest finite value
+            return sign | 0x7bff;
+        }
+        if (halfExponent <= 0) {
+            if (halfExponent < -10) {
+                // underflow to zero
+                return sign;
+            }
+            // subnormal half
+            mantissa |= 0x800000;
+            int shift = 14 - halfExponent;
+            int half = mantissa >>> shift;
+            int remainder = mantissa & ((1 << shift) - 1);
+            int halfway = 1 << (shift - 1);
+            if (remainder > halfway || (remainder == halfway && (half & 1) != 0)) {
+                half++;
+            }
+            return sign | half;
+        }
+        int half = (halfExponent << 10) | (mantissa >>> 13);
+        int remainder = mantissa & 0x1fff;
+        if (remainder > 0x1000 || (remainder == 0x1000 && (half & 1) != 0)) {
+            // may carry into the exponent, which correctly rounds up to the next power of two
+            half = Math.min(half + 1, 0x7bff);
+        }
+        return sign | half;
+    }
+
+    /**
+     * Convert an IEEE 754 half precision value to a float.
+     */
+    static float halfToFloat(int half) {
+        int sign = (half & 0x8000) << 16;
+        int exponent = (half >>> 10) & 0x1f;
+        int mantissa = half & 0x3ff;
+
+        if (exponent == 0x1f) {
+            return Float.intBitsToFloat(sign | 0x7f800000 | (mantissa << 13));
+        }
+        if (exponent == 0) {
+            if (mantissa == 0) {
+                return Float.intBitsToFloat(sign);
+            }
+            // subnormal half, normalize it
+            exponent = 1;
+            while ((mantissa & 0x400) == 0) {
+                mantissa <<= 1;
+                exponent--;
+            }
+            mantissa &= 0x3ff;
+        }
+        return Float.intBitsToFloat(sign | ((exponent - 15 + 127) << 23) | (mantissa << 13));
+    }
+
+    public enum Precision {
+        /**
+         * 32-bit floats.
+         */
+        FLOAT(0, 4),
+        /**
+         * 16-bit half floats, with a relative error of up to 2^-11. Values above 65504 are clamped to 65504.
+         */
+        HALF(1, 2);
+
+        private final int id;
+        private final int bytes;
+
+        Precision(int id, int bytes) {
+            this.id = id;
+            this.bytes = bytes;
+        }
+
+        static Precision byId(int id) throws IOException {
+            for (Precision precision : values()) {
+                if (precision.id == id) {
+                    return precision;
+                }
+            }
+            throw new IOException("Unknown compact dump precision " + id);
+        }
+    }
+}
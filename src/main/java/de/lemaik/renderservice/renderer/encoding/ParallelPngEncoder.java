@@ -0,0 +1,330 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.lemaik.renderservice.renderer.encoding;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A PNG encoder that filters and compresses blocks of rows in parallel.
+ * <p>
+ * Every block is compressed into a raw deflate stream that ends on a byte boundary (using a sync flush), so the
+ * compressed blocks can simply be concatenated into a single zlib stream. The Adler-32 checksums of the blocks are
+ * combined for the zlib trailer. Each block is written as its own IDAT chunk as soon as it and all blocks before it
+ * are compressed.
+ */
+public class ParallelPngEncoder {
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    private static final int BLOCK_SIZE = 256 * 1024; // uncompressed bytes per block
+    private static final int ADLER_BASE = 65521;
+
+    private static final int FILTER_NONE = 0;
+    private static final int FILTER_SUB = 1;
+    private static final int FILTER_UP = 2;
+    private static final int FILTER_AVERAGE = 3;
+    private static final int FILTER_PAETH = 4;
+
+    private final int compressionLevel;
+    private final Executor executor;
+
+    /**
+     * Create a new PNG encoder that uses the common fork join pool.
+     *
+     * @param compressionLevel deflate compression level, from 0 (no compression) to 9 (best compression)
+     */
+    public ParallelPngEncoder(int compressionLevel) {
+        this(compressionLevel, ForkJoinPool.commonPool());
+    }
+
+    public ParallelPngEncoder(int compressionLevel, Executor executor) {
+        if (compressionLevel < Deflater.NO_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + compressionLevel);
+        }
+        this.compressionLevel = compressionLevel;
+        this.executor = executor;
+    }
+
+    /**
+     * Write an image as PNG.
+     *
+     * @param out    output stream
+     * @param argb   pixels in ARGB format, row by row
+     * @param width  image width
+     * @param height image height
+     * @param alpha  true to include the alpha channel, false to write an RGB image
+     * @throws IOException if writing the image fails
+     */
+    public void write(OutputStream out, int[] argb, int width, int height, boolean alpha) throws IOException {
+        int bytesPerPixel = alpha ? 4 : 3;
+        int rowsPerBlock = Math.max(1, BLOCK_SIZE / (width * bytesPerPixel + 1));
+
+        List<CompletableFuture<CompressedBlock>> blocks = new ArrayList<>();
+        for (int firstRow = 0; firstRow < height; firstRow += rowsPerBlock) {
+            int start = firstRow;
+            int end = Math.min(height, firstRow + rowsPerBlock);
+            blocks.add(CompletableFuture.supplyAsync(
+                    () -> compressBlock(argb, width, bytesPerPixel, start, end, end == height), executor));
+        }
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.write(SIGNATURE);
+        ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+        DataOutputStream headerData = new DataOutputStream(header);
+        headerData.writeInt(width);
+        headerData.writeInt(height);
+        headerData.writeByte(8); // bit depth
+        headerData.writeByte(alpha ? 6 : 2); // color type
+        headerData.writeByte(0); // compression method
+        headerData.writeByte(0); // filter method
+        headerData.writeByte(0); // interlace method
+        writeChunk(data, "IHDR", header.toByteArray(), 0, header.size());
+
+        long adler = 1;
+        for (int i = 0; i < blocks.size(); i++) {
+            CompressedBlock block;
+            try {
+                block = blocks.get(i).join();
+            } catch (CompletionException e) {
+                throw new IOException("Compressing the image failed", e.getCause());
+            }
+            adler = combineAdler32(adler, block.adler32, block.uncompressedLength);
+
+            ByteArrayOutputStream chunk = new ByteArrayOutputStream(block.length + 6);
+            if (i == 0) {
+                chunk.write(0x78);
+                chunk.write(zlibFlags());
+            }
+            chunk.write(block.data, 0, block.length);
+            if (i == blocks.size() - 1) {
+                chunk.write((int) (adler >>> 24));
+                chunk.write((int) (adler >>> 16));
+                chunk.write((int) (adler >>> 8));
+                chunk.write((int) adler);
+            }
+            writeChunk(data, "IDAT", chunk.toByteArray(), 0, chunk.size());
+        }
+
+        writeChunk(data, "IEND", new byte[0], 0, 0);
+        data.flush();
+    }
+
+    private CompressedBlock compressBlock(int[] argb, int width, int bytesPerPixel, int startRow, int endRow,
+                                         boolean last) {
+        int rowLength = width * bytesPerPixel;
+        byte[] filtered = new byte[(endRow - startRow) * (rowLength + 1)];
+        byte[] previous = new byte[rowLength];
+        byte[] current = new byte[rowLength];
+        if (startRow > 0) {
+            toBytes(argb, width, bytesPerPixel, startRow - 1, previous);
+        }
+
+        int offset = 0;
+        for (int y = startRow; y < endRow; y++) {
+            toBytes(argb, width, bytesPerPixel, y, current);
+            offset = filterRow(current, previous, bytesPerPixel, filtered, offset);
+            byte[] tmp = previous;
+            previous = current;
+            current = tmp;
+        }
+
+        Adler32 adler = new Adler32();
+        adler.update(filtered, 0, filtered.length);
+
+        Deflater deflater = new Deflater(compressionLevel, true);
+        try {
+            deflater.setInput(filtered);
+            byte[] compressed = new byte[Math.max(64, filtered.length / 2)];
+            int length = 0;
+            if (last) {
+                deflater.finish();
+            }
+            while (true) {
+                if (length == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                length += deflater.deflate(compressed, length, compressed.length - length,
+                        last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+                // a sync flush is complete once it doesn't fill up the output buffer
+                if (last ? deflater.finished() : length < compressed.length) {
+                    break;
+                }
+            }
+            return new CompressedBlock(compressed, length, adler.getValue(), filtered.length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void toBytes(int[] argb, int width, int bytesPerPixel, int y, byte[] row) {
+        int offset = y * width;
+        int i = 0;
+        for (int x = 0; x < width; x++) {
+            int pixel = argb[offset + x];
+            row[i++] = (byte) (pixel >>> 16);
+            row[i++] = (byte) (pixel >>> 8);
+            row[i++] = (byte) pixel;
+            if (bytesPerPixel == 4) {
+                row[i++] = (byte) (pixel >>> 24);
+            }
+        }
+    }
+
+    /**
+     * Filter a row using the filter type with the smallest sum of absolute differences (the heuristic recommended by
+     * the PNG specification) and write it, prefixed by the filter type, to the output.
+     *
+     * @return offset after the written row
+     */
+    private int filterRow(byte[] row, byte[] previous, int bytesPerPixel, byte[] out, int offset) {
+        if (compressionLevel == Deflater.NO_COMPRESSION) {
+            out[offset] = FILTER_NONE;
+            System.arraycopy(row, 0, out, offset + 1, row.length);
+            return offset + row.length + 1;
+        }
+
+        int bestFilter = FILTER_NONE;
+        long bestSum = Long.MAX_VALUE;
+        for (int filter = FILTER_NONE; filter <= FILTER_PAETH; filter++) {
+            long sum = 0;
+            for (int i = 0; i < row.length && sum < bestSum; i++) {
+                sum += Math.abs((byte) filter(filter, row, previous, bytesPerPixel, i));
+            }
+            if (sum < bestSum) {
+                bestSum = sum;
+                bestFilter = filter;
+            }
+        }
+
+        out[offset] = (byte) bestFilter;
+        for (int i = 0; i < row.length; i++) {
+            out[offset + 1 + i] = (byte) filter(bestFilter, row, previous, bytesPerPixel, i);
+        }
+        return offset + row.length + 1;
+    }
+
+    private static int filter(int filter, byte[] row, byte[] previous, int bytesPerPixel, int i) {
+        int x = row[i] & 0xff;
+        int a = i >= bytesPerPixel ? row[i - bytesPerPixel] & 0xff : 0;
+        int b = previous[i] & 0xff;
+        switch (filter) {
+            case FILTER_SUB:
+                return x - a;
+            case FILTER_UP:
+                return x - b;
+            case FILTER_AVERAGE:
+                return x - ((a + b) >>> 1);
+            case FILTER_PAETH:
+                int c = i >= bytesPerPixel ? previous[i - bytesPerPixel] & 0xff : 0;
+                return x - paeth(a, b, c);
+            case FILTER_NONE:
+            default:
+                return x;
+        }
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) {
+            return a;
+        }
+        return pb <= pc ? b : c;
+    }
+
+    private int zlibFlags() {
+        // FLEVEL is informational only, the values are chosen so that the header is a multiple of 31
+        if (compressionLevel <= 1) {
+            return 0x01;
+        } else if (compressionLevel <= 5) {
+            return 0x5e;
+        } else if (compressionLevel == 6) {
+            return 0x9c;
+        }
+        return 0xda;
+    }
+
+    private static void writeChunk(DataOutputStream out, String type, byte[] data, int offset, int length)
+            throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, offset, length);
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(data, offset, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * Combine the Adler-32 checksums of two consecutive byte sequences, like zlib's {@code adler32_combine}.
+     *
+     * @param adler1  checksum of the first sequence
+     * @param adler2  checksum of the second sequence
+     * @param length2 length of the second sequence
+     * @return checksum of both sequences
+     */
+    static long combineAdler32(long adler1, long adler2, long length2) {
+        long remainder = length2 % ADLER_BASE;
+        long sum1 = adler1 & 0xffff;
+        long sum2 = (remainder * sum1) % ADLER_BASE;
+        sum1 += (adler2 & 0xffff) + ADLER_BASE - 1;
+        sum2 += ((adler1 >>> 16) & 0xffff) + ((adler2 >>> 16) & 0xffff) + ADLER_BASE - remainder;
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum2 >= ((long) ADLER_BASE << 1)) {
+            sum2 -= ((long) ADLER_BASE << 1);
+        }
+        if (sum2 >= ADLER_BASE) {
+            sum2 -= ADLER_BASE;
+        }
+        return sum1 | (sum2 << 16);
+    }
+
+    private static class CompressedBlock {
+        private final byte[] data;
+        private final int length;
+        private final long adler32;
+        private final int uncompressedLength;
+
+        private CompressedBlock(byte[] data, int length, long adler32, int uncompressedLength) {
+            this.data = data;
+            this.length = length;
+            this.adler32 = adler32;
+            this.uncompressedLength = uncompressedLength;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.lemaik.renderservice.renderer.metrics;
+
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * A value that only increases, e.g. the number of downloaded bytes.
+ */
+public class Counter extends Metric<DoubleAdder> {
+    Counter(String name, String help, String... labelNames) {
+        super(name, help, "counter", labelNames);
+    }
+
+    /**
+     * Increment the counter with the given label values.
+     *
+     * @param amount      amount to add, must not be negative
+     * @param labelValues label values, in the order of the label names
+     */
+    public void inc(double amount, String... labelValues) {
+        child(labelValues).add(amount);
+    }
+
+    @Override
+    DoubleAdder newChild() {
+        return new DoubleAdder();
+    }
+
+    @Override
+    void write(StringBuilder out, String labels, DoubleAdder child) {
+        writeSample(out, "", labels, child.sum());
+    }
+}
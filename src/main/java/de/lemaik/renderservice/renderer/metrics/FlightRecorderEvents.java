@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.lemaik.renderservice.renderer.metrics;
+
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+
+import java.util.List;
+
+/**
+ * Switch for the Java Flight Recorder events of the render node. The events are not registered by default, so that
+ * they cost nothing unless they are enabled. Once enabled, they are recorded by any recording that enables them, e.g.
+ * {@code -XX:StartFlightRecording}.
+ */
+public final class FlightRecorderEvents {
+    private static final List<Class<? extends Event>> EVENTS = List.of(
+            TaskLeasedEvent.class,
+            FileDownloadEvent.class,
+            SceneLoadEvent.class,
+            RenderEvent.class,
+            EncodeEvent.class,
+            UploadEvent.class
+    );
+
+    private FlightRecorderEvents() {
+    }
+
+    /**
+     * Enable or disable the events.
+     *
+     * @param enabled true to enable the events, false to disable them
+     */
+    public static void setEnabled(boolean enabled) {
+        for (Class<? extends Event> event : EVENTS) {
+            if (enabled) {
+                FlightRecorder.register(event);
+            } else {
+                FlightRecorder.unregister(event);
+            }
+        }
+    }
+}
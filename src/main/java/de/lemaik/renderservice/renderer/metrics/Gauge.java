@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.lemaik.renderservice.renderer.metrics;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.DoubleSupplier;
+
+/**
+ * A value that is read when the metrics are scraped, e.g. the used heap memory.
+ */
+public class Gauge extends Metric<AtomicReference<DoubleSupplier>> {
+    Gauge(String name, String help, String... labelNames) {
+        super(name, help, "gauge", labelNames);
+    }
+
+    /**
+     * Set the function that provides the value of the gauge with the given label values.
+     *
+     * @param value       value supplier
+     * @param labelValues label values, in the order of the label names
+     */
+    public void set(DoubleSupplier value, String... labelValues) {
+        child(labelValues).set(value);
+    }
+
+    /**
+     * Set the value of the gauge with the given label values.
+     *
+     * @param value       value
+     * @param labelValues label values, in the order of the label names
+     */
+    public void set(double value, String... labelValues) {
+        set(() -> value, labelValues);
+    }
+
+    @Override
+    AtomicReference<DoubleSupplier> newChild() {
+        return new AtomicReference<>(() -> 0);
+    }
+
+    @Override
+    void write(StringBuilder out, String labels, AtomicReference<DoubleSupplier> child) {
+        writeSample(out, "", labels, child.get().getAsDouble());
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.lemaik.renderservice.renderer.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * Counts observed values in buckets, e.g. phase durations.
+ */
+public class Histogram extends Metric<Histogram.Child> {
+    private final double[] buckets;
+
+    Histogram(String name, String help, double[] buckets, String... labelNames) {
+        super(name, help, "histogram", labelNames);
+        this.buckets = buckets;
+    }
+
+    /**
+     * Observe a value of the histogram with the given label values.
+     *
+     * @param value       observed value
+     * @param labelValues label values, in the order of the label names
+     */
+    public void observe(double value, String... labelValues) {
+        Child child = child(labelValues);
+        for (int i = 0; i < buckets.length; i++) {
+            if (value <= buckets[i]) {
+                child.counts.incrementAndGet(i);
+                break;
+            }
+        }
+        child.sum.add(value);
+        child.counts.incrementAndGet(buckets.length);
+    }
+
+    /**
+     * Get the sum of the observed values with the given label values.
+     *
+     * @param labelValues label values, in the order of the label names
+     * @return sum of the observed values
+     */
+    public double getSum(String... labelValues) {
+        return child(labelValues).sum.sum();
+    }
+
+    /**
+     * Get the number of observed values with the given label values.
+     *
+     * @param labelValues label values, in the order of the label names
+     * @return number of observed values
+     */
+    public long getCount(String... labelValues) {
+        return child(labelValues).counts.get(buckets.length);
+    }
+
+    @Override
+    Child newChild() {
+        return new Child(buckets.length);
+    }
+
+    @Override
+    void write(StringBuilder out, String labels, Child child) {
+        String separator = labels.isEmpty() ? "" : ",";
+        // the count is read first, so that a concurrent observation can't make a bucket exceed it
+        long count = child.counts.get(buckets.length);
+        long cumulativeCount = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            cumulativeCount += child.counts.get(i);
+            writeSample(out, "_bucket", labels + separator + "le=\"" + format(buckets[i]) + "\"",
+                    Math.min(cumulativeCount, count));
+        }
+        writeSample(out, "_bucket", labels + separator + "le=\"+Inf\"", count);
+        writeSample(out, "_sum", labels, child.sum.sum());
+        writeSample(out, "_count", labels, count);
+    }
+
+    static class Child {
+        private final AtomicLongArray counts;
+        private final DoubleAdder sum = new DoubleAdder();
+
+        private Child(int buckets) {
+            // the last element is the total count
+            this.counts = new AtomicLongArray(buckets + 1);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.lemaik.renderservice.renderer.metrics;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A family of metrics with the same name and label names, written in the Prometheus text format.
+ *
+ * @param <T> type of the metric of a single set of label values
+ */
+public abstract class Metric<T> {
+    private final String name;
+    private final String help;
+    private final String type;
+    private final String[] labelNames;
+    private final Map<List<String>, T> children = new ConcurrentHashMap<>();
+
+    Metric(String name, String help, String type, String... labelNames) {
+        this.name = name;
+        this.help = help;
+        this.type = type;
+        this.labelNames = labelNames;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    T child(String... labelValues) {
+        if (labelValues.length != labelNames.length) {
+            throw new IllegalArgumentException("Expected " + labelNames.length + " label values for " + name);
+        }
+        return children.computeIfAbsent(Arrays.asList(labelValues), ignored -> newChild());
+    }
+
+    abstract T newChild();
+
+    abstract void write(StringBuilder out, String labels, T child);
+
+    void write(StringBuilder out) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        children.forEach((labelValues, child) -> write(out, formatLabels(labelValues), child));
+    }
+
+    void writeSample(StringBuilder out, String suffix, String labels, double value) {
+        out.append(name).append(suffix);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(format(value)).append('\n');
+    }
+
+    static String format(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    private String formatLabels(List<String> labelValues) {
+        StringBuilder labels = new StringBuilder();
+        for (int i = 0; i < labelNames.length; i++) {
+            if (i > 0) {
+                labels.append(',');
+            }
+            labels.append(labelNames[i]).append("=\"").append(escape(labelValues.get(i))).append('"');
+        }
+        return labels.toString();
+    }
+
+    static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.lemaik.renderservice.renderer.metrics;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The metrics of this render node.
+ */
+public final class Metrics {
+    private static final List<Metric<?>> metrics = new CopyOnWriteArrayList<>();
+    private static final double[] DURATION_BUCKETS = {0.1, 0.5, 1, 2.5, 5, 10, 30, 60, 120, 300, 600, 1800, 3600};
+    private static final double[] SIZE_BUCKETS = {1 << 16, 1 << 20, 1 << 22, 1 << 24, 1 << 26, 1 << 28, 1 << 30};
+    private static final double[] THROUGHPUT_BUCKETS = {1 << 16, 1 << 18, 1 << 20, 1 << 22, 1 << 24, 1 << 26, 1 << 28};
+
+    public static final Histogram PHASE_DURATION = register(new Histogram("chunkycloud_phase_duration_seconds",
+            "Duration of the phases of tasks (download, scene_load, render, encode, upload)", DURATION_BUCKETS,
+            "phase"));
+    public static final Histogram IDLE_DURATION = register(new Histogram("chunkycloud_idle_duration_seconds",
+            "Time between the end of a render and the start of the next render", DURATION_BUCKETS));
+    public static final Counter RENDERED_SAMPLES = register(new Counter("chunkycloud_rendered_samples_total",
+            "Number of rendered samples, i.e. pixels times samples per pixel"));
+    public static final Gauge RENDER_SPEED = register(new Gauge("chunkycloud_render_samples_per_second",
+            "Samples per second of the current render, 0 if the node is not rendering"));
+    public static final Counter DOWNLOADED_BYTES = register(new Counter("chunkycloud_downloaded_bytes_total",
+            "Number of downloaded bytes", "kind"));
+    public static final Histogram DOWNLOAD_SIZE = register(new Histogram("chunkycloud_download_size_bytes",
+            "Size of downloaded files", SIZE_BUCKETS, "kind"));
+    public static final Histogram DOWNLOAD_THROUGHPUT = register(new Histogram(
+            "chunkycloud_download_throughput_bytes_per_second", "Throughput of downloads", THROUGHPUT_BUCKETS,
+            "kind"));
+    public static final Counter UPLOADED_BYTES = register(new Counter("chunkycloud_uploaded_bytes_total",
+            "Number of uploaded bytes", "kind"));
+    public static final Counter CACHE_REQUESTS = register(new Counter("chunkycloud_cache_requests_total",
+            "Number of cache lookups", "cache", "result"));
+    public static final Gauge HTTP_CACHE_REQUESTS = register(new Gauge("chunkycloud_http_cache_requests",
+            "Number of requests that were served by the HTTP cache or needed the network", "result"));
+    public static final Gauge JVM_HEAP = register(new Gauge("chunkycloud_jvm_heap_bytes",
+            "Heap memory of the JVM", "area"));
+
+    static {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        JVM_HEAP.set(() -> memory.getHeapMemoryUsage().getUsed(), "used");
+        JVM_HEAP.set(() -> memory.getHeapMemoryUsage().getCommitted(), "committed");
+        JVM_HEAP.set(() -> memory.getHeapMemoryUsage().getMax(), "max");
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Register a metric so that it is included in {@link #scrape()}.
+     *
+     * @param metric metric
+     * @return the metric
+     */
+    public static <T extends Metric<?>> T register(T metric) {
+        metrics.add(metric);
+        return metric;
+    }
+
+    /**
+     * Start timing a phase of a task. The duration is recorded when the returned timer is closed.
+     *
+     * @param phase phase name
+     * @return timer
+     */
+    public static Timer startPhase(String phase) {
+        long start = System.nanoTime();
+        return () -> PHASE_DURATION.observe((System.nanoTime() - start) / 1e9, phase);
+    }
+
+    /**
+     * Record a cache lookup.
+     *
+     * @param cache name of the cache
+     * @param hit   true if the cache contained the requested entry, false otherwise
+     */
+    public static void recordCacheLookup(String cache, boolean hit) {
+        CACHE_REQUESTS.inc(1, cache, hit ? "hit" : "miss");
+    }
+
+    /**
+     * Record a download of the given file once the given future completes successfully.
+     *
+     * @param kind     kind of the downloaded file
+     * @param download download future
+     * @param file     downloaded file
+     * @return the download future
+     */
+    public static <T> CompletableFuture<T> recordDownload(String kind, CompletableFuture<T> download, File file) {
+        long start = System.nanoTime();
+        download.thenRun(() -> recordDownload(kind, file.length(), System.nanoTime() - start));
+        return download;
+    }
+
+    /**
+     * Record a download.
+     *
+     * @param kind     kind of the downloaded file
+     * @param bytes    number of downloaded bytes
+     * @param duration duration of the download, in nanoseconds
+     */
+    public static void recordDownload(String kind, long bytes, long duration) {
+        DOWNLOADED_BYTES.inc(bytes, kind);
+        DOWNLOAD_SIZE.observe(bytes, kind);
+        if (duration > 0) {
+            DOWNLOAD_THROUGHPUT.observe(bytes / (duration / 1e9), kind);
+        }
+    }
+
+    /**
+     * Get all metrics in the Prometheus text format.
+     *
+     * @return metrics
+     */
+    public static String scrape() {
+        StringBuilder out = new StringBuilder();
+        for (Metric<?> metric : metrics) {
+            metric.write(out);
+        }
+        return out.toString();
+    }
+
+    /**
+     * A running measurement of a duration.
+     */
+    @FunctionalInterface
+    public interface Timer extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
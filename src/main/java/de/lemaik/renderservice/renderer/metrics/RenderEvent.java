@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.lemaik.renderservice.renderer.metrics;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("de.lemaik.renderservice.Render")
+@Label("Render")
+@Description("A task was rendered")
+public class RenderEvent extends TaskEvent {
+    @Label("Target Samples Per Pixel")
+    public int targetSpp;
+
+    @Label("Rendered Samples Per Pixel")
+    public int spp;
+
+    @Label("Samples Per Pass")
+    public int sppPerPass;
+
+    @Label("Converged")
+    @Description("Rendering stopped before the target spp because the image converged")
+    public boolean converged;
+}
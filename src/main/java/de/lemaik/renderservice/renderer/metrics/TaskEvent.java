@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.lemaik.renderservice.renderer.metrics;
+
+import de.lemaik.renderservice.renderer.rendering.Task;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Registered;
+
+/**
+ * Base class of the Java Flight Recorder events of the render node. The events are only recorded if they were
+ * enabled with {@link FlightRecorderEvents#setEnabled(boolean)}.
+ */
+@Registered(false)
+@Category({"ChunkyCloud", "Render Node"})
+public abstract class TaskEvent extends Event {
+    @Label("Task ID")
+    public int taskId;
+
+    @Label("Job ID")
+    public String jobId;
+
+    /**
+     * Set the task and job IDs of this event.
+     *
+     * @param task task
+     */
+    public void setTask(Task task) {
+        taskId = task.getId();
+        jobId = task.getJob().getId();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.lemaik.renderservice.renderer.rendering;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * The result of a download that can be cancelled.
+ * <p>
+ * Cancelling a {@link CompletableFuture} only completes the future, the work behind it keeps running. Cancelling a
+ * download also stops its HTTP calls. The download may still write to its target file for a moment after it was
+ * cancelled, so files must only be deleted once {@link #whenStopped()} completed.
+ *
+ * @param <T> type of the result
+ */
+public class CancellableDownload<T> extends CompletableFuture<T> {
+    private final CompletableFuture<T> work;
+    private final Runnable onCancel;
+
+    /**
+     * Create a new download.
+     *
+     * @param work     future that completes with the result once the download stopped, no matter if it succeeded
+     * @param onCancel action that stops the download, e.g. by cancelling its calls
+     */
+    CancellableDownload(CompletableFuture<T> work, Runnable onCancel) {
+        this.work = work;
+        this.onCancel = onCancel;
+        work.whenComplete((result, e) -> {
+            if (e != null) {
+                completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+            } else {
+                complete(result);
+            }
+        });
+    }
+
+    /**
+     * Create a download that can't be cancelled, e.g. because it is already completed.
+     *
+     * @param result future of the result
+     * @return the download
+     */
+    static <T> CancellableDownload<T> of(CompletableFuture<T> result) {
+        return new CancellableDownload<>(result, () -> {
+        });
+    }
+
+    /**
+     * Combine several downloads into one download that completes when all of them completed. Cancelling it cancels
+     * all downloads.
+     *
+     * @param downloads downloads
+     * @return the combined download
+     */
+    public static CancellableDownload<Void> allOf(CancellableDownload<?>... downloads) {
+        CompletableFuture<?>[] work = new CompletableFuture[downloads.length];
+        for (int i = 0; i < downloads.length; i++) {
+            work[i] = downloads[i].work;
+        }
+        return new CancellableDownload<>(CompletableFuture.allOf(work), () -> {
+            for (CancellableDownload<?> download : downloads) {
+                download.cancel(true);
+            }
+        });
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if (cancelled) {
+            onCancel.run();
+        }
+        return cancelled;
+    }
+
+    /**
+     * Get a future that completes once this download stopped, i.e. when it succeeded, failed or stopped after it was
+     * cancelled.
+     *
+     * @return future that never completes exceptionally
+     */
+    public CompletableFuture<Void> whenStopped() {
+        return work.handle((result, e) -> null);
+    }
+}
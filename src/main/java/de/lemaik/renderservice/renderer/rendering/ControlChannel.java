@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lemaik.renderservice.renderer.rendering;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import okhttp3.Call;
+import okhttp3.Response;
+import okio.BufferedSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A persistent connection to the API that receives server-sent events, so that aborted tasks are stopped immediately
+ * instead of on the next progress report.
+ * <p>
+ * The API sends {@code abort} events with a JSON object that contains the {@code taskId}. The connection is
+ * re-established with an exponential backoff if it fails. If the API doesn't support the event stream (i.e. responds
+ * with a client error), the channel is closed and aborts are only noticed by progress reports, which are sent more
+ * often while the channel is not connected (see {@link ProgressReporter}). The API is expected to
+ * send comments as keep-alive, a connection without any data for the read timeout is considered dead.
+ */
+public class ControlChannel extends Thread {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ControlChannel.class);
+    private static final Gson gson = new Gson();
+    private static final int MAX_RECONNECT_DELAY_SECONDS = 5 * 60;
+    private static final int REMEMBERED_ABORTS = 100;
+
+    private final RenderServerApiClient apiClient;
+    private final Map<Integer, Runnable> abortListeners = new HashMap<>();
+    private final Set<Integer> abortedTasks = Collections.newSetFromMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Boolean> eldest) {
+            return size() > REMEMBERED_ABORTS;
+        }
+    });
+    private volatile Call call;
+    private volatile boolean connected;
+
+    public ControlChannel(RenderServerApiClient apiClient) {
+        super("Control channel");
+        this.apiClient = apiClient;
+        setDaemon(true);
+    }
+
+    /**
+     * Register a listener that is called when the given task is aborted. If the task was already aborted, the listener
+     * is called immediately.
+     *
+     * @param taskId   task ID
+     * @param listener listener
+     * @return registration that removes the listener when it is closed
+     */
+    public Registration onAbort(int taskId, Runnable listener) {
+        boolean aborted;
+        synchronized (this) {
+            aborted = abortedTasks.contains(taskId);
+            if (!aborted) {
+                abortListeners.put(taskId, listener);
+            }
+        }
+        if (aborted) {
+            listener.run();
+        }
+        return () -> {
+            synchronized (this) {
+                abortListeners.remove(taskId, listener);
+            }
+        };
+    }
+
+    /**
+     * Check if the given task was aborted by the API.
+     *
+     * @param taskId task ID
+     * @return true if the task was aborted
+     */
+    public synchronized boolean isAborted(int taskId) {
+        return abortedTasks.contains(taskId);
+    }
+
+    /**
+     * Check if the event stream is connected, i.e. if aborts are received immediately.
+     *
+     * @return true if the event stream is connected
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public void interrupt() {
+        super.interrupt();
+        Call current = call;
+        if (current != null) {
+            current.cancel();
+        }
+    }
+
+    @Override
+    public void run() {
+        int nextReconnectDelaySeconds = 1;
+        while (!isInterrupted()) {
+            call = apiClient.newEventStreamCall();
+            try (Response response = call.execute()) {
+                if (response.code() >= 400 && response.code() < 500) {
+                    LOGGER.info("The API doesn't provide an event stream (status {}), aborts are noticed by progress reports",
+                            response.code());
+                    return;
+                }
+                if (!response.isSuccessful()) {
+                    throw new IOException("Could not open the event stream, status " + response.code());
+                }
+                LOGGER.info("Control channel connected");
+                connected = true;
+                nextReconnectDelaySeconds = 1;
+                readEvents(response.body().source());
+                LOGGER.info("Control channel closed by the API");
+            } catch (IOException e) {
+                if (isInterrupted()) {
+                    break;
+                }
+                LOGGER.warn("Control channel failed", e);
+            } finally {
+                connected = false;
+            }
+
+            try {
+                int delaySeconds = Math.min(MAX_RECONNECT_DELAY_SECONDS, nextReconnectDelaySeconds);
+                Thread.sleep(delaySeconds * 1000L);
+                nextReconnectDelaySeconds *= 2;
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+    }
+
+    private void readEvents(BufferedSource source) throws IOException {
+        String event = "message";
+        StringBuilder data = new StringBuilder();
+        String line;
+        while ((line = source.readUtf8Line()) != null) {
+            if (line.isEmpty()) {
+                if (data.length() > 0) {
+                    handleEvent(event, data.toString());
+                }
+                event = "message";
+                data.setLength(0);
+            } else if (line.startsWith("event:")) {
+                event = line.substring("event:".length()).trim();
+            } else if (line.startsWith("data:")) {
+                if (data.length() > 0) {
+                    data.append('\n');
+                }
+                data.append(line.substring("data:".length()).trim());
+            }
+            // other fields and comments (used as keep-alive) are ignored
+        }
+    }
+
+    private void handleEvent(String event, String data) {
+        if (!"abort".equals(event)) {
+            return;
+        }
+        int taskId;
+        try {
+            taskId = gson.fromJson(data, JsonObject.class).get("taskId").getAsInt();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Invalid abort event: {}", data);
+            return;
+        }
+        LOGGER.info("Task {} was aborted", taskId);
+        Runnable listener;
+        synchronized (this) {
+            abortedTasks.add(taskId);
+            listener = abortListeners.remove(taskId);
+        }
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    @FunctionalInterface
+    public interface Registration extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -27,6 +27,7 @@ public class FinishTaskRenderingResponse {
     public static class UploadUrls {
         private String image;
         private String dump;
+        private String dumpFormat;
 
         public String getImage() {
             return image;
@@ -35,5 +36,14 @@ public class FinishTaskRenderingResponse {
         public String getDump() {
             return dump;
         }
+
+        /**
+         * Get the format the dump should be uploaded in.
+         *
+         * @return name of a format the node offered when finishing rendering, or null for Chunky's dump format
+         */
+        public String getDumpFormat() {
+            return dumpFormat;
+        }
     }
 }
@@ -43,15 +43,26 @@ public class JobFiles {
 
     public static class File {
         private String url;
+        private String sha256;
 
         public String getUrl() {
             return url;
         }
+
+        /**
+         * Get the SHA-256 hash of this file, if the API provides it.
+         *
+         * @return SHA-256 hash or null
+         */
+        public String getSha256() {
+            return sha256;
+        }
     }
 
     public static class ResourcePack {
         private int id;
         private String url;
+        private String sha256;
 
         public int getId() {
             return id;
@@ -60,5 +71,14 @@ public class JobFiles {
         public String getUrl() {
             return url;
         }
+
+        /**
+         * Get the SHA-256 hash of this resource pack, if the API provides it.
+         *
+         * @return SHA-256 hash or null
+         */
+        public String getSha256() {
+            return sha256;
+        }
     }
 }
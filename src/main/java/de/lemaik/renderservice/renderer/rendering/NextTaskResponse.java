@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.lemaik.renderservice.renderer.rendering;
+
+import java.util.List;
+
+/**
+ * Response of the API when leasing the next task.
+ */
+public class NextTaskResponse {
+    private final List<Task> tasks;
+    private final int pollWaitSeconds;
+    private final long retryAfterMillis;
+
+    NextTaskResponse(List<Task> tasks, int pollWaitSeconds, long retryAfterMillis) {
+        this.tasks = tasks;
+        this.pollWaitSeconds = pollWaitSeconds;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /**
+     * Get the leased tasks.
+     *
+     * @return leased tasks, empty if no task is available
+     */
+    public List<Task> getTasks() {
+        return tasks;
+    }
+
+    /**
+     * Get the time the server waits for a task before responding, as specified in the {@code X-Poll-Wait} header.
+     *
+     * @return wait time in seconds or -1 if the server doesn't support long polling
+     */
+    public int getPollWaitSeconds() {
+        return pollWaitSeconds;
+    }
+
+    /**
+     * Get the time the server asked the node to wait before polling again, as specified in the {@code Retry-After}
+     * header.
+     *
+     * @return time in milliseconds or -1 if the server didn't specify it
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lemaik.renderservice.renderer.rendering;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Reports the progress of rendering tasks to the API, using one scheduler for the whole node.
+ * <p>
+ * Progress is reported whenever roughly {@value #REPORT_PERCENT}% of the target spp were rendered since the last
+ * report, so fast tasks are reported more often than slow ones, but at most every {@value #MIN_INTERVAL_MILLIS} ms and
+ * at least every {@value #MAX_INTERVAL_MILLIS} ms. While the {@link ControlChannel} is not connected, aborts are only
+ * noticed by the responses to progress reports, so a report is sent at least every
+ * {@value #HEARTBEAT_INTERVAL_MILLIS} ms, even if the spp didn't change. Only one report per task is sent at a time. If
+ * the API is slow, reports are coalesced and the next report contains the latest progress.
+ */
+public class ProgressReporter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProgressReporter.class);
+    private static final long TICK_MILLIS = 250;
+    private static final long MIN_INTERVAL_MILLIS = 1000;
+    private static final long MAX_INTERVAL_MILLIS = 30000;
+    private static final long HEARTBEAT_INTERVAL_MILLIS = 5000;
+    private static final int REPORT_PERCENT = 5;
+
+    private final RenderServerApiClient apiClient;
+    private final ControlChannel controlChannel;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "Progress reporter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Create a new progress reporter.
+     *
+     * @param apiClient      API client
+     * @param controlChannel control channel that receives aborts
+     */
+    public ProgressReporter(RenderServerApiClient apiClient, ControlChannel controlChannel) {
+        this.apiClient = apiClient;
+        this.controlChannel = controlChannel;
+    }
+
+    /**
+     * Start reporting the progress of a task.
+     *
+     * @param task       task
+     * @param currentSpp supplier of the current spp of the task
+     * @param onAbort    called if the API responds that the task was aborted
+     * @return the reporting, which must be stopped when the task is done
+     */
+    public Reporting start(Task task, IntSupplier currentSpp, Runnable onAbort) {
+        Reporting reporting = new Reporting(task, currentSpp, onAbort);
+        reporting.future = scheduler.scheduleWithFixedDelay(reporting::tick, 0, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        return reporting;
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Get the time it takes to render {@value #REPORT_PERCENT}% of the target spp at the current speed, limited to
+     * {@value #MIN_INTERVAL_MILLIS} ms and the given maximum.
+     *
+     * @param targetSpp     target spp of the task
+     * @param spp           rendered spp
+     * @param elapsedMillis time since the task started
+     * @param maxInterval   maximum interval, in milliseconds
+     * @return interval between reports, in milliseconds
+     */
+    static long interval(int targetSpp, int spp, long elapsedMillis, long maxInterval) {
+        if (spp <= 0 || elapsedMillis <= 0) {
+            return MIN_INTERVAL_MILLIS;
+        }
+        double sppPerMilli = (double) spp / elapsedMillis;
+        double millis = targetSpp * REPORT_PERCENT / 100.0 / sppPerMilli;
+        return Math.max(MIN_INTERVAL_MILLIS, Math.min(maxInterval, (long) millis));
+    }
+
+    public class Reporting {
+        private final Task task;
+        private final IntSupplier currentSpp;
+        private final Runnable onAbort;
+        private final long startTime = System.currentTimeMillis();
+        private volatile ScheduledFuture<?> future;
+        private volatile boolean stopped;
+        private volatile boolean inFlight;
+        private long lastReportTime;
+        private int lastReportedSpp = -1;
+
+        private Reporting(Task task, IntSupplier currentSpp, Runnable onAbort) {
+            this.task = task;
+            this.currentSpp = currentSpp;
+            this.onAbort = onAbort;
+        }
+
+        private void tick() {
+            if (stopped) {
+                // the reporting may have been stopped before the future was set
+                future.cancel(false);
+                return;
+            }
+            if (inFlight) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            int spp = currentSpp.getAsInt();
+            long maxInterval = controlChannel.isConnected() ? MAX_INTERVAL_MILLIS : HEARTBEAT_INTERVAL_MILLIS;
+            if (spp == lastReportedSpp && now - lastReportTime < maxInterval) {
+                return;
+            }
+            if (lastReportedSpp >= 0
+                    && now - lastReportTime < interval(task.getSpp(), spp, now - startTime, maxInterval)) {
+                return;
+            }
+
+            inFlight = true;
+            lastReportTime = now;
+            lastReportedSpp = spp;
+            apiClient.reportTaskProgress(task.getId(), spp).whenComplete((result, e) -> {
+                inFlight = false;
+                if (e != null) {
+                    LOGGER.error("Failed to report task progress", e);
+                } else if (result == RenderServerApiClient.ProgressReportResult.STOP_RENDERING && !stopped) {
+                    onAbort.run();
+                }
+            });
+        }
+
+        public void stop() {
+            stopped = true;
+            ScheduledFuture<?> scheduled = future;
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+        }
+    }
+}
@@ -18,18 +18,31 @@
 package de.lemaik.renderservice.renderer.rendering;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import de.lemaik.renderservice.renderer.Main;
+import de.lemaik.renderservice.renderer.metrics.FileDownloadEvent;
+import de.lemaik.renderservice.renderer.metrics.Metrics;
 import okhttp3.*;
-import okio.Buffer;
 import okio.BufferedSink;
 import okio.Okio;
 import se.llbit.chunky.main.Version;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
@@ -40,13 +53,31 @@ public class RenderServerApiClient {
     private final String baseUrl;
     private final OkHttpClient client;
     private final OkHttpClient uploadClient;
+    private final OkHttpClient eventClient;
+    private final OkHttpClient sceneFileClient;
+    private final SegmentedDownloader sceneFileDownloader;
+    private final SceneFileStore sceneFileStore;
 
     public RenderServerApiClient(String baseUrl, String apiKey, File cacheDirectory,
                                  long maxCacheSize) {
+        this(baseUrl, apiKey, cacheDirectory, maxCacheSize, null);
+    }
+
+    /**
+     * Create a new API client.
+     *
+     * @param sceneFileStore store for octrees and emitter grids, or null to only use the HTTP cache
+     */
+    public RenderServerApiClient(String baseUrl, String apiKey, File cacheDirectory,
+                                 long maxCacheSize, SceneFileStore sceneFileStore) {
         this.baseUrl = baseUrl;
+        this.sceneFileStore = sceneFileStore;
+        Cache cache = new Cache(cacheDirectory, maxCacheSize);
+        Metrics.HTTP_CACHE_REQUESTS.set(cache::hitCount, "hit");
+        Metrics.HTTP_CACHE_REQUESTS.set(cache::networkCount, "network");
         client = new OkHttpClient.Builder()
                 .followRedirects(true)
-                .cache(new Cache(cacheDirectory, maxCacheSize))
+                .cache(cache)
                 .addInterceptor(chain -> {
                     if (chain.request().url().toString().startsWith(baseUrl)) {
                         return chain.proceed(
@@ -78,13 +109,50 @@ public class RenderServerApiClient {
                         Integer.parseInt(System.getProperty("chunkycloud.http.uploadReadTimeout", "10")),
                         TimeUnit.SECONDS)
                 .build();
+        // the event stream stays open as long as possible, the server sends comments to keep it alive
+        eventClient = client.newBuilder()
+                .cache(null)
+                .readTimeout(Integer.parseInt(System.getProperty("chunkycloud.http.eventReadTimeout", "90")),
+                        TimeUnit.SECONDS)
+                .build();
+        // range requests can't be cached and stalled downloads are detected by the downloader, so neither the cache
+        // nor the read timeout are used for scene files
+        sceneFileClient = client.newBuilder().cache(null).build();
+        sceneFileDownloader = new SegmentedDownloader(
+                sceneFileClient.newBuilder().readTimeout(0, TimeUnit.SECONDS).build(),
+                Integer.parseInt(System.getProperty("chunkycloud.http.downloadSegments", "4")),
+                TimeUnit.SECONDS.toMillis(Integer.parseInt(System.getProperty("chunkycloud.http.stallTimeout", "30"))),
+                1024L * Integer.parseInt(System.getProperty("chunkycloud.http.minDownloadSpeed", "16")));
     }
 
-    public CompletableFuture<Task> getNextTask() {
+    /**
+     * Lease the next tasks.
+     *
+     * @param count       maximum number of tasks to lease, the server may lease fewer tasks
+     * @param jobId       job to prefer tasks of (e.g. the job that is currently loaded), or null
+     * @param waitSeconds time the server may wait for a task to become available before responding, or 0 to respond
+     *                    immediately
+     */
+    public CompletableFuture<NextTaskResponse> getNextTasks(int count, String jobId, int waitSeconds) {
         // TODO add scheduler hints
-        CompletableFuture<Task> result = new CompletableFuture<>();
-        client.newCall(new Request.Builder()
-                        .url(baseUrl + "/nodes/me/tasks/next").get()
+        CompletableFuture<NextTaskResponse> result = new CompletableFuture<>();
+        HttpUrl.Builder url = HttpUrl.parse(baseUrl + "/nodes/me/tasks/next").newBuilder();
+        if (count > 1) {
+            url.addQueryParameter("count", Integer.toString(count));
+        }
+        if (jobId != null) {
+            url.addQueryParameter("job", jobId);
+        }
+        OkHttpClient pollClient = client;
+        if (waitSeconds > 0) {
+            url.addQueryParameter("wait", Integer.toString(waitSeconds));
+            pollClient = client.newBuilder()
+                    .readTimeout(client.readTimeoutMillis() + TimeUnit.SECONDS.toMillis(waitSeconds),
+                            TimeUnit.MILLISECONDS)
+                    .build();
+        }
+        pollClient.newCall(new Request.Builder()
+                        .url(url.build()).get()
                         .build())
                 .enqueue(new Callback() {
                     @Override
@@ -95,14 +163,29 @@ public class RenderServerApiClient {
                     @Override
                     public void onResponse(Call call, Response response) {
                         try (response) {
+                            int pollWaitSeconds = parseInt(response.header("X-Poll-Wait"), -1);
+                            int retryAfterSeconds = parseInt(response.header("Retry-After"), -1);
+                            long retryAfterMillis = retryAfterSeconds >= 0 ? retryAfterSeconds * 1000L : -1;
                             if (response.code() == 200) {
                                 try (InputStreamReader reader = new InputStreamReader(response.body().byteStream())) {
-                                    result.complete(gson.fromJson(reader, Task.class));
-                                } catch (IOException e) {
+                                    // servers that don't support leasing multiple tasks respond with a single task
+                                    JsonElement json = gson.fromJson(reader, JsonElement.class);
+                                    List<Task> tasks;
+                                    if (json == null || json.isJsonNull()) {
+                                        // an empty body means that no task is available, like a 204 response
+                                        tasks = Collections.emptyList();
+                                    } else if (json.isJsonArray()) {
+                                        tasks = Arrays.asList(gson.fromJson(json, Task[].class));
+                                    } else {
+                                        tasks = Collections.singletonList(gson.fromJson(json, Task.class));
+                                    }
+                                    result.complete(new NextTaskResponse(tasks, pollWaitSeconds, retryAfterMillis));
+                                } catch (IOException | JsonParseException e) {
                                     result.completeExceptionally(e);
                                 }
                             } else if (response.code() == 204) {
-                                result.complete(null);
+                                result.complete(new NextTaskResponse(Collections.emptyList(), pollWaitSeconds,
+                                        retryAfterMillis));
                             } else {
                                 result.completeExceptionally(new IOException("The job could not be downloaded " + response.code()));
                             }
@@ -113,11 +196,20 @@ public class RenderServerApiClient {
         return result;
     }
 
-    public CompletableFuture<FinishTaskRenderingResponse> finishTaskRendering(int taskId) {
+    /**
+     * Finish rendering a task and get the URLs to upload the result to.
+     *
+     * @param taskId      task ID
+     * @param dumpFormats additional dump formats the node can upload, the server picks one of them or Chunky's format
+     */
+    public CompletableFuture<FinishTaskRenderingResponse> finishTaskRendering(int taskId, String... dumpFormats) {
         CompletableFuture<FinishTaskRenderingResponse> result = new CompletableFuture<>();
-        client.newCall(new Request.Builder()
-                        .url(baseUrl + "/nodes/me/tasks/" + taskId + "/upload").post(RequestBody.create(null, new byte[0]))
-                        .build())
+        Request.Builder request = new Request.Builder()
+                .url(baseUrl + "/nodes/me/tasks/" + taskId + "/upload").post(RequestBody.create(null, new byte[0]));
+        if (dumpFormats.length > 0) {
+            request.header("X-Dump-Formats", String.join(", ", dumpFormats));
+        }
+        client.newCall(request.build())
                 .enqueue(new Callback() {
                     @Override
                     public void onFailure(Call call, IOException e) {
@@ -143,9 +235,23 @@ public class RenderServerApiClient {
     }
 
     public CompletableFuture<Void> finishTask(int taskId) {
+        return finishTask(taskId, RequestBody.create(null, new byte[0]));
+    }
+
+    /**
+     * Finish a task that was rendered with less than its target spp, e.g. because it converged early.
+     *
+     * @param taskId task ID
+     * @param spp    rendered samples per pixel
+     */
+    public CompletableFuture<Void> finishTask(int taskId, int spp) {
+        return finishTask(taskId, RequestBody.create(MediaType.parse("application/json"), "{\"spp\":" + spp + "}"));
+    }
+
+    private CompletableFuture<Void> finishTask(int taskId, RequestBody body) {
         CompletableFuture<Void> result = new CompletableFuture<>();
         client.newCall(new Request.Builder()
-                        .url(baseUrl + "/nodes/me/tasks/" + taskId + "/finish").post(RequestBody.create(null, new byte[0]))
+                        .url(baseUrl + "/nodes/me/tasks/" + taskId + "/finish").post(body)
                         .build())
                 .enqueue(new Callback() {
                     @Override
@@ -169,11 +275,18 @@ public class RenderServerApiClient {
         return result;
     }
 
-    public CompletableFuture<ProgressReportResult> reportTaskProgress(int taskId, int spp) {
-        CompletableFuture<ProgressReportResult> result = new CompletableFuture<>();
+    /**
+     * Release leased tasks that were not started, so that other nodes can render them.
+     *
+     * @param taskIds IDs of the tasks to release
+     */
+    public CompletableFuture<Void> releaseTasks(Collection<Integer> taskIds) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        JsonObject body = new JsonObject();
+        body.add("tasks", gson.toJsonTree(taskIds));
         client.newCall(new Request.Builder()
-                        .url(baseUrl + "/nodes/me/tasks/" + taskId + "/progress")
-                        .post(RequestBody.create(MediaType.parse("application/json"), "{\"spp\":" + spp + "}"))
+                        .url(baseUrl + "/nodes/me/tasks/release")
+                        .post(RequestBody.create(MediaType.parse("application/json"), gson.toJson(body)))
                         .build())
                 .enqueue(new Callback() {
                     @Override
@@ -185,28 +298,34 @@ public class RenderServerApiClient {
                     public void onResponse(Call call, Response response) {
                         try (response) {
                             if (response.isSuccessful()) {
-                                result.complete(ProgressReportResult.OK);
-                            } else if (response.code() == 409) {
-                                result.complete(ProgressReportResult.STOP_RENDERING);
+                                result.complete(null);
                             } else {
-                                result.completeExceptionally(new IOException("The task progress could not be updated, status " + response.code() + " " + response.body().string()));
+                                result.completeExceptionally(new IOException("The tasks could not be released, status " + response.code()));
                             }
-                        } catch (IOException e) {
-                            throw new RuntimeException(e);
                         }
                     }
                 });
         return result;
     }
 
-    public CompletableFuture<JsonObject> getScene(Task job) {
-        CompletableFuture<JsonObject> result = new CompletableFuture<>();
-        JobFiles.File sceneFile = job.getFiles().getScene();
+    /**
+     * Create a call that opens the server-sent event stream of this node.
+     *
+     * @return the call
+     */
+    public Call newEventStreamCall() {
+        return eventClient.newCall(new Request.Builder()
+                .url(baseUrl + "/nodes/me/events")
+                .header("Accept", "text/event-stream")
+                .get().build());
+    }
 
+    public CompletableFuture<ProgressReportResult> reportTaskProgress(int taskId, int spp) {
+        CompletableFuture<ProgressReportResult> result = new CompletableFuture<>();
         client.newCall(new Request.Builder()
-                        .url(resolveUrl(sceneFile.getUrl()))
-                        .removeHeader("Authorization")
-                        .get().build())
+                        .url(baseUrl + "/nodes/me/tasks/" + taskId + "/progress")
+                        .post(RequestBody.create(MediaType.parse("application/json"), "{\"spp\":" + spp + "}"))
+                        .build())
                 .enqueue(new Callback() {
                     @Override
                     public void onFailure(Call call, IOException e) {
@@ -216,39 +335,153 @@ public class RenderServerApiClient {
                     @Override
                     public void onResponse(Call call, Response response) {
                         try (response) {
-                            if (response.code() == 200) {
-                                try (
-                                        ResponseBody body = response.body();
-                                        InputStreamReader reader = new InputStreamReader(body.byteStream())
-                                ) {
-                                    result.complete(gson.fromJson(reader, JsonObject.class));
-                                } catch (IOException e) {
-                                    result.completeExceptionally(e);
-                                }
+                            if (response.isSuccessful()) {
+                                result.complete(ProgressReportResult.OK);
+                            } else if (response.code() == 409) {
+                                result.complete(ProgressReportResult.STOP_RENDERING);
                             } else {
-                                result.completeExceptionally(new IOException("The scene could not be downloaded, status " + response.request().url() + " " + response.body().string()));
+                                result.completeExceptionally(new IOException("The task progress could not be updated, status " + response.code() + " " + response.body().string()));
                             }
                         } catch (IOException e) {
                             throw new RuntimeException(e);
                         }
                     }
                 });
-
         return result;
     }
 
+    /**
+     * Download the scene description of a task into the given file, setting its name and sky map while it is
+     * downloaded (see {@link SceneJsonRewriter}). The rewritten description is written directly to the file. Chunky
+     * parses the file again when loading the scene, since its JSON parser has its own object model. Keeping the
+     * description in memory to hand it over would only save reading it from the page cache, at the cost of holding a
+     * copy of large scenes.
+     *
+     * @param job    task
+     * @param name   scene name to set
+     * @param skymap sky map file to set, or null to keep the sky map of the scene
+     * @param file   target file
+     * @return download of the rewritten scene description
+     */
+    public CancellableDownload<File> downloadScene(Task job, String name, String skymap, File file) {
+        CompletableFuture<File> result = new CompletableFuture<>();
+        JobFiles.File sceneFile = job.getFiles().getScene();
+
+        Call call = client.newCall(new Request.Builder()
+                .url(resolveUrl(sceneFile.getUrl()))
+                .removeHeader("Authorization")
+                .get().build());
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                result.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (response) {
+                    if (response.code() == 200) {
+                        File tmpFile = new File(file.getAbsolutePath() + ".tmp");
+                        try (
+                                ResponseBody body = response.body();
+                                JsonReader reader = new JsonReader(
+                                        new InputStreamReader(body.byteStream(), StandardCharsets.UTF_8));
+                                JsonWriter writer = new JsonWriter(new BufferedWriter(
+                                        new OutputStreamWriter(new FileOutputStream(tmpFile), StandardCharsets.UTF_8)))
+                        ) {
+                            reader.setLenient(true);
+                            SceneJsonRewriter.rewrite(reader, writer, name, skymap);
+                        } catch (IOException | IllegalStateException e) {
+                            tmpFile.delete();
+                            result.completeExceptionally(e);
+                            return;
+                        }
+                        if (tmpFile.renameTo(file)) {
+                            result.complete(file);
+                        } else {
+                            tmpFile.delete();
+                            result.completeExceptionally(new IOException("Could not rename file " + tmpFile + " to " + file));
+                        }
+                    } else {
+                        result.completeExceptionally(new IOException("The scene could not be downloaded, status " + response.request().url() + " " + response.body().string()));
+                    }
+                } catch (IOException e) {
+                    result.completeExceptionally(e);
+                }
+            }
+        });
+
+        return new CancellableDownload<>(result, call::cancel);
+    }
+
     protected String resolveUrl(String relativeOrAbsoluteUrl) {
         return relativeOrAbsoluteUrl.startsWith("/") ? baseUrl + relativeOrAbsoluteUrl : relativeOrAbsoluteUrl;
     }
 
-    public CompletableFuture downloadOctree(Task job, File file) {
-        return downloadFile(resolveUrl(job.getFiles().getOctree().getUrl()), file);
+    public CancellableDownload<File> downloadOctree(Task job, File file) {
+        return downloadSceneFile(job, job.getFiles().getOctree(), "octree", file);
     }
 
-    public CompletableFuture downloadEmittergrid(Task job, File file) {
+    public CancellableDownload<File> downloadEmittergrid(Task job, File file) {
         return Optional.ofNullable(job.getFiles().getEmittergrid())
-                .map(s -> downloadFile(resolveUrl(s.getUrl()), file))
-                .orElseGet(() -> CompletableFuture.completedFuture(null));
+                .map(s -> downloadSceneFile(job, s, "emittergrid", file))
+                .orElseGet(() -> CancellableDownload.of(CompletableFuture.completedFuture(null)));
+    }
+
+    /**
+     * Download the octree of the given task while providing its content as a stream, so that it can be loaded while
+     * it is being downloaded. If the octree is already stored, the stream reads the stored file.
+     *
+     * @param job  task
+     * @param file target file
+     * @return the download
+     */
+    public StreamingDownload streamOctree(Task job, File file) {
+        JobFiles.File octree = job.getFiles().getOctree();
+        String url = resolveUrl(octree.getUrl());
+        StreamingDownload download = new StreamingDownload();
+        CompletableFuture<File> result = sceneFileStore == null
+                ? recordDownload(job, "octree", url, download.start(sceneFileClient, url, file), file)
+                .thenApply(hash -> file)
+                : sceneFileStore.fetch(url, octree.getSha256(), file,
+                tmp -> recordDownload(job, "octree", url, download.start(sceneFileClient, url, tmp), tmp));
+        result.whenComplete(download::finish);
+        return download;
+    }
+
+    /**
+     * Get the SHA-256 hash of a scene file without downloading it, as provided by the API.
+     *
+     * @param sceneFile scene file
+     * @return SHA-256 hash, or null if it is not known
+     */
+    public String getSceneFileHash(JobFiles.File sceneFile) {
+        return sceneFile.getSha256() != null ? sceneFile.getSha256().toLowerCase() : null;
+    }
+
+    private CancellableDownload<File> downloadSceneFile(Task task, JobFiles.File sceneFile, String kind, File file) {
+        String url = resolveUrl(sceneFile.getUrl());
+        if (sceneFileStore == null) {
+            return recordDownload(task, kind, url, sceneFileDownloader.download(url, file), file);
+        }
+        return sceneFileStore.fetch(url, sceneFile.getSha256(), file,
+                tmp -> recordDownload(task, kind, url, sceneFileDownloader.downloadWithSha256(url, tmp), tmp));
+    }
+
+    private static <F extends CompletableFuture<?>> F recordDownload(Task task, String kind, String url, F download,
+                                                                     File file) {
+        FileDownloadEvent event = new FileDownloadEvent();
+        event.begin();
+        download.thenRun(() -> {
+            event.setTask(task);
+            event.kind = kind;
+            event.url = url;
+            event.bytes = file.length();
+            event.commit();
+        });
+        CompletableFuture<?> future = download;
+        Metrics.recordDownload(kind, future, file);
+        return download;
     }
 
     public CompletableFuture<File> downloadSkymapTo(String url, Path targetDir) {
@@ -305,7 +538,7 @@ public class RenderServerApiClient {
         return downloadFile(baseUrl + "/resourcepacks/" + name, file);
     }
 
-    private CompletableFuture downloadFile(String url, File file) {
+    private CompletableFuture<File> downloadFile(String url, File file) {
         File tmpFile = new File(file.getAbsolutePath() + ".tmp");
         CompletableFuture<File> result = new CompletableFuture<>();
 
@@ -354,11 +587,11 @@ public class RenderServerApiClient {
         return result;
     }
 
-    public CompletableFuture<Void> uploadFile(String url, Buffer body, String mimeType) {
+    public CompletableFuture<Void> uploadFile(String url, RequestBody body) {
         CompletableFuture<Void> result = new CompletableFuture<>();
         uploadClient.newCall(new Request.Builder()
                         .url(url)
-                        .put(RequestBody.create(MediaType.parse(mimeType), body.readByteString()))
+                        .put(body)
                         .build()
                 )
                 .enqueue(new Callback() {
@@ -382,6 +615,17 @@ public class RenderServerApiClient {
         return result;
     }
 
+    private static int parseInt(String value, int defaultValue) {
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                // e.g. Retry-After as an HTTP date, which the API doesn't send
+            }
+        }
+        return defaultValue;
+    }
+
     public enum ProgressReportResult {
         OK,
         STOP_RENDERING
@@ -17,20 +17,24 @@
 
 package de.lemaik.renderservice.renderer.rendering;
 
+import de.lemaik.renderservice.renderer.application.RendererSettings;
+import de.lemaik.renderservice.renderer.chunky.ChunkyWrapper;
 import de.lemaik.renderservice.renderer.chunky.RenderException;
+import de.lemaik.renderservice.renderer.chunky.SppPerPassTuner;
+import de.lemaik.renderservice.renderer.metrics.Metrics;
+import de.lemaik.renderservice.renderer.util.CpuAffinity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import se.llbit.chunky.resources.ResourcePackLoader;
 
-import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.stream.Collectors;
 
 /**
  * A renderer worker thread.
@@ -42,18 +46,67 @@ public class RenderWorker extends Thread {
     private final Path resourcePacksPath;
     private final int threads;
     private final int cpuLoad;
+    private final int pngCompressionLevel;
+    private final boolean streamOctree;
+    private final boolean mergeTiles;
     private final int MAX_RESTART_DELAY_SECONDS = 15 * 60; // 15 minutes
     private final RenderServerApiClient apiClient;
+    private final TaskPoller poller;
+    private final TaskPrefetcher prefetcher;
+    private final ResultUploader uploader;
+    private final ResourcePackStack resourcePacks;
+    private final SppPerPassTuner sppPerPassTuner;
+    private final double convergenceThreshold;
+    private final boolean adaptiveSampling;
+    private final ProgressReporter progressReporter;
+    private final ControlChannel controlChannel;
+    private final String cpuSet;
     private int nextRestartDelaySeconds = 1;
-    private List<Integer> currentlyLoadedResourcepackIds = Collections.emptyList();
+    private long lastRenderEnd;
 
-    public RenderWorker(int threads, int cpuLoad, Path jobDirectory,
-                        Path texturepacksDirectory, RenderServerApiClient apiClient) {
-        this.threads = threads;
-        this.cpuLoad = cpuLoad;
+    /**
+     * Create a new render worker.
+     *
+     * @param settings              renderer settings
+     * @param slot                  index of the render slot of this worker
+     * @param jobDirectory          directory to create task directories in
+     * @param texturepacksDirectory resource packs directory
+     * @param uploadSpoolDirectory  directory to spool results to before uploading them, or null
+     */
+    public RenderWorker(RendererSettings settings, int slot, Path jobDirectory, Path texturepacksDirectory,
+                        Path uploadSpoolDirectory, RenderServerApiClient apiClient, ResourcePackStack resourcePacks,
+                        ProgressReporter progressReporter, ControlChannel controlChannel) {
+        int slots = settings.getRenderSlots().orElse(1);
+        this.threads = settings.getThreads().orElse(Math.max(1, Runtime.getRuntime().availableProcessors() / slots));
+        this.cpuLoad = settings.getCpuLoad().orElse(100);
+        this.pngCompressionLevel = settings.getPngCompressionLevel().orElse(6);
+        this.streamOctree = settings.isStreamOctree();
+        this.mergeTiles = settings.isMergeTiles();
+        this.sppPerPassTuner = settings.isAdaptiveSppPerPass() ? new SppPerPassTuner() : null;
+        this.convergenceThreshold = settings.getConvergenceThreshold().orElse(0.0);
+        this.adaptiveSampling = settings.isAdaptiveSampling() && settings.getCompactDumpPrecision().isPresent();
+        this.resourcePacks = resourcePacks;
+        this.progressReporter = progressReporter;
+        this.controlChannel = controlChannel;
+        this.cpuSet = settings.getSlotCpus().map(cpus -> cpus.get(slot)).orElse(null);
         this.resourcePacksPath = texturepacksDirectory;
         this.jobDirectory = jobDirectory;
         this.apiClient = apiClient;
+        this.poller = new TaskPoller(apiClient, settings.getLongPollTimeout().orElse(25),
+                settings.getLeaseBatchSize().orElse(1));
+        int prefetchTasks = settings.getPrefetchTasks().orElse(0);
+        this.prefetcher = prefetchTasks > 0 ? new TaskPrefetcher(prefetchTasks, jobDirectory, apiClient, poller) : null;
+        this.uploader = new ResultUploader(apiClient, settings.getUploadQueueSize().orElse(0), uploadSpoolDirectory,
+                settings.getCompactDumpPrecision().orElse(null));
+    }
+
+    private ChunkyWrapper createChunky() {
+        ChunkyWrapper chunky = new ChunkyWrapper(threads, cpuLoad, pngCompressionLevel);
+        chunky.setSppPerPassTuner(sppPerPassTuner);
+        chunky.setConvergenceThreshold(convergenceThreshold);
+        chunky.setAdaptiveSampling(() -> adaptiveSampling && uploader.isSampleCountsAccepted());
+        chunky.setCaptureResults(uploader.isAsynchronous());
+        return chunky;
     }
 
     @Override
@@ -61,6 +114,13 @@ public class RenderWorker extends Thread {
         TaskWorker worker = null;
         String previousJobId = null;
         int iterationsWithoutTask = 0;
+        if (cpuSet != null) {
+            // the render threads and the prefetcher are started by this thread and inherit its affinity
+            CpuAffinity.pinCurrentThread(cpuSet);
+        }
+        if (prefetcher != null) {
+            prefetcher.start();
+        }
 
         while (!interrupted()) {
             if (iterationsWithoutTask > 2 && worker != null) {
@@ -68,45 +128,98 @@ public class RenderWorker extends Thread {
                 worker = null;
             }
             LOGGER.info("Polling for new task");
+            Task task = null;
+            List<Task> batch = Collections.emptyList();
+            List<Task> submitted = new ArrayList<>();
             try {
-                Task task = apiClient.getNextTask().get();
-                if (task == null) {
-                    iterationsWithoutTask++;
-                    Thread.sleep(5000L);
-                    continue;
+                TaskPrefetcher.PrefetchedTask prefetched = null;
+                if (prefetcher != null) {
+                    prefetched = prefetcher.poll(5, TimeUnit.SECONDS);
+                    if (prefetched == null) {
+                        iterationsWithoutTask++;
+                        continue;
+                    }
+                    task = prefetched.getTask();
+                } else {
+                    task = poller.poll();
+                    if (task == null) {
+                        iterationsWithoutTask++;
+                        continue;
+                    }
                 }
                 iterationsWithoutTask = 0;
                 LOGGER.info("Got task {} for job {}", task.getId(), task.getJob().getId());
+                if (controlChannel.isAborted(task.getId())) {
+                    // e.g. aborted while it was prefetched
+                    LOGGER.info("Skipping task {} because it was aborted", task.getId());
+                    if (prefetched != null) {
+                        prefetched.discard(jobDirectory);
+                    }
+                    continue;
+                }
                 Path taskPath = jobDirectory.resolve("task-" + task.getId());
-                if (worker == null || !task.getJob().getId().equals(previousJobId)) {
+                SceneIdentity sceneIdentity = worker != null && !task.getJob().getId().equals(previousJobId)
+                        ? SceneIdentity.of(apiClient, task)
+                        : null;
+                if (sceneIdentity != null && sceneIdentity.equals(worker.getSceneIdentity())) {
+                    // only the scene settings changed, e.g. a re-render with a different camera
+                    LOGGER.info("Job {} uses the loaded scene {}", task.getJob().getId(), sceneIdentity);
+                    if (prefetched != null) {
+                        prefetched.discard(jobDirectory);
+                    }
+                    previousJobId = null;
+                    worker.reloadSceneSettings(task);
+                    previousJobId = task.getJob().getId();
+                } else if (worker == null || !task.getJob().getId().equals(previousJobId)) {
                     if (worker != null) {
                         worker.cleanup();
                     }
+                    previousJobId = null;
                     taskPath.toFile().mkdir();
-                    worker = new TaskWorker(taskPath, resourcePacksPath, threads, cpuLoad, apiClient);
-                    worker.loadScene(task);
-                    List<Integer> resourcePacks = task.getFiles().getResourcePacks().stream().map(JobFiles.ResourcePack::getId).toList();
-                    if (!this.currentlyLoadedResourcepackIds.equals(resourcePacks)) {
-                        String resourcePackIds = task.getFiles().getResourcePacks().stream().map(JobFiles.ResourcePack::getId).map(Object::toString).collect(Collectors.joining(", "));
-                        LOGGER.info("Downloading resource packs: {}", resourcePackIds);
-                        List<File> downloadedResourcePacks = ResourcePackDownloader.getInstance().downloadResourcePacks(task.getFiles(), resourcePacksPath).stream().map(Path::toFile).toList();
-                        LOGGER.info("Loading resource packs: {}", resourcePackIds);
-                        ResourcePackLoader.loadResourcePacks(downloadedResourcePacks);
-                        this.currentlyLoadedResourcepackIds = resourcePacks;
+                    worker = new TaskWorker(taskPath, resourcePacksPath, createChunky(), apiClient, uploader,
+                            streamOctree, progressReporter, controlChannel);
+                    if (prefetched != null && prefetched.getSceneDownload() != null) {
+                        worker.loadScene(task, prefetched.getSceneDownload());
                     } else {
-                        LOGGER.info("Re-using already loaded resource packs");
+                        worker.loadScene(task);
                     }
                     previousJobId = task.getJob().getId();
+                } else if (prefetched != null) {
+                    // the scene of this job is already loaded
+                    prefetched.discard(jobDirectory);
+                }
+                batch = mergeTiles ? poller.takeMergeable(task) : Collections.singletonList(task);
+                if (lastRenderEnd != 0) {
+                    Metrics.IDLE_DURATION.observe((System.nanoTime() - lastRenderEnd) / 1e9);
+                }
+                resourcePacks.acquire(task);
+                try {
+                    worker.renderScene(batch, submitted::add);
+                } finally {
+                    resourcePacks.release();
+                    lastRenderEnd = System.nanoTime();
                 }
-                worker.renderScene(task);
                 nextRestartDelaySeconds = 1;
             } catch (CancellationException e) {
                 LOGGER.info("Task cancelled", e);
+                if (task != null) {
+                    // tasks that were rendered together with an aborted task need to be rendered again
+                    poller.release(batch.stream().filter(t -> !controlChannel.isAborted(t.getId())).toList());
+                    // other tasks of an aborted job are most likely aborted as well
+                    poller.release(task.getJob().getId());
+                }
             } catch (InterruptedException e) {
                 LOGGER.info("Interrupted", e);
                 break;
             } catch (ExecutionException | TimeoutException | IOException | RenderException e) {
                 LOGGER.error("Error", e);
+                if (task != null) {
+                    // tasks that were taken for this render but never reached the uploader would otherwise wait
+                    // for their leases to expire
+                    poller.release(batch.stream().filter(t -> !submitted.contains(t)).toList());
+                    // let other nodes render the queued tasks of this job while waiting
+                    poller.release(task.getJob().getId());
+                }
                 try {
                     int delaySeconds = Math.min(MAX_RESTART_DELAY_SECONDS, nextRestartDelaySeconds);
                     LOGGER.info("Waiting {} seconds before trying again", delaySeconds);
@@ -124,6 +237,21 @@ public class RenderWorker extends Thread {
         }
         // TODO notify api that we were interrupted
 
+        if (prefetcher != null) {
+            prefetcher.interrupt();
+            try {
+                prefetcher.join();
+            } catch (InterruptedException e) {
+                LOGGER.warn("Interrupted while waiting for the task prefetcher to stop");
+            }
+        }
+        poller.releaseAll();
+        try {
+            uploader.shutdown();
+        } catch (InterruptedException e) {
+            LOGGER.warn("Interrupted while waiting for pending uploads");
+        }
+
         if (worker != null) {
             worker.cleanup();
             worker = null;
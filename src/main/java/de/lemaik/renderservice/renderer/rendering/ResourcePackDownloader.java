@@ -17,23 +17,42 @@
 
 package de.lemaik.renderservice.renderer.rendering;
 
+import de.lemaik.renderservice.renderer.metrics.Metrics;
+import de.lemaik.renderservice.renderer.util.FileUtil;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
-import okio.BufferedSink;
-import okio.Okio;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.ZipFile;
 
+/**
+ * Downloads resource packs into a persistent cache directory.
+ * <p>
+ * Every cached pack {@code <id>.zip} has a {@code <id>.zip.sha256} file next to it that contains the hash of the
+ * verified pack. Packs are hashed while they are downloaded and checked against the hash provided by the API (if any)
+ * and for being a valid zip file, so that truncated downloads are never used. Packs that are in use are pinned, the
+ * least recently used packs that are not pinned are evicted when the cache exceeds its size budget.
+ */
 public class ResourcePackDownloader {
     private static final ResourcePackDownloader INSTANCE = new ResourcePackDownloader();
     private static final Logger LOGGER = LoggerFactory.getLogger(ResourcePackDownloader.class);
@@ -49,53 +68,135 @@ public class ResourcePackDownloader {
                     TimeUnit.SECONDS)
             .build();
 
-    private final ExecutorService executor =
-            Executors.newFixedThreadPool(2);
+    private final ExecutorService executor = Executors.newFixedThreadPool(2, new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Resource pack download " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final Map<Path, CompletableFuture<Path>> pendingDownloads = new ConcurrentHashMap<>();
+    private final Map<Path, Integer> pinned = new HashMap<>();
+    private volatile long maxCacheSize = Long.MAX_VALUE;
 
     public static ResourcePackDownloader getInstance() {
         return INSTANCE;
     }
 
+    /**
+     * Set the maximum size of the resource pack cache.
+     *
+     * @param maxCacheSize maximum size, in bytes
+     */
+    public void setMaxCacheSize(long maxCacheSize) {
+        this.maxCacheSize = maxCacheSize;
+    }
+
+    /**
+     * Download the resource packs of a job, if they are not cached yet. The returned packs are pinned and need to be
+     * {@link #release released} once they are not used anymore.
+     *
+     * @param jobFiles  job files
+     * @param directory cache directory
+     * @return the resource packs, in the order of the job
+     * @throws IOException if a pack could not be downloaded
+     */
     public List<Path> downloadResourcePacks(JobFiles jobFiles, Path directory) throws IOException {
-        List<Path> files = new ArrayList<>(jobFiles.getResourcePacks().size());
-        try {
-            Files.createDirectories(directory);
-
-            List<CompletableFuture<Void>> futures = jobFiles.getResourcePacks()
-                    .stream()
-                    .map(pack -> CompletableFuture.runAsync(() -> {
-                        try {
-                            files.add(downloadIfNeeded(pack, directory));
-                        } catch (IOException e) {
-                            throw new CompletionException(e);
-                        }
-                    }, executor))
-                    .toList();
+        Files.createDirectories(directory);
 
-            CompletableFuture.allOf(
-                    futures.toArray(new CompletableFuture[0])
-            ).join();
+        List<CompletableFuture<Path>> futures = jobFiles.getResourcePacks()
+                .stream()
+                .map(pack -> {
+                    Path target = directory.resolve(pack.getId() + ".zip");
+                    pin(List.of(target));
+                    // don't download a pack twice if it is requested again while it is still downloading
+                    CompletableFuture<Path> download = pendingDownloads.computeIfAbsent(target,
+                            t -> CompletableFuture.supplyAsync(() -> {
+                                try {
+                                    return downloadIfNeeded(pack, directory);
+                                } catch (IOException e) {
+                                    throw new CompletionException(e);
+                                }
+                            }, executor));
+                    download.whenComplete((path, e) -> pendingDownloads.remove(target, download));
+                    return download;
+                })
+                .toList();
 
-        } finally {
-            executor.shutdown();
+        List<Path> files = new ArrayList<>(futures.size());
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            for (CompletableFuture<Path> future : futures) {
+                files.add(future.join());
+            }
+        } catch (CompletionException e) {
+            release(jobFiles.getResourcePacks().stream().map(pack -> directory.resolve(pack.getId() + ".zip")).toList());
+            throw e.getCause() instanceof IOException
+                    ? (IOException) e.getCause()
+                    : new IOException("Downloading the resource packs failed", e.getCause());
         }
+
+        evict(directory);
         return files;
     }
 
+    /**
+     * Release resource packs that were returned by {@link #downloadResourcePacks}, so that they can be evicted.
+     *
+     * @param packs resource packs
+     */
+    public synchronized void release(List<Path> packs) {
+        for (Path pack : packs) {
+            pinned.computeIfPresent(pack, (p, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    private synchronized void pin(List<Path> packs) {
+        for (Path pack : packs) {
+            pinned.merge(pack, 1, Integer::sum);
+        }
+    }
+
     private Path downloadIfNeeded(JobFiles.ResourcePack pack, Path directory) throws IOException {
         Path target = directory.resolve(pack.getId() + ".zip");
+        Path hashFile = directory.resolve(pack.getId() + ".zip.sha256");
         Path temp = directory.resolve(pack.getId() + ".zip.download");
 
         // already downloaded
         if (Files.exists(target)) {
-            LOGGER.info("Skipping {} because it already exists", pack.getId());
-            return target;
+            String hash = Files.exists(hashFile) ? Files.readString(hashFile).trim() : null;
+            if (hash == null) {
+                // cached by an older version, verify it once
+                if (isValidZip(target)) {
+                    hash = FileUtil.sha256(target);
+                    Files.writeString(hashFile, hash);
+                } else {
+                    LOGGER.warn("Cached resource pack {} is corrupt, downloading it again", pack.getId());
+                }
+            }
+            if (hash != null && (pack.getSha256() == null || pack.getSha256().equalsIgnoreCase(hash))) {
+                LOGGER.info("Skipping {} because it already exists", pack.getId());
+                Metrics.recordCacheLookup("resource_packs", true);
+                Files.setLastModifiedTime(target, FileTime.fromMillis(System.currentTimeMillis()));
+                return target;
+            }
+            if (hash != null) {
+                LOGGER.info("Cached resource pack {} is outdated, downloading it again", pack.getId());
+            }
+            Files.deleteIfExists(hashFile);
+            Files.deleteIfExists(target);
         }
 
         // remove incomplete previous download
         Files.deleteIfExists(temp);
 
         LOGGER.info("Downloading {}", pack.getId());
+        Metrics.recordCacheLookup("resource_packs", false);
+        long start = System.nanoTime();
         Request request = new Request.Builder()
                 .url(pack.getUrl())
                 .build();
@@ -110,15 +211,40 @@ public class ResourcePackDownloader {
                         "Empty response body for " + pack.getId()
                 );
             }
-            try (BufferedSink bufferedSink = Okio.buffer(Okio.sink(temp))) {
-                bufferedSink.writeAll(response.body().source());
+
+            MessageDigest digest = FileUtil.newSha256Digest();
+            long length = 0;
+            try (InputStream in = response.body().byteStream(); OutputStream out = Files.newOutputStream(temp)) {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                    length += read;
+                }
             }
+            long expectedLength = response.body().contentLength();
+            if (expectedLength >= 0 && expectedLength != length) {
+                throw new IOException("Incomplete download of " + pack.getId() + ", got " + length + " of "
+                        + expectedLength + " bytes");
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            if (pack.getSha256() != null && !pack.getSha256().equalsIgnoreCase(hash)) {
+                throw new IOException("Checksum mismatch for " + pack.getId() + ", expected " + pack.getSha256()
+                        + " but got " + hash);
+            }
+            if (!isValidZip(temp)) {
+                throw new IOException("Downloaded resource pack " + pack.getId() + " is not a valid zip file");
+            }
+
             try {
                 Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
             } catch (AtomicMoveNotSupportedException e) {
                 // fallback for filesystems that don't support atomic moves
                 Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
             }
+            Files.writeString(hashFile, hash);
+            Metrics.recordDownload("resourcepack", length, System.nanoTime() - start);
             LOGGER.info("Finished downloading {}", pack.getId());
             return target;
         } catch (Exception e) {
@@ -128,4 +254,61 @@ public class ResourcePackDownloader {
             throw e;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Get the verified SHA-256 hash of a cached resource pack.
+     *
+     * @param pack resource pack returned by {@link #downloadResourcePacks}
+     * @return SHA-256 hash
+     * @throws IOException if the hash can't be read
+     */
+    public String getHash(Path pack) throws IOException {
+        return Files.readString(pack.resolveSibling(pack.getFileName() + ".sha256")).trim();
+    }
+
+    private static boolean isValidZip(Path file) {
+        // opening the file reads the central directory at the end of the file, which fails for truncated files
+        try (ZipFile zip = new ZipFile(file.toFile())) {
+            return zip.size() >= 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Evict the least recently used packs that are not pinned until the cache fits into its size budget.
+     */
+    private synchronized void evict(Path directory) throws IOException {
+        List<Path> packs;
+        try (Stream<Path> files = Files.list(directory)) {
+            packs = files.filter(file -> file.getFileName().toString().endsWith(".zip"))
+                    .sorted(Comparator.comparing(ResourcePackDownloader::lastModified))
+                    .toList();
+        }
+        long size = 0;
+        for (Path pack : packs) {
+            size += Files.size(pack);
+        }
+        for (Path pack : packs) {
+            if (size <= maxCacheSize) {
+                break;
+            }
+            if (pinned.containsKey(pack)) {
+                continue;
+            }
+            long packSize = Files.size(pack);
+            LOGGER.info("Evicting resource pack {}", pack.getFileName());
+            Files.delete(pack);
+            Files.deleteIfExists(pack.resolveSibling(pack.getFileName() + ".sha256"));
+            size -= packSize;
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.lemaik.renderservice.renderer.rendering;
+
+import de.lemaik.renderservice.renderer.chunky.TextureCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.llbit.chunky.resources.ResourcePackLoader;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The resource packs that are loaded into Chunky. Chunky keeps textures in static fields, so all render workers of
+ * the node share the loaded packs.
+ * <p>
+ * Workers {@link #acquire} the packs of a task before rendering it and {@link #release} them afterwards. A worker
+ * that needs different packs waits until no worker renders with the loaded packs anymore. Workers that could use the
+ * loaded packs wait as well while another worker is waiting to switch them, so that switching can't be starved.
+ */
+public class ResourcePackStack {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResourcePackStack.class);
+
+    private final Path resourcePacksPath;
+    private final TextureCache textureCache;
+    private List<Integer> loadedIds = Collections.emptyList();
+    private List<Path> loadedPacks = Collections.emptyList();
+    private int users;
+    private int waitingToSwitch;
+
+    /**
+     * Create a new resource pack stack.
+     *
+     * @param resourcePacksPath directory to download resource packs to
+     * @param textureCache      cache for decoded textures, or null to always load the packs
+     */
+    public ResourcePackStack(Path resourcePacksPath, TextureCache textureCache) {
+        this.resourcePacksPath = resourcePacksPath;
+        this.textureCache = textureCache;
+    }
+
+    /**
+     * Load the resource packs of the given task, if they are not loaded yet, and keep them loaded until
+     * {@link #release} is called.
+     *
+     * @param task task
+     * @throws IOException if the resource packs could not be downloaded
+     */
+    public synchronized void acquire(Task task) throws IOException, InterruptedException {
+        List<Integer> ids = task.getFiles().getResourcePacks().stream().map(JobFiles.ResourcePack::getId).toList();
+        boolean waiting = false;
+        try {
+            while (!canAcquire(ids, waiting)) {
+                if (!waiting && !ids.equals(loadedIds)) {
+                    LOGGER.info("Waiting for other workers to finish rendering with the loaded resource packs");
+                    waiting = true;
+                    waitingToSwitch++;
+                }
+                wait();
+            }
+        } finally {
+            if (waiting) {
+                waitingToSwitch--;
+            }
+        }
+        try {
+            if (!ids.equals(loadedIds)) {
+                load(task, ids);
+            }
+            users++;
+        } finally {
+            // workers that wait for the same packs can use them now, or try to switch them if loading failed
+            notifyAll();
+        }
+    }
+
+    /**
+     * Release the resource packs that were acquired with {@link #acquire}.
+     */
+    public synchronized void release() {
+        users--;
+        notifyAll();
+    }
+
+    private boolean canAcquire(List<Integer> ids, boolean waiting) {
+        if (ids.equals(loadedIds)) {
+            // let workers that wait to switch the packs go first
+            return waitingToSwitch - (waiting ? 1 : 0) == 0;
+        }
+        return users == 0;
+    }
+
+    private void load(Task task, List<Integer> ids) throws IOException {
+        String resourcePackIds = ids.stream().map(Object::toString).collect(Collectors.joining(", "));
+        LOGGER.info("Downloading resource packs: {}", resourcePackIds);
+        List<Path> downloadedResourcePacks = ResourcePackDownloader.getInstance()
+                .downloadResourcePacks(task.getFiles(), resourcePacksPath);
+        List<String> stack = new ArrayList<>(downloadedResourcePacks.size());
+        for (Path pack : downloadedResourcePacks) {
+            stack.add(ResourcePackDownloader.getInstance().getHash(pack));
+        }
+        if (textureCache != null && textureCache.restore(stack)) {
+            LOGGER.info("Restored cached textures of resource packs: {}", resourcePackIds);
+        } else {
+            LOGGER.info("Loading resource packs: {}", resourcePackIds);
+            ResourcePackLoader.loadResourcePacks(downloadedResourcePacks.stream().map(Path::toFile).toList());
+            if (textureCache != null) {
+                textureCache.store(stack);
+            }
+        }
+        ResourcePackDownloader.getInstance().release(loadedPacks);
+        loadedPacks = downloadedResourcePacks;
+        loadedIds = ids;
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.lemaik.renderservice.renderer.rendering;
+
+import de.lemaik.renderservice.renderer.chunky.ChunkyWrapper;
+import de.lemaik.renderservice.renderer.chunky.RenderException;
+import de.lemaik.renderservice.renderer.encoding.CompactDump;
+import de.lemaik.renderservice.renderer.metrics.EncodeEvent;
+import de.lemaik.renderservice.renderer.metrics.Metrics;
+import de.lemaik.renderservice.renderer.metrics.UploadEvent;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes and uploads render results. If a queue size is configured, results are uploaded by a background thread
+ * while the next task is rendering. Submitting a result blocks while the queue is full, so that the memory used by
+ * pending results stays bounded.
+ */
+public class ResultUploader {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResultUploader.class);
+
+    private final RenderServerApiClient apiClient;
+    private final Path spoolDirectory;
+    private final CompactDump.Precision compactDumpPrecision;
+    private final int queueSize;
+    private final Semaphore slots;
+    private final BlockingQueue<PendingUpload> queue;
+    private final Thread thread;
+    private volatile RenderException failure;
+    private volatile boolean sampleCountsRejected;
+
+    /**
+     * Create a new result uploader.
+     *
+     * @param apiClient            API client
+     * @param queueSize            number of results to upload in the background, or 0 to upload synchronously
+     * @param spoolDirectory       directory to write results to before uploading them, or null to stream them directly
+     * @param compactDumpPrecision precision of compact dumps, or null to only upload dumps in Chunky's format
+     */
+    public ResultUploader(RenderServerApiClient apiClient, int queueSize, Path spoolDirectory,
+                          CompactDump.Precision compactDumpPrecision) {
+        this.apiClient = apiClient;
+        this.spoolDirectory = spoolDirectory;
+        this.compactDumpPrecision = compactDumpPrecision;
+        this.queueSize = queueSize;
+        if (queueSize > 0) {
+            // a slot is held until the upload finished, so the upload in progress counts towards the queue size
+            slots = new Semaphore(queueSize);
+            queue = new LinkedBlockingQueue<>();
+            thread = new Thread(this::run, "Result uploader");
+            thread.setDaemon(true);
+            thread.start();
+        } else {
+            slots = null;
+            queue = null;
+            thread = null;
+        }
+    }
+
+    /**
+     * Check if results are uploaded in the background, i.e. while the next task is rendering.
+     *
+     * @return true if uploads are queued
+     */
+    public boolean isAsynchronous() {
+        return queue != null;
+    }
+
+    /**
+     * Check if the server accepts dumps with the sample count of every pixel, which adaptively sampled results need.
+     * This is assumed until the server chose another dump format for such a result.
+     *
+     * @return false if the server rejected dumps with sample counts
+     */
+    public boolean isSampleCountsAccepted() {
+        return compactDumpPrecision != null && !sampleCountsRejected;
+    }
+
+    /**
+     * Upload the result of the given task. Without a queue, this uploads the result immediately. Otherwise, the result
+     * is queued and this only blocks if the queue is full.
+     *
+     * @param task   task
+     * @param result render result of the task
+     * @throws RenderException if this upload or a previously queued upload failed
+     */
+    public void submit(Task task, ChunkyWrapper.RenderResult result) throws RenderException, InterruptedException {
+        if (queue == null) {
+            upload(task, result);
+            return;
+        }
+
+        slots.acquire();
+        queue.put(new PendingUpload(task, result));
+        RenderException previousFailure = failure;
+        if (previousFailure != null) {
+            failure = null;
+            throw previousFailure;
+        }
+    }
+
+    /**
+     * Wait for all queued uploads to finish and stop the upload thread.
+     */
+    public void shutdown() throws InterruptedException {
+        if (thread != null) {
+            int pending = queueSize - slots.availablePermits();
+            if (pending > 0) {
+                LOGGER.info("Waiting for {} pending uploads...", pending);
+            }
+            if (!slots.tryAcquire(queueSize, 30, TimeUnit.MINUTES)) {
+                LOGGER.warn("Pending uploads did not finish in time");
+            }
+            thread.interrupt();
+            thread.join();
+        }
+    }
+
+    private void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                PendingUpload upload = queue.take();
+                try {
+                    upload(upload.task, upload.result);
+                } catch (RenderException e) {
+                    LOGGER.error("Uploading the result of task {} failed", upload.task.getId(), e);
+                    failure = e;
+                } finally {
+                    slots.release();
+                }
+            }
+        } catch (InterruptedException e) {
+            // stopped
+        }
+    }
+
+    private void upload(Task task, ChunkyWrapper.RenderResult result) throws RenderException, InterruptedException {
+        LOGGER.info("Uploading result of task {}...", task.getId());
+        try {
+            String[] dumpFormats;
+            if (compactDumpPrecision == null) {
+                dumpFormats = new String[0];
+            } else if (result.hasSampleCounts()) {
+                dumpFormats = new String[]{CompactDump.FORMAT_NAME_WITH_SAMPLE_COUNTS, CompactDump.FORMAT_NAME};
+            } else {
+                dumpFormats = new String[]{CompactDump.FORMAT_NAME};
+            }
+            FinishTaskRenderingResponse.UploadUrls uploadUrls = apiClient.finishTaskRendering(task.getId(), dumpFormats)
+                    .get().getUploadUrls();
+            if (uploadUrls.getDump() != null) {
+                if (result.hasSampleCounts()
+                        && !CompactDump.FORMAT_NAME_WITH_SAMPLE_COUNTS.equals(uploadUrls.getDumpFormat())) {
+                    // any other format would make the server treat every pixel as if it had the average spp, so the
+                    // task is released to be rendered again, uniformly
+                    sampleCountsRejected = true;
+                    LOGGER.warn("The server doesn't accept dumps with sample counts, adaptive sampling is disabled "
+                            + "for the next renders and task {} is released", task.getId());
+                    apiClient.releaseTasks(Collections.singletonList(task.getId())).get();
+                    return;
+                }
+                if (CompactDump.FORMAT_NAME_WITH_SAMPLE_COUNTS.equals(uploadUrls.getDumpFormat())) {
+                    upload(task, uploadUrls.getDump(), "dump", MediaType.parse("application/octet-stream"),
+                            out -> result.writeCompactDump(out, compactDumpPrecision, true));
+                } else if (CompactDump.FORMAT_NAME.equals(uploadUrls.getDumpFormat())) {
+                    upload(task, uploadUrls.getDump(), "dump", MediaType.parse("application/octet-stream"),
+                            out -> result.writeCompactDump(out, compactDumpPrecision, false));
+                } else {
+                    upload(task, uploadUrls.getDump(), "dump", MediaType.parse("application/octet-stream"),
+                            result::writeDump);
+                }
+            }
+            upload(task, uploadUrls.getImage(), "image", MediaType.parse("image/png"), result::writePngImage);
+            if (result.getSpp() < task.getSpp()) {
+                apiClient.finishTask(task.getId(), result.getSpp()).get();
+            } else {
+                apiClient.finishTask(task.getId()).get();
+            }
+        } catch (ExecutionException | IOException e) {
+            throw new RenderException("Upload failed", e);
+        }
+        LOGGER.info("Uploaded result of task {}", task.getId());
+    }
+
+    /**
+     * Upload a file. If results are spooled, the time to write the file is recorded as the encode phase. Otherwise,
+     * the file is encoded while it is uploaded and the upload phase includes encoding it.
+     */
+    private void upload(Task task, String url, String kind, MediaType contentType, StreamingRequestBody.Writer writer)
+            throws IOException, ExecutionException, InterruptedException {
+        UploadEvent uploadEvent = new UploadEvent();
+        uploadEvent.setTask(task);
+        uploadEvent.kind = kind;
+        if (spoolDirectory == null) {
+            StreamingRequestBody body = new StreamingRequestBody(contentType, writer);
+            uploadEvent.begin();
+            try (Metrics.Timer ignored = Metrics.startPhase("upload")) {
+                apiClient.uploadFile(url, body).get();
+            }
+            uploadEvent.bytes = body.getLength();
+            uploadEvent.commit();
+            Metrics.UPLOADED_BYTES.inc(body.getLength(), kind);
+            return;
+        }
+
+        Path spoolFile = Files.createTempFile(spoolDirectory, "upload-", ".tmp");
+        try {
+            EncodeEvent encodeEvent = new EncodeEvent();
+            encodeEvent.setTask(task);
+            encodeEvent.kind = kind;
+            encodeEvent.begin();
+            try (Metrics.Timer ignored = Metrics.startPhase("encode");
+                 OutputStream out = new BufferedOutputStream(Files.newOutputStream(spoolFile))) {
+                writer.write(out);
+            }
+            long size = Files.size(spoolFile);
+            encodeEvent.bytes = size;
+            encodeEvent.commit();
+            uploadEvent.begin();
+            try (Metrics.Timer ignored = Metrics.startPhase("upload")) {
+                apiClient.uploadFile(url, RequestBody.create(contentType, spoolFile.toFile())).get();
+            }
+            uploadEvent.bytes = size;
+            uploadEvent.commit();
+            Metrics.UPLOADED_BYTES.inc(size, kind);
+        } finally {
+            Files.deleteIfExists(spoolFile);
+        }
+    }
+
+    private static class PendingUpload {
+        private final Task task;
+        private final ChunkyWrapper.RenderResult result;
+
+        private PendingUpload(Task task, ChunkyWrapper.RenderResult result) {
+            this.task = task;
+            this.result = result;
+        }
+    }
+}
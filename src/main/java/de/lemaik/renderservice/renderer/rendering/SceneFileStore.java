@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.lemaik.renderservice.renderer.rendering;
+
+import de.lemaik.renderservice.renderer.metrics.Metrics;
+import de.lemaik.renderservice.renderer.util.FileUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * A persistent, content-addressed store for scene files (octrees and emitter grids).
+ * <p>
+ * Files are stored by their SHA-256 hash and linked into task directories with hard links, so that they survive
+ * job switches without being copied. Files are only looked up by the hash that the API provides. Files without a hash
+ * are downloaded again, because the content behind their URL may have changed, but they are still stored only once.
+ * The least recently used files that are not linked into any task directory are evicted when the store exceeds its
+ * size budget.
+ */
+public class SceneFileStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SceneFileStore.class);
+
+    private final Path blobDirectory;
+    private final Path tempDirectory;
+    private final long maxSize;
+    private final Map<String, CompletableFuture<String>> pendingDownloads = new HashMap<>();
+
+    /**
+     * Create a new scene file store.
+     *
+     * @param directory store directory
+     * @param maxSize   maximum size of the stored files, in bytes
+     * @throws IOException if the store directory can't be created
+     */
+    public SceneFileStore(Path directory, long maxSize) throws IOException {
+        this.blobDirectory = directory.resolve("blobs");
+        this.tempDirectory = directory.resolve("tmp");
+        this.maxSize = maxSize;
+        Files.createDirectories(blobDirectory);
+        Files.createDirectories(tempDirectory);
+        removeStaleDownloads();
+    }
+
+    /**
+     * Get a scene file and link it to the given target file, downloading it if it is not in the store yet.
+     * <p>
+     * Cancelling the returned download only stops linking the file to the target. The download into the store keeps
+     * running, because other tasks may wait for it and the file will most likely be used again.
+     *
+     * @param url      URL of the file
+     * @param sha256   expected SHA-256 hash of the file, or null if it is unknown
+     * @param target   file to link the stored file to
+     * @param download function that downloads the URL to the given file, completing with the SHA-256 hash of the file
+     *                 if it was computed while writing it, or null
+     * @return download that completes with the target file
+     */
+    public CancellableDownload<File> fetch(String url, String sha256, File target,
+                                           Function<File, CompletableFuture<String>> download) {
+        CompletableFuture<String> hash;
+        synchronized (this) {
+            String knownHash = sha256 != null ? sha256.toLowerCase() : null;
+            boolean stored = knownHash != null && Files.exists(blobDirectory.resolve(knownHash));
+            Metrics.recordCacheLookup("scene_store", stored);
+            if (stored) {
+                LOGGER.info("Using stored file {} for {}", knownHash, url);
+                hash = CompletableFuture.completedFuture(knownHash);
+            } else {
+                hash = pendingDownloads.get(url);
+                if (hash == null) {
+                    hash = downloadToStore(url, sha256, download);
+                    pendingDownloads.put(url, hash);
+                    hash.whenComplete((h, e) -> {
+                        synchronized (this) {
+                            pendingDownloads.remove(url);
+                        }
+                    });
+                }
+            }
+        }
+
+        // linking starts at most once and is skipped if the fetch was cancelled before
+        AtomicBoolean started = new AtomicBoolean();
+        CompletableFuture<File> linked = new CompletableFuture<>();
+        hash.whenComplete((h, e) -> {
+            if (!started.compareAndSet(false, true)) {
+                return;
+            }
+            if (e != null) {
+                linked.completeExceptionally(e);
+                return;
+            }
+            try {
+                link(h, target.toPath());
+                linked.complete(target);
+            } catch (IOException ex) {
+                linked.completeExceptionally(new IOException("Could not link stored file " + h + " to " + target, ex));
+            }
+        });
+        return new CancellableDownload<>(linked, () -> {
+            if (started.compareAndSet(false, true)) {
+                linked.cancel(false);
+            }
+        });
+    }
+
+    private CompletableFuture<String> downloadToStore(String url, String sha256,
+                                                      Function<File, CompletableFuture<String>> download) {
+        // the name only depends on the URL, so that an interrupted download can be resumed
+        File tempFile = tempDirectory.resolve(
+                HexFormat.of().formatHex(FileUtil.newSha256Digest().digest(url.getBytes(StandardCharsets.UTF_8))))
+                .toFile();
+        LOGGER.info("Downloading {} into the scene file store", url);
+        return download.apply(tempFile).thenApply(computedHash -> {
+            try {
+                String hash = computedHash != null ? computedHash : FileUtil.sha256(tempFile.toPath());
+                if (sha256 != null && !sha256.equalsIgnoreCase(hash)) {
+                    throw new IOException("Checksum mismatch for " + url + ", expected " + sha256 + " but got " + hash);
+                }
+                Path blob = blobDirectory.resolve(hash);
+                synchronized (this) {
+                    if (Files.exists(blob)) {
+                        Files.delete(tempFile.toPath());
+                    } else {
+                        try {
+                            Files.move(tempFile.toPath(), blob, StandardCopyOption.ATOMIC_MOVE);
+                        } catch (AtomicMoveNotSupportedException e) {
+                            Files.move(tempFile.toPath(), blob, StandardCopyOption.REPLACE_EXISTING);
+                        }
+                    }
+                    evict(blob);
+                }
+                return hash;
+            } catch (IOException e) {
+                tempFile.delete();
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    /**
+     * Remove partial downloads that were not resumed for a day.
+     */
+    private void removeStaleDownloads() throws IOException {
+        long threshold = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1);
+        try (Stream<Path> files = Files.list(tempDirectory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (lastModified(file).toMillis() < threshold) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private synchronized void link(String hash, Path target) throws IOException {
+        Path blob = blobDirectory.resolve(hash);
+        Files.setLastModifiedTime(blob, FileTime.fromMillis(System.currentTimeMillis()));
+        Files.deleteIfExists(target);
+        try {
+            Files.createLink(target, blob);
+        } catch (UnsupportedOperationException | IOException e) {
+            // e.g. if the job directory is on a different file system
+            LOGGER.warn("Could not link {} to {}, copying it instead", blob, target);
+            Files.copy(blob, target);
+        }
+    }
+
+    /**
+     * Evict the least recently used files until the store fits into its size budget. Files that are linked into a
+     * task directory are not evicted.
+     *
+     * @param keep file to never evict
+     */
+    private void evict(Path keep) throws IOException {
+        List<Path> blobs;
+        try (Stream<Path> files = Files.list(blobDirectory)) {
+            blobs = files.sorted(Comparator.comparing(SceneFileStore::lastModified)).toList();
+        }
+        long size = 0;
+        for (Path blob : blobs) {
+            size += Files.size(blob);
+        }
+        for (Path blob : blobs) {
+            if (size <= maxSize) {
+                break;
+            }
+            if (blob.equals(keep) || isLinked(blob)) {
+                continue;
+            }
+            long blobSize = Files.size(blob);
+            LOGGER.info("Evicting {} from the scene file store", blob.getFileName());
+            Files.delete(blob);
+            size -= blobSize;
+        }
+    }
+
+    private static boolean isLinked(Path file) {
+        try {
+            return ((Number) Files.getAttribute(file, "unix:nlink")).intValue() > 1;
+        } catch (UnsupportedOperationException | IllegalArgumentException | IOException e) {
+            return false;
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+}
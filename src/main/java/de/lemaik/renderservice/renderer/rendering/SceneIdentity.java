@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.lemaik.renderservice.renderer.rendering;
+
+import java.util.Objects;
+
+/**
+ * Identifies the loaded geometry of a scene by the content hashes of its octree and emitter grid. Jobs with the same
+ * scene identity only differ in their scene settings (e.g. camera or sky).
+ */
+public class SceneIdentity {
+    private final String octreeHash;
+    private final String emittergridHash;
+
+    private SceneIdentity(String octreeHash, String emittergridHash) {
+        this.octreeHash = octreeHash;
+        this.emittergridHash = emittergridHash;
+    }
+
+    /**
+     * Get the scene identity of a task without downloading its files, using the hashes provided by the API.
+     *
+     * @param apiClient API client
+     * @param task      task
+     * @return scene identity, or null if the hashes are not known
+     */
+    public static SceneIdentity of(RenderServerApiClient apiClient, Task task) {
+        String octreeHash = apiClient.getSceneFileHash(task.getFiles().getOctree());
+        if (octreeHash == null) {
+            return null;
+        }
+        JobFiles.File emittergrid = task.getFiles().getEmittergrid();
+        String emittergridHash = null;
+        if (emittergrid != null) {
+            emittergridHash = apiClient.getSceneFileHash(emittergrid);
+            if (emittergridHash == null) {
+                return null;
+            }
+        }
+        return new SceneIdentity(octreeHash, emittergridHash);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        SceneIdentity that = (SceneIdentity) o;
+        return octreeHash.equals(that.octreeHash) && Objects.equals(emittergridHash, that.emittergridHash);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(octreeHash, emittergridHash);
+    }
+
+    @Override
+    public String toString() {
+        return emittergridHash != null ? octreeHash + "+" + emittergridHash : octreeHash;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.lemaik.renderservice.renderer.rendering;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Copies a scene description from a reader to a writer token by token, replacing the scene name and the sky map on
+ * the way. Unlike parsing the scene into a tree, this doesn't need memory proportional to the size of the scene,
+ * which mostly consists of chunk and entity lists. Numbers are copied verbatim.
+ */
+public class SceneJsonRewriter {
+    private SceneJsonRewriter() {
+    }
+
+    /**
+     * Copy a scene description.
+     *
+     * @param in     reader of the original scene description
+     * @param out    writer for the rewritten scene description
+     * @param name   scene name to set
+     * @param skymap sky map file to set, or null to keep the sky map of the scene
+     * @throws IOException if reading or writing fails or the scene description is not a JSON object
+     */
+    public static void rewrite(JsonReader in, JsonWriter out, String name, String skymap) throws IOException {
+        boolean hasName = false;
+        boolean hasSky = false;
+        in.beginObject();
+        out.beginObject();
+        while (in.hasNext()) {
+            String key = in.nextName();
+            if (key.equals("name")) {
+                in.skipValue();
+                out.name("name").value(name);
+                hasName = true;
+            } else if (key.equals("sky") && skymap != null) {
+                out.name("sky");
+                if (in.peek() == JsonToken.BEGIN_OBJECT) {
+                    rewriteSky(in, out, skymap);
+                } else {
+                    // not a sky that a sky map could be added to, e.g. null
+                    in.skipValue();
+                    out.beginObject().name("skymap").value(skymap).endObject();
+                }
+                hasSky = true;
+            } else {
+                out.name(key);
+                copy(in, out);
+            }
+        }
+        if (!hasName) {
+            out.name("name").value(name);
+        }
+        if (skymap != null && !hasSky) {
+            out.name("sky").beginObject().name("skymap").value(skymap).endObject();
+        }
+        in.endObject();
+        out.endObject();
+        out.flush();
+    }
+
+    private static void rewriteSky(JsonReader in, JsonWriter out, String skymap) throws IOException {
+        boolean hasSkymap = false;
+        in.beginObject();
+        out.beginObject();
+        while (in.hasNext()) {
+            String key = in.nextName();
+            out.name(key);
+            if (key.equals("skymap")) {
+                in.skipValue();
+                out.value(skymap);
+                hasSkymap = true;
+            } else {
+                copy(in, out);
+            }
+        }
+        if (!hasSkymap) {
+            out.name("skymap").value(skymap);
+        }
+        in.endObject();
+        out.endObject();
+    }
+
+    private static void copy(JsonReader in, JsonWriter out) throws IOException {
+        switch (in.peek()) {
+            case BEGIN_ARRAY:
+                in.beginArray();
+                out.beginArray();
+                while (in.hasNext()) {
+                    copy(in, out);
+                }
+                in.endArray();
+                out.endArray();
+                break;
+            case BEGIN_OBJECT:
+                in.beginObject();
+                out.beginObject();
+                while (in.hasNext()) {
+                    out.name(in.nextName());
+                    copy(in, out);
+                }
+                in.endObject();
+                out.endObject();
+                break;
+            case STRING:
+                out.value(in.nextString());
+                break;
+            case NUMBER:
+                out.jsonValue(in.nextString());
+                break;
+            case BOOLEAN:
+                out.value(in.nextBoolean());
+                break;
+            case NULL:
+                in.nextNull();
+                out.nullValue();
+                break;
+            default:
+                throw new IOException("Unexpected " + in.peek() + " in the scene description");
+        }
+    }
+}
@@ -0,0 +1,608 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.lemaik.renderservice.renderer.rendering;
+
+import com.google.gson.Gson;
+import de.lemaik.renderservice.renderer.util.FileUtil;
+import okhttp3.Call;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Downloads large files in several parallel segments using HTTP range requests.
+ * <p>
+ * Data is written to a {@code .part} file next to the target file. The progress of every segment is recorded in a
+ * {@code .part.json} file, so a failed download continues where it stopped, both when a segment is retried and when
+ * the same file is downloaded again later. If the ETag of the file changed in the meantime, the download starts over.
+ * Connections are cancelled and resumed if their throughput drops below a minimum for a while, instead of relying on a
+ * fixed read timeout. Servers that don't support range requests are handled by downloading the file in a single
+ * request.
+ */
+public class SegmentedDownloader {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SegmentedDownloader.class);
+    private static final Gson gson = new Gson();
+    private static final long MIN_SEGMENT_SIZE = 8 * 1024 * 1024;
+    private static final long PROGRESS_SAVE_INTERVAL = 4 * 1024 * 1024;
+    private static final int MAX_ATTEMPTS = 5;
+
+    private final OkHttpClient client;
+    private final int segments;
+    private final long stallTimeoutMillis;
+    private final long minBytesPerSecond;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService watchdog;
+
+    /**
+     * Create a new segmented downloader.
+     *
+     * @param client             HTTP client, its read timeout should be disabled
+     * @param segments           maximum number of parallel segments per file
+     * @param stallTimeoutMillis time window in which a connection must reach the minimum throughput
+     * @param minBytesPerSecond  minimum throughput of a connection, in bytes per second
+     */
+    public SegmentedDownloader(OkHttpClient client, int segments, long stallTimeoutMillis, long minBytesPerSecond) {
+        this.client = client;
+        this.segments = Math.max(1, segments);
+        this.stallTimeoutMillis = stallTimeoutMillis;
+        this.minBytesPerSecond = minBytesPerSecond;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "Segmented download " + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "Download watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Download a file. Cancelling the returned download cancels its calls, but keeps the partially downloaded file
+     * so that it can be resumed.
+     *
+     * @param url  URL to download
+     * @param file target file
+     * @return the download, it completes with the target file
+     */
+    public CancellableDownload<File> download(String url, File file) {
+        return start(url, file, hash -> file);
+    }
+
+    /**
+     * Download a file and compute its SHA-256 hash while writing it. Segments are written out of order, so the hash
+     * is only computed if the file is downloaded in one piece and not resumed from an earlier download.
+     *
+     * @param url  URL to download
+     * @param file target file
+     * @return the download, it completes with the SHA-256 hash of the file, or null if it was not computed
+     */
+    public CancellableDownload<String> downloadWithSha256(String url, File file) {
+        return start(url, file, hash -> hash);
+    }
+
+    private <T> CancellableDownload<T> start(String url, File file, Function<String, T> result) {
+        Download download = new Download(url, file.toPath());
+        CompletableFuture<T> work = CompletableFuture.supplyAsync(() -> {
+            try {
+                return result.apply(download.run());
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+        return new CancellableDownload<>(work, download::cancel);
+    }
+
+    private class Download {
+        private final String url;
+        private final Path target;
+        private final Path partFile;
+        private final Path progressFile;
+        private final Set<Call> activeCalls = ConcurrentHashMap.newKeySet();
+        private volatile boolean cancelled;
+        private volatile boolean failed;
+        private volatile boolean changed;
+        private Progress progress;
+
+        private Download(String url, Path target) {
+            this.url = url;
+            this.target = target;
+            this.partFile = target.resolveSibling(target.getFileName() + ".part");
+            this.progressFile = target.resolveSibling(target.getFileName() + ".part.json");
+        }
+
+        /**
+         * Download the file. If the file changed since parts of it were downloaded, it is downloaded again from the
+         * start.
+         *
+         * @return SHA-256 hash of the file, or null if it was not downloaded in order
+         */
+        private String run() throws IOException {
+            try {
+                return attempt();
+            } catch (IOException e) {
+                if (!changed) {
+                    throw e;
+                }
+                LOGGER.warn("{} changed during the download, starting over", url);
+                Files.deleteIfExists(progressFile);
+                Files.deleteIfExists(partFile);
+                changed = false;
+                failed = false;
+                return attempt();
+            }
+        }
+
+        private String attempt() throws IOException {
+            Progress saved = loadProgress();
+            Response probe = null;
+            try {
+                if (saved == null || !Files.exists(partFile) || Files.size(partFile) != saved.length) {
+                    // request a single byte to learn the file size and whether ranges are supported
+                    probe = execute(new Request.Builder().url(url).header("Range", "bytes=0-0").get().build());
+                    if (probe.code() == 416) {
+                        // empty file
+                        Files.write(target, new byte[0]);
+                        return HexFormat.of().formatHex(FileUtil.newSha256Digest().digest());
+                    }
+                    long length = probe.code() == 206 ? parseLength(probe.header("Content-Range")) : -1;
+                    if (length < 0) {
+                        if (probe.code() != 200 && probe.code() != 206) {
+                            throw new IOException("Download of " + url + " failed, status " + probe.code());
+                        }
+                        LOGGER.info("{} doesn't support range requests, downloading it in one piece", url);
+                        Response whole = probe.code() == 200 ? probe : null;
+                        if (whole == null) {
+                            probe.close();
+                        }
+                        probe = null;
+                        return downloadWhole(whole);
+                    }
+                    progress = Progress.create(url, length, probe.header("ETag"), segmentCount(length));
+                    try (FileChannel channel = FileChannel.open(partFile, StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                        if (length > 0) {
+                            channel.write(ByteBuffer.wrap(new byte[1]), length - 1);
+                        }
+                    }
+                    saveProgress();
+                } else {
+                    progress = saved;
+                    LOGGER.info("Resuming download of {} at {}/{} bytes", url, progress.completed(), progress.length);
+                }
+            } finally {
+                if (probe != null) {
+                    probe.close();
+                }
+            }
+
+            // a single segment that starts at the beginning is written in order, even if it is retried
+            MessageDigest digest = progress.segments.size() == 1 && progress.segments.get(0).position == 0
+                    ? FileUtil.newSha256Digest()
+                    : null;
+            try (FileChannel channel = FileChannel.open(partFile, StandardOpenOption.WRITE)) {
+                List<CompletableFuture<Void>> segmentDownloads = new ArrayList<>();
+                for (Segment segment : progress.segments) {
+                    if (segment.position < segment.end) {
+                        segmentDownloads.add(CompletableFuture.runAsync(() -> {
+                            try {
+                                downloadSegment(segment, channel, digest);
+                            } catch (IOException e) {
+                                throw new CompletionException(e);
+                            }
+                        }, executor));
+                    }
+                }
+                try {
+                    CompletableFuture.allOf(segmentDownloads.toArray(new CompletableFuture[0])).join();
+                } catch (CompletionException e) {
+                    // stop the other segments, the progress is kept for the next attempt
+                    failed = true;
+                    cancelCalls();
+                    CompletableFuture.allOf(segmentDownloads.toArray(new CompletableFuture[0]))
+                            .exceptionally(ex -> null).join();
+                    saveProgress();
+                    throw e.getCause() instanceof IOException
+                            ? (IOException) e.getCause()
+                            : new IOException("Download of " + url + " failed", e.getCause());
+                }
+            }
+            complete();
+            return digest != null ? HexFormat.of().formatHex(digest.digest()) : null;
+        }
+
+        private void downloadSegment(Segment segment, FileChannel channel, MessageDigest digest) throws IOException {
+            int failures = 0;
+            while (segment.position < segment.end) {
+                long start = segment.position;
+                try (Response response = execute(new Request.Builder().url(url)
+                        .header("Range", "bytes=" + segment.position + "-" + (segment.end - 1))
+                        .get().build())) {
+                    if (response.code() != 206) {
+                        throw new IOException("Range request for " + url + " failed, status " + response.code());
+                    }
+                    long rangeStart = parseStart(response.header("Content-Range"));
+                    if (rangeStart != segment.position) {
+                        throw new IOException("Range request for " + url + " returned bytes from " + rangeStart
+                                + " instead of " + segment.position);
+                    }
+                    String etag = response.header("ETag");
+                    if (progress.etag != null && etag != null && !progress.etag.equals(etag)) {
+                        // the file changed, the downloaded parts can't be combined
+                        changed = true;
+                        throw new IOException(url + " changed during the download");
+                    }
+                    transfer(response.body().source(), channel, segment, digest);
+                } catch (IOException e) {
+                    if (cancelled) {
+                        throw new CancellationException("Download of " + url + " was cancelled");
+                    }
+                    failures = segment.position > start ? 1 : failures + 1;
+                    if (failed || changed || failures >= MAX_ATTEMPTS) {
+                        throw e;
+                    }
+                    LOGGER.warn("Segment {}-{} of {} failed at byte {}, resuming", segment.start, segment.end, url,
+                            segment.position, e);
+                    try {
+                        Thread.sleep(1000L << Math.min(failures, 5));
+                    } catch (InterruptedException ie) {
+                        throw new InterruptedIOException();
+                    }
+                }
+            }
+        }
+
+        private void transfer(BufferedSource source, FileChannel channel, Segment segment, MessageDigest digest)
+                throws IOException {
+            byte[] bytes = new byte[64 * 1024];
+            long unsaved = 0;
+            while (segment.position < segment.end) {
+                int read = source.read(bytes, 0, (int) Math.min(bytes.length, segment.end - segment.position));
+                if (read < 0) {
+                    throw new IOException("Unexpected end of " + url + " at byte " + segment.position);
+                }
+                if (digest != null) {
+                    digest.update(bytes, 0, read);
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, read);
+                while (buffer.hasRemaining()) {
+                    segment.position += channel.write(buffer, segment.position);
+                }
+                unsaved += read;
+                if (unsaved >= PROGRESS_SAVE_INTERVAL) {
+                    saveProgress();
+                    unsaved = 0;
+                }
+            }
+        }
+
+        private String downloadWhole(Response response) throws IOException {
+            int attempt = 0;
+            while (true) {
+                attempt++;
+                try {
+                    if (response == null) {
+                        response = execute(new Request.Builder().url(url).get().build());
+                    }
+                    if (response.code() != 200) {
+                        throw new IOException("Download of " + url + " failed, status " + response.code());
+                    }
+                    MessageDigest digest = FileUtil.newSha256Digest();
+                    try (FileChannel channel = FileChannel.open(partFile, StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                        BufferedSource source = response.body().source();
+                        byte[] bytes = new byte[64 * 1024];
+                        long position = 0;
+                        int read;
+                        while ((read = source.read(bytes)) >= 0) {
+                            digest.update(bytes, 0, read);
+                            ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, read);
+                            while (buffer.hasRemaining()) {
+                                position += channel.write(buffer, position);
+                            }
+                        }
+                    }
+                    complete();
+                    return HexFormat.of().formatHex(digest.digest());
+                } catch (IOException e) {
+                    if (cancelled) {
+                        throw new CancellationException("Download of " + url + " was cancelled");
+                    }
+                    if (attempt >= MAX_ATTEMPTS) {
+                        throw e;
+                    }
+                    LOGGER.warn("Download of {} failed, restarting it", url, e);
+                } finally {
+                    if (response != null) {
+                        response.close();
+                        response = null;
+                    }
+                }
+            }
+        }
+
+        private void complete() throws IOException {
+            Files.move(partFile, target, StandardCopyOption.REPLACE_EXISTING);
+            Files.deleteIfExists(progressFile);
+        }
+
+        /**
+         * Execute a request, cancelling it if it transfers less than the minimum throughput.
+         */
+        private Response execute(Request request) throws IOException {
+            if (cancelled) {
+                throw new CancellationException("Download of " + url + " was cancelled");
+            }
+            if (failed) {
+                throw new IOException("Download of " + url + " was aborted");
+            }
+            Call call = client.newCall(request);
+            activeCalls.add(call);
+            StallMonitor monitor = new StallMonitor(call);
+            monitor.schedule();
+            Response response;
+            try {
+                response = call.execute();
+            } catch (IOException | RuntimeException e) {
+                monitor.stop();
+                activeCalls.remove(call);
+                throw e;
+            }
+            return response.newBuilder()
+                    .body(new MonitoredResponseBody(response.body(), monitor, () -> activeCalls.remove(call)))
+                    .build();
+        }
+
+        private int segmentCount(long length) {
+            return (int) Math.max(1, Math.min(segments, length / MIN_SEGMENT_SIZE));
+        }
+
+        private void cancel() {
+            cancelled = true;
+            cancelCalls();
+        }
+
+        private void cancelCalls() {
+            for (Call call : activeCalls) {
+                call.cancel();
+            }
+        }
+
+        private Progress loadProgress() {
+            if (!Files.exists(progressFile)) {
+                return null;
+            }
+            try (Reader reader = Files.newBufferedReader(progressFile)) {
+                Progress saved = gson.fromJson(reader, Progress.class);
+                if (saved != null && url.equals(saved.url) && saved.segments != null) {
+                    return saved;
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("Could not read the download progress of {}, starting over", url, e);
+            }
+            return null;
+        }
+
+        private synchronized void saveProgress() {
+            Path tempFile = progressFile.resolveSibling(progressFile.getFileName() + ".tmp");
+            try {
+                try (Writer writer = Files.newBufferedWriter(tempFile)) {
+                    gson.toJson(progress, writer);
+                }
+                Files.move(tempFile, progressFile, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                LOGGER.warn("Could not save the download progress of {}", url, e);
+            }
+        }
+    }
+
+    /**
+     * Cancels a call if it transfers less than the minimum throughput within the stall timeout.
+     */
+    private class StallMonitor {
+        private final Call call;
+        private volatile long bytesInWindow;
+        private volatile boolean stopped;
+        private long windowStart = System.currentTimeMillis();
+
+        private StallMonitor(Call call) {
+            this.call = call;
+        }
+
+        private void schedule() {
+            watchdog.schedule(this::check, 1, TimeUnit.SECONDS);
+        }
+
+        private void check() {
+            if (stopped) {
+                return;
+            }
+            long elapsed = System.currentTimeMillis() - windowStart;
+            if (elapsed >= stallTimeoutMillis) {
+                if (bytesInWindow * 1000 < minBytesPerSecond * elapsed) {
+                    LOGGER.warn("Download of {} stalled ({} bytes in {} ms), cancelling it",
+                            call.request().url(), bytesInWindow, elapsed);
+                    call.cancel();
+                    return;
+                }
+                bytesInWindow = 0;
+                windowStart = System.currentTimeMillis();
+            }
+            schedule();
+        }
+
+        private void onRead(long bytes) {
+            bytesInWindow += bytes;
+        }
+
+        private void stop() {
+            stopped = true;
+        }
+    }
+
+    private static class MonitoredResponseBody extends ResponseBody {
+        private final ResponseBody body;
+        private final BufferedSource source;
+        private final StallMonitor monitor;
+        private final Runnable onClose;
+
+        private MonitoredResponseBody(ResponseBody body, StallMonitor monitor, Runnable onClose) {
+            this.body = body;
+            this.monitor = monitor;
+            this.onClose = onClose;
+            this.source = Okio.buffer(new ForwardingSource(body.source()) {
+                @Override
+                public long read(Buffer sink, long byteCount) throws IOException {
+                    long read = super.read(sink, byteCount);
+                    if (read > 0) {
+                        monitor.onRead(read);
+                    }
+                    return read;
+                }
+            });
+        }
+
+        @Override
+        public MediaType contentType() {
+            return body.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return body.contentLength();
+        }
+
+        @Override
+        public BufferedSource source() {
+            return source;
+        }
+
+        @Override
+        public void close() {
+            monitor.stop();
+            onClose.run();
+            body.close();
+        }
+    }
+
+    private static long parseLength(String contentRange) {
+        // bytes 0-0/12345
+        if (contentRange == null) {
+            return -1;
+        }
+        int slash = contentRange.lastIndexOf('/');
+        if (slash < 0) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentRange.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            // unknown length, i.e. "*"
+            return -1;
+        }
+    }
+
+    private static long parseStart(String contentRange) {
+        // bytes 100-199/12345
+        if (contentRange == null || !contentRange.startsWith("bytes ")) {
+            return -1;
+        }
+        int dash = contentRange.indexOf('-');
+        if (dash < 0) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentRange.substring("bytes ".length(), dash).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static class Progress {
+        private String url;
+        private long length;
+        private String etag;
+        private List<Segment> segments;
+
+        private static Progress create(String url, long length, String etag, int segmentCount) {
+            Progress progress = new Progress();
+            progress.url = url;
+            progress.length = length;
+            progress.etag = etag;
+            progress.segments = new ArrayList<>();
+            long segmentSize = (length + segmentCount - 1) / segmentCount;
+            for (long start = 0; start < length; start += segmentSize) {
+                progress.segments.add(new Segment(start, Math.min(length, start + segmentSize)));
+            }
+            return progress;
+        }
+
+        private long completed() {
+            return segments.stream().mapToLong(s -> s.position - s.start).sum();
+        }
+    }
+
+    private static class Segment {
+        private final long start;
+        private final long end; // exclusive
+        private volatile long position;
+
+        private Segment(long start, long end) {
+            this.start = start;
+            this.end = end;
+            this.position = start;
+        }
+    }
+}
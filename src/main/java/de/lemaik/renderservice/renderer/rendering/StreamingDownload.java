@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.lemaik.renderservice.renderer.rendering;
+
+import de.lemaik.renderservice.renderer.util.FileUtil;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.BufferedSource;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.security.DigestOutputStream;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Downloads a file to disk while also providing its content as an input stream, so that it can be parsed while the
+ * download is still in progress.
+ * <p>
+ * The stream is fed through a bounded buffer, so the download slows down to the speed of the reader. Once the reader
+ * closes the stream, the rest of the file is only written to disk. The end of the stream is only signalled after
+ * {@link #finish} was called, so that a reader can't successfully read a file that turned out to be corrupt.
+ */
+public class StreamingDownload {
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int BUFFERED_CHUNKS = 64;
+    private static final Object END = new Object();
+
+    private final BlockingQueue<Object> chunks = new ArrayBlockingQueue<>(BUFFERED_CHUNKS);
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final InputStream inputStream = new PipeInputStream();
+    private final CompletableFuture<File> result = new CompletableFuture<>();
+    private volatile boolean readerClosed;
+
+    /**
+     * Get the stream that provides the downloaded content.
+     *
+     * @return input stream
+     */
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    /**
+     * Get the result of this download.
+     *
+     * @return future that completes with the downloaded file once it is available on disk
+     */
+    public CompletableFuture<File> getResult() {
+        return result;
+    }
+
+    /**
+     * Start downloading the given URL to the given file.
+     *
+     * @param client HTTP client
+     * @param url    URL to download
+     * @param file   target file
+     * @return future that completes with the SHA-256 hash of the file when it was downloaded completely
+     */
+    CompletableFuture<String> start(OkHttpClient client, String url, File file) {
+        if (!started.compareAndSet(false, true)) {
+            throw new IllegalStateException("The download was already started");
+        }
+        File tmpFile = new File(file.getAbsolutePath() + ".tmp");
+        CompletableFuture<String> download = new CompletableFuture<>();
+        client.newCall(new Request.Builder().url(url).get().build()).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                post(e);
+                download.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (response) {
+                    if (response.code() != 200) {
+                        throw new IOException("Download of " + url + " failed, status " + response.code());
+                    }
+                    // hash while writing, so that the scene file store doesn't need to read the file again
+                    DigestOutputStream out = new DigestOutputStream(new FileOutputStream(tmpFile),
+                            FileUtil.newSha256Digest());
+                    try (out) {
+                        BufferedSource source = response.body().source();
+                        byte[] buffer = new byte[CHUNK_SIZE];
+                        int read;
+                        while ((read = source.read(buffer)) >= 0) {
+                            out.write(buffer, 0, read);
+                            if (!readerClosed && read > 0) {
+                                post(Arrays.copyOf(buffer, read));
+                            }
+                        }
+                    }
+                    if (!tmpFile.renameTo(file)) {
+                        throw new IOException("Could not rename file " + tmpFile + " to " + file);
+                    }
+                    download.complete(HexFormat.of().formatHex(out.getMessageDigest().digest()));
+                } catch (IOException e) {
+                    tmpFile.delete();
+                    post(e);
+                    download.completeExceptionally(e);
+                }
+            }
+        });
+        return download;
+    }
+
+    /**
+     * Signal that the file is available or that downloading it failed. If the download was never started, e.g. because
+     * the file was already stored, the stream reads the file from disk instead.
+     *
+     * @param file  downloaded file
+     * @param error error, or null if the file is available
+     */
+    void finish(File file, Throwable error) {
+        if (error != null) {
+            post(error);
+            result.completeExceptionally(error);
+        } else {
+            post(started.get() ? END : file);
+            result.complete(file);
+        }
+    }
+
+    private void post(Object chunk) {
+        try {
+            while (!readerClosed) {
+                if (chunks.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private class PipeInputStream extends InputStream {
+        private byte[] chunk;
+        private int position;
+        private InputStream file;
+        private boolean ended;
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (file != null) {
+                return file.read(b, off, len);
+            }
+            if (len == 0) {
+                return 0;
+            }
+            while (chunk == null || position == chunk.length) {
+                if (ended) {
+                    return -1;
+                }
+                Object next;
+                try {
+                    next = chunks.take();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+                if (next == END) {
+                    ended = true;
+                } else if (next instanceof File) {
+                    file = new FileInputStream((File) next);
+                    return file.read(b, off, len);
+                } else if (next instanceof Throwable) {
+                    throw new IOException("Downloading the file failed", (Throwable) next);
+                } else {
+                    chunk = (byte[]) next;
+                    position = 0;
+                }
+            }
+            int count = Math.min(len, chunk.length - position);
+            System.arraycopy(chunk, position, b, off, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            readerClosed = true;
+            chunks.clear();
+            if (file != null) {
+                file.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.lemaik.renderservice.renderer.rendering;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A request body of unknown length that is encoded directly into the connection while it is sent. It is sent with
+ * chunked transfer encoding, which storages that require a {@code Content-Length} (e.g. presigned S3 URLs) reject.
+ * The body may be written more than once if OkHttp retries the request, so the writer must be repeatable.
+ */
+public class StreamingRequestBody extends RequestBody {
+    private final MediaType contentType;
+    private final Writer writer;
+    private volatile long length;
+
+    public StreamingRequestBody(MediaType contentType, Writer writer) {
+        this.contentType = contentType;
+        this.writer = writer;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return contentType;
+    }
+
+    @Override
+    public long contentLength() {
+        return -1;
+    }
+
+    /**
+     * Get the number of bytes that were written by the last write of this body.
+     *
+     * @return number of bytes
+     */
+    public long getLength() {
+        return length;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        length = 0;
+        // OkHttp closes the sink itself after the body is written
+        writer.write(new FilterOutputStream(sink.outputStream()) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                length++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                length += len;
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        });
+    }
+
+    @FunctionalInterface
+    public interface Writer {
+        void write(OutputStream out) throws IOException;
+    }
+}
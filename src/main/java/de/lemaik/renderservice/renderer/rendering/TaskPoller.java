@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.lemaik.renderservice.renderer.rendering;
+
+import de.lemaik.renderservice.renderer.metrics.TaskLeasedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Leases tasks from the API.
+ * <p>
+ * If the API supports long polling, it holds the request until a task is available or the wait time elapsed and
+ * confirms this with an {@code X-Poll-Wait} header. The next request is then sent right away, so that new tasks are
+ * picked up immediately. Otherwise, the poller falls back to polling with an exponential backoff with jitter, so that
+ * idle nodes don't poll the API in lockstep.
+ * <p>
+ * The poller can lease multiple tasks per request, preferring tasks of the job of the previous task so that the
+ * loaded scene can be re-used. The tasks that were leased in addition to the returned task are queued locally and
+ * returned by the next polls. Queued tasks can be released to the API, e.g. on shutdown. Polling is not thread-safe,
+ * but releasing queued tasks may happen on a different thread.
+ */
+public class TaskPoller {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskPoller.class);
+    private static final long MIN_BACKOFF_MILLIS = 1000;
+    private static final long MAX_BACKOFF_MILLIS = 10000;
+
+    private final RenderServerApiClient apiClient;
+    private final int maxWaitSeconds;
+    private final int batchSize;
+    private final Deque<Task> queue = new ArrayDeque<>();
+    private String lastJobId;
+    private int waitSeconds;
+    private long backoffMillis = MIN_BACKOFF_MILLIS;
+    private boolean longPolling;
+
+    /**
+     * Create a new task poller.
+     *
+     * @param apiClient      API client
+     * @param maxWaitSeconds maximum time the API may hold a poll request, or 0 to disable long polling
+     * @param batchSize      maximum number of tasks to lease per request
+     */
+    public TaskPoller(RenderServerApiClient apiClient, int maxWaitSeconds, int batchSize) {
+        this.apiClient = apiClient;
+        this.maxWaitSeconds = maxWaitSeconds;
+        this.batchSize = Math.max(1, batchSize);
+        this.waitSeconds = maxWaitSeconds;
+    }
+
+    /**
+     * Get the next queued task or poll for the next task once. If no task is available, this waits until the next poll
+     * should be sent.
+     *
+     * @return the leased task or null if no task is available
+     */
+    public Task poll() throws InterruptedException, ExecutionException {
+        synchronized (queue) {
+            Task queued = queue.poll();
+            if (queued != null) {
+                return queued;
+            }
+        }
+
+        NextTaskResponse response = apiClient.getNextTasks(batchSize, lastJobId, waitSeconds).get();
+        if (response.getPollWaitSeconds() >= 0) {
+            // the server may hold requests for a shorter time than requested
+            waitSeconds = Math.min(maxWaitSeconds, response.getPollWaitSeconds());
+        }
+        boolean heldRequest = waitSeconds > 0 && response.getPollWaitSeconds() > 0;
+        if (heldRequest != longPolling) {
+            longPolling = heldRequest;
+            if (longPolling) {
+                LOGGER.info("Long polling for tasks ({} seconds)", waitSeconds);
+            } else {
+                LOGGER.info("Polling for tasks with backoff");
+            }
+        }
+
+        List<Task> tasks = response.getTasks();
+        for (Task task : tasks) {
+            TaskLeasedEvent event = new TaskLeasedEvent();
+            event.setTask(task);
+            event.spp = task.getSpp();
+            event.commit();
+        }
+        if (!tasks.isEmpty()) {
+            backoffMillis = MIN_BACKOFF_MILLIS;
+            if (tasks.size() > 1) {
+                LOGGER.info("Leased {} tasks", tasks.size());
+                synchronized (queue) {
+                    queue.addAll(tasks.subList(1, tasks.size()));
+                }
+            }
+            lastJobId = tasks.get(tasks.size() - 1).getJob().getId();
+            return tasks.get(0);
+        }
+
+        long delayMillis;
+        if (response.getRetryAfterMillis() >= 0) {
+            delayMillis = response.getRetryAfterMillis();
+        } else if (heldRequest) {
+            // the server already waited for a task
+            backoffMillis = MIN_BACKOFF_MILLIS;
+            delayMillis = 0;
+        } else {
+            delayMillis = nextBackoffDelay();
+        }
+        if (delayMillis > 0) {
+            Thread.sleep(delayMillis);
+        }
+        return null;
+    }
+
+    /**
+     * Get the delay before the next poll if the API doesn't support long polling and double the backoff. The delay is
+     * chosen randomly between half and all of the backoff ("equal jitter").
+     *
+     * @return delay in milliseconds
+     */
+    long nextBackoffDelay() {
+        long delayMillis = backoffMillis / 2 + ThreadLocalRandom.current().nextLong(backoffMillis / 2 + 1);
+        backoffMillis = Math.min(MAX_BACKOFF_MILLIS, backoffMillis * 2);
+        return delayMillis;
+    }
+
+    /**
+     * Take the queued tasks that can be rendered in one pass with the given task, i.e. tasks of the same job with the
+     * same spp whose tiles cover a rectangle together with the tile of the given task.
+     *
+     * @param task task that is about to be rendered
+     * @return the given task, followed by the taken tasks
+     */
+    public List<Task> takeMergeable(Task task) {
+        List<Task> merged = Collections.singletonList(task);
+        synchronized (queue) {
+            List<Task> candidates = queue.stream()
+                    .filter(t -> t.getJob().getId().equals(task.getJob().getId()) && t.getSpp() == task.getSpp())
+                    .toList();
+            // every rectangle that can be merged is spanned by the given tile and one of the candidates, so pick the
+            // largest of those rectangles that is covered exactly by the tiles inside of it
+            long mergedArea = 0;
+            for (Task corner : candidates) {
+                Tile box = Tile.boundingBox(task.getTile(), corner.getTile());
+                long area = (long) box.getWidth() * box.getHeight();
+                if (area <= mergedArea) {
+                    continue;
+                }
+                List<Task> inside = new ArrayList<>();
+                inside.add(task);
+                for (Task candidate : candidates) {
+                    if (box.contains(candidate.getTile())) {
+                        inside.add(candidate);
+                    }
+                }
+                if (Tile.union(inside.stream().map(Task::getTile).toList()) != null) {
+                    merged = inside;
+                    mergedArea = area;
+                }
+            }
+            queue.removeAll(merged.subList(1, merged.size()));
+        }
+        return merged;
+    }
+
+    /**
+     * Release the queued tasks of the given job, e.g. because the job can't be rendered by this node.
+     *
+     * @param jobId job ID
+     */
+    public void release(String jobId) {
+        List<Task> released = new ArrayList<>();
+        synchronized (queue) {
+            for (Iterator<Task> it = queue.iterator(); it.hasNext(); ) {
+                Task task = it.next();
+                if (task.getJob().getId().equals(jobId)) {
+                    released.add(task);
+                    it.remove();
+                }
+            }
+        }
+        release(released);
+    }
+
+    /**
+     * Release all queued tasks.
+     */
+    public void releaseAll() {
+        List<Task> released;
+        synchronized (queue) {
+            released = new ArrayList<>(queue);
+            queue.clear();
+        }
+        release(released);
+    }
+
+    /**
+     * Release the given leased tasks to the API, waiting a few seconds for the request to finish.
+     *
+     * @param tasks tasks to release
+     */
+    public void release(List<Task> tasks) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        List<Integer> taskIds = tasks.stream().map(Task::getId).toList();
+        LOGGER.info("Releasing tasks {}", taskIds);
+        try {
+            apiClient.releaseTasks(taskIds).get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            LOGGER.warn("Could not release tasks {}, they will be leased again when their leases expire", taskIds, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
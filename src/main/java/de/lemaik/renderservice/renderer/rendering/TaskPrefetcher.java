@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.lemaik.renderservice.renderer.rendering;
+
+import de.lemaik.renderservice.renderer.util.FileUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Leases tasks ahead of the {@link RenderWorker} and downloads the scene files of upcoming jobs while the current
+ * task is still rendering. At most {@code depth} tasks are leased ahead.
+ */
+public class TaskPrefetcher extends Thread {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskPrefetcher.class);
+    private static final int MAX_RESTART_DELAY_SECONDS = 15 * 60; // 15 minutes
+
+    private final RenderServerApiClient apiClient;
+    private final TaskPoller poller;
+    private final Path jobDirectory;
+    private final BlockingQueue<PrefetchedTask> queue;
+    private String lastJobId;
+
+    public TaskPrefetcher(int depth, Path jobDirectory, RenderServerApiClient apiClient, TaskPoller poller) {
+        super("Task prefetcher");
+        this.apiClient = apiClient;
+        this.poller = poller;
+        this.jobDirectory = jobDirectory;
+        this.queue = new ArrayBlockingQueue<>(depth);
+        setDaemon(true);
+    }
+
+    /**
+     * Get the next prefetched task, waiting up to the given time if none is available.
+     *
+     * @return the next task or null if no task was leased in time
+     */
+    public PrefetchedTask poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return queue.poll(timeout, unit);
+    }
+
+    @Override
+    public void run() {
+        int nextRestartDelaySeconds = 1;
+        List<PrefetchedTask> remaining = new ArrayList<>();
+        try {
+            while (!interrupted()) {
+                Task task;
+                try {
+                    task = poller.poll();
+                } catch (ExecutionException e) {
+                    LOGGER.error("Failed to prefetch the next task", e);
+                    int delaySeconds = Math.min(MAX_RESTART_DELAY_SECONDS, nextRestartDelaySeconds);
+                    Thread.sleep(delaySeconds * 1000L);
+                    nextRestartDelaySeconds *= 2;
+                    continue;
+                }
+                nextRestartDelaySeconds = 1;
+                if (task == null) {
+                    continue;
+                }
+
+                LOGGER.info("Prefetched task {} for job {}", task.getId(), task.getJob().getId());
+                CancellableDownload<Void> sceneDownload = null;
+                if (!task.getJob().getId().equals(lastJobId)) {
+                    Path taskPath = jobDirectory.resolve("task-" + task.getId());
+                    taskPath.toFile().mkdir();
+                    sceneDownload = TaskWorker.downloadScene(apiClient, task, taskPath);
+                    lastJobId = task.getJob().getId();
+                }
+                PrefetchedTask prefetched = new PrefetchedTask(task, sceneDownload);
+                try {
+                    queue.put(prefetched);
+                } catch (InterruptedException e) {
+                    // the task was leased, but the queue was full when stopping
+                    remaining.add(prefetched);
+                    throw e;
+                }
+            }
+        } catch (InterruptedException e) {
+            // stopped
+        }
+
+        queue.drainTo(remaining);
+        List<CompletableFuture<Void>> discarded = new ArrayList<>();
+        for (PrefetchedTask prefetched : remaining) {
+            discarded.add(prefetched.discard(jobDirectory));
+        }
+        poller.release(remaining.stream().map(PrefetchedTask::getTask).toList());
+        try {
+            CompletableFuture.allOf(discarded.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+            LOGGER.warn("Prefetched scene downloads did not stop in time");
+        }
+    }
+
+    public static class PrefetchedTask {
+        private final Task task;
+        private final CancellableDownload<Void> sceneDownload;
+
+        private PrefetchedTask(Task task, CancellableDownload<Void> sceneDownload) {
+            this.task = task;
+            this.sceneDownload = sceneDownload;
+        }
+
+        public Task getTask() {
+            return task;
+        }
+
+        /**
+         * Get the download of the scene files into the task directory, if it was started by the prefetcher.
+         *
+         * @return scene download or null if the task belongs to the same job as the previous task
+         */
+        public CancellableDownload<Void> getSceneDownload() {
+            return sceneDownload;
+        }
+
+        /**
+         * Cancel the scene download of this task, if it was started, and delete the task directory once the download
+         * stopped writing to it.
+         *
+         * @param jobDirectory job directory
+         * @return future that completes when the task directory was deleted
+         */
+        public CompletableFuture<Void> discard(Path jobDirectory) {
+            if (sceneDownload == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+            sceneDownload.cancel(true);
+            Path taskPath = jobDirectory.resolve("task-" + task.getId());
+            return sceneDownload.whenStopped().thenRun(() -> {
+                try {
+                    FileUtil.deleteDirectory(taskPath);
+                } catch (IOException e) {
+                    LOGGER.warn("Failed to delete prefetched task directory {}", taskPath, e);
+                }
+            });
+        }
+    }
+}
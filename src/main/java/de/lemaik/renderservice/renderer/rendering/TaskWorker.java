@@ -17,21 +17,27 @@
 
 package de.lemaik.renderservice.renderer.rendering;
 
-import com.google.gson.Gson;
 import de.lemaik.renderservice.renderer.chunky.ChunkyWrapper;
 import de.lemaik.renderservice.renderer.chunky.RenderException;
+import de.lemaik.renderservice.renderer.chunky.VoidRenderContext;
+import de.lemaik.renderservice.renderer.metrics.Metrics;
+import de.lemaik.renderservice.renderer.metrics.SceneLoadEvent;
 import de.lemaik.renderservice.renderer.util.FileUtil;
-import okio.Buffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 public class TaskWorker {
     private static final Logger LOGGER = LoggerFactory.getLogger(TaskWorker.class);
@@ -40,98 +46,239 @@ public class TaskWorker {
     private final Path texturepacksDir;
     private final ChunkyWrapper chunky;
     private final RenderServerApiClient apiClient;
+    private final ResultUploader uploader;
+    private final boolean streamOctree;
+    private final ProgressReporter progressReporter;
+    private final ControlChannel controlChannel;
+    private SceneIdentity sceneIdentity;
 
-    public TaskWorker(Path workingDir, Path texturepacksDir, int threads, int cpuLoad, RenderServerApiClient apiClient) {
+    /**
+     * Create a new task worker.
+     *
+     * @param workingDir      directory to download the scene files to
+     * @param texturepacksDir resource packs directory
+     * @param chunky          Chunky instance to render the tasks with
+     */
+    public TaskWorker(Path workingDir, Path texturepacksDir, ChunkyWrapper chunky,
+                      RenderServerApiClient apiClient, ResultUploader uploader, boolean streamOctree,
+                      ProgressReporter progressReporter, ControlChannel controlChannel) {
         this.workingDir = workingDir;
         this.texturepacksDir = texturepacksDir;
-        this.chunky = new ChunkyWrapper(threads, cpuLoad);
+        this.chunky = chunky;
         this.apiClient = apiClient;
+        this.uploader = uploader;
+        this.streamOctree = streamOctree;
+        this.progressReporter = progressReporter;
+        this.controlChannel = controlChannel;
     }
 
     public void loadScene(Task task) throws ExecutionException, InterruptedException, TimeoutException, IOException {
+        if (streamOctree) {
+            try {
+                streamScene(task);
+                identifyScene(task);
+                return;
+            } catch (ExecutionException | IOException e) {
+                LOGGER.warn("Loading the octree while downloading it failed, downloading it first", e);
+            }
+        }
+        loadScene(task, downloadScene(apiClient, task, workingDir));
+    }
+
+    /**
+     * Load the scene of the given task while its octree is still being downloaded.
+     */
+    private void streamScene(Task task) throws ExecutionException, InterruptedException, TimeoutException, IOException {
+        LOGGER.info("Loading scene for task {} for job {} while downloading it", task.getId(), task.getJob().getId());
+        File emittergridFile = new File(workingDir.toFile(), "scene.emittergrid");
+        CompletableFuture<File> sceneJson = downloadSceneJson(apiClient, task, workingDir);
+        CompletableFuture<?> emittergrid = apiClient.downloadEmittergrid(task, emittergridFile);
+        StreamingDownload octree = apiClient.streamOctree(task, new File(workingDir.toFile(), "scene.octree2"));
+        Metrics.Timer downloadTimer = Metrics.startPhase("download");
+        CompletableFuture.allOf(sceneJson, emittergrid, octree.getResult()).thenRun(downloadTimer::close);
+
+        Map<String, VoidRenderContext.SceneFileSource> sources = new HashMap<>();
+        sources.put("scene.octree2", octree::getInputStream);
+        if (task.getFiles().getEmittergrid() != null) {
+            // Chunky loads the emitter grid before the octree, it is small enough to just wait for it
+            sources.put("scene.emittergrid", () -> {
+                try {
+                    emittergrid.get(4, TimeUnit.HOURS);
+                } catch (InterruptedException | ExecutionException | TimeoutException e) {
+                    throw new IOException("Downloading the emitter grid failed", e);
+                }
+                return new FileInputStream(emittergridFile);
+            });
+        }
+        SceneLoadEvent event = new SceneLoadEvent();
+        event.begin();
+        try (Metrics.Timer ignored = Metrics.startPhase("scene_load")) {
+            sceneJson.get(4, TimeUnit.HOURS);
+            chunky.loadScene(new File(workingDir.toFile(), "scene.json"), sources);
+            event.setTask(task);
+            event.commit();
+        } finally {
+            // stop feeding the stream if loading failed before the octree was read
+            octree.getInputStream().close();
+        }
+        // Chunky doesn't report if loading the octree failed, but the download reports corrupt or incomplete files
+        octree.getResult().get(4, TimeUnit.HOURS);
+        emittergrid.get(4, TimeUnit.HOURS);
+    }
+
+    /**
+     * Load the scene of the given task after its scene files were downloaded into the working directory.
+     *
+     * @param task          task
+     * @param sceneDownload download of the scene files, as returned by {@link #downloadScene}
+     */
+    public void loadScene(Task task, Future<Void> sceneDownload) throws ExecutionException, InterruptedException, TimeoutException, IOException {
         LOGGER.info("Loading scene for task {} for job {}", task.getId(), task.getJob().getId());
+        sceneDownload.get(4, TimeUnit.HOURS); // timeout after 4 hours of downloading
+        SceneLoadEvent event = new SceneLoadEvent();
+        event.begin();
+        try (Metrics.Timer ignored = Metrics.startPhase("scene_load")) {
+            chunky.loadScene(new File(workingDir.toFile(), "scene.json"));
+        }
+        event.setTask(task);
+        event.commit();
+        identifyScene(task);
+    }
+
+    private void identifyScene(Task task) {
+        // without the hashes of the API, the scene can't be compared to the scenes of other jobs anyway
+        sceneIdentity = SceneIdentity.of(apiClient, task);
+        if (sceneIdentity != null) {
+            LOGGER.info("Loaded scene {}", sceneIdentity);
+        }
+    }
+
+    /**
+     * Get the identity of the loaded scene.
+     *
+     * @return scene identity, or null if no scene is loaded
+     */
+    public SceneIdentity getSceneIdentity() {
+        return sceneIdentity;
+    }
 
-        LOGGER.info("Downloading scene files...");
+    /**
+     * Apply the scene settings of the given task to the loaded scene, keeping the loaded octree. This must only be
+     * used if the task has the same {@link SceneIdentity} as the loaded scene.
+     *
+     * @param task task
+     */
+    public void reloadSceneSettings(Task task) throws ExecutionException, InterruptedException, TimeoutException, IOException {
+        LOGGER.info("Applying scene settings of job {} to the loaded scene", task.getJob().getId());
+        File sceneDescription = downloadSceneJson(apiClient, task, workingDir).get(1, TimeUnit.HOURS);
+        chunky.applySceneSettings(new FileInputStream(sceneDescription));
+    }
+
+    /**
+     * Download the scene files of the given task into the given directory.
+     *
+     * @param apiClient API client
+     * @param task      task
+     * @param directory target directory
+     * @return download that completes when all scene files are downloaded
+     */
+    public static CancellableDownload<Void> downloadScene(RenderServerApiClient apiClient, Task task, Path directory) {
+        LOGGER.info("Downloading scene files for job {}...", task.getJob().getId());
+        Metrics.Timer downloadTimer = Metrics.startPhase("download");
+        CancellableDownload<Void> download = CancellableDownload.allOf(
+                downloadSceneJson(apiClient, task, directory),
+                apiClient.downloadOctree(task, new File(directory.toFile(), "scene.octree2")),
+                apiClient.downloadEmittergrid(task, new File(directory.toFile(), "scene.emittergrid"))
+        );
+        download.thenRun(downloadTimer::close);
+        return download;
+    }
+
+    /**
+     * Download the scene description of the given task into the given directory.
+     *
+     * @return download of the scene description
+     */
+    private static CancellableDownload<File> downloadSceneJson(RenderServerApiClient apiClient, Task task,
+                                                               Path directory) {
         final File skymap = null; /*job.getSkymapUrl().isPresent()
           ? apiClient.downloadSkymapTo(job.getSkymapUrl().get(), workingDir).get().getAbsoluteFile()
           : null;*/ //TODO skymap
 
-        CompletableFuture.allOf(
-                apiClient.getScene(task).thenAccept((scene -> {
-                    scene.addProperty("name", "scene");
-                    if (skymap != null) {
-                        scene.getAsJsonObject("sky").addProperty("skymap", skymap.getAbsolutePath());
-                    }
-                    try (OutputStreamWriter out = new OutputStreamWriter(
-                            new FileOutputStream(new File(workingDir.toFile(), "scene.json")))) {
-                        new Gson().toJson(scene, out);
-                    } catch (IOException e) {
-                        throw new RuntimeException(e);
-                    }
-                })),
-                apiClient.downloadOctree(task, new File(workingDir.toFile(), "scene.octree2")),
-                apiClient.downloadEmittergrid(task, new File(workingDir.toFile(), "scene.emittergrid"))
-        ).get(4, TimeUnit.HOURS); // timeout after 4 hours of downloading
-
-        chunky.loadScene(new File(workingDir.toFile(), "scene.json"));
+        return apiClient.downloadScene(task, "scene", skymap != null ? skymap.getAbsolutePath() : null,
+                new File(directory.toFile(), "scene.json"));
+    }
+
+    public void renderScene(Task task) throws RenderException, InterruptedException {
+        renderScene(Collections.singletonList(task), submitted -> {
+        });
     }
 
-    public void renderScene(Task task) throws RenderException {
-        LOGGER.info("Render scene for task {} for job {}", task.getId(), task.getJob().getId());
+    /**
+     * Render the given tasks in one pass and upload their results. The tasks must be compatible, see
+     * {@link ChunkyWrapper#render(List)}. If one of the tasks is aborted, rendering all of them is cancelled.
+     *
+     * @param tasks     tasks to render
+     * @param submitted called with every task before its result is submitted to the uploader, so that the tasks that
+     *                  were not submitted can be released if this fails
+     */
+    public void renderScene(List<Task> tasks, Consumer<Task> submitted) throws RenderException, InterruptedException {
+        List<Integer> taskIds = tasks.stream().map(Task::getId).toList();
+        LOGGER.info("Render scene for tasks {} for job {}", taskIds, tasks.get(0).getJob().getId());
 
-        ScheduledExecutorService progressReportScheduler = Executors.newSingleThreadScheduledExecutor();
+        List<ChunkyWrapper.RenderResult> results;
+        Future<List<ChunkyWrapper.RenderResult>> renderFuture;
         try {
-            Future<ChunkyWrapper.RenderResult> renderFuture;
-            try {
-                LOGGER.info("Rendering...");
-                renderFuture = chunky.render(task);
-            } catch (InterruptedException e) {
-                throw new RenderException("Rendering interrupted", e);
-            }
+            LOGGER.info("Rendering...");
+            renderFuture = chunky.render(tasks);
+        } catch (InterruptedException e) {
+            throw new RenderException("Rendering interrupted", e);
+        }
 
-            AtomicBoolean rendering = new AtomicBoolean(true);
+        long pixels = 0;
+        for (Task task : tasks) {
+            pixels += (long) task.getTile().getWidth() * task.getTile().getHeight();
+        }
+        long renderPixels = pixels;
+        long renderStart = System.nanoTime();
+        Metrics.RENDER_SPEED.set(() -> renderPixels * chunky.getCurrentSpp() / ((System.nanoTime() - renderStart) / 1e9));
 
-            progressReportScheduler.scheduleAtFixedRate(() -> {
-                try {
-                    RenderServerApiClient.ProgressReportResult result = apiClient.reportTaskProgress(task.getId(), chunky.getCurrentSpp()).get(3, TimeUnit.SECONDS);
-                    if (result == RenderServerApiClient.ProgressReportResult.STOP_RENDERING && rendering.get()) {
-                        LOGGER.info("Render task {} has been aborted, interrupting renderer", task.getId());
-                        renderFuture.cancel(true);
-                    }
-                } catch (InterruptedException | ExecutionException | TimeoutException e) {
-                    LOGGER.error("Failed to report task progress", e);
+        AtomicBoolean rendering = new AtomicBoolean(true);
+        List<ProgressReporter.Reporting> reportings = new ArrayList<>(tasks.size());
+        List<ControlChannel.Registration> abortRegistrations = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            Runnable abort = () -> {
+                if (rendering.get()) {
+                    LOGGER.info("Render task {} has been aborted, interrupting renderer", task.getId());
+                    renderFuture.cancel(true);
                 }
-            }, 0, 5, TimeUnit.SECONDS);
-
-            ChunkyWrapper.RenderResult result;
-            try {
-                result = renderFuture.get();
-            } catch (InterruptedException | ExecutionException e) {
-                throw new RenderException("Rendering failed", e);
+            };
+            reportings.add(progressReporter.start(task, chunky::getCurrentSpp, abort));
+            if (controlChannel != null) {
+                abortRegistrations.add(controlChannel.onAbort(task.getId(), abort));
             }
+        }
+        try (Metrics.Timer ignored = Metrics.startPhase("render")) {
+            results = renderFuture.get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RenderException("Rendering failed", e);
+        } finally {
+            Metrics.RENDERED_SAMPLES.inc(renderPixels * chunky.getCurrentSpp());
+            Metrics.RENDER_SPEED.set(0);
             rendering.set(false);
+            reportings.forEach(ProgressReporter.Reporting::stop);
+            abortRegistrations.forEach(ControlChannel.Registration::close);
+        }
 
-            LOGGER.info("Uploading...");
-            try {
-                FinishTaskRenderingResponse.UploadUrls uploadUrls = apiClient.finishTaskRendering(task.getId()).get().getUploadUrls();
-                if (uploadUrls.getDump() != null) {
-                    try (Buffer dumpBuffer = new Buffer()) {
-                        result.writeDump(dumpBuffer.outputStream());
-                        apiClient.uploadFile(uploadUrls.getDump(), dumpBuffer, "application/octet-stream").get();
-                    }
-                }
-                try (Buffer imageBuffer = new Buffer()) {
-                    result.writePngImage(imageBuffer.outputStream());
-                    apiClient.uploadFile(uploadUrls.getImage(), imageBuffer, "image/png").get();
-                }
-                apiClient.finishTask(task.getId()).get();
-            } catch (InterruptedException | ExecutionException | IOException e) {
-                throw new RenderException("Upload failed", e);
+        for (int i = 0; i < tasks.size(); i++) {
+            if (results.get(i).getSpp() < tasks.get(i).getSpp()) {
+                LOGGER.info("Task {} converged at {} of {} spp", tasks.get(i).getId(), results.get(i).getSpp(),
+                        tasks.get(i).getSpp());
             }
-            LOGGER.info("Done");
-        } finally {
-            progressReportScheduler.shutdownNow();
+            submitted.accept(tasks.get(i));
+            uploader.submit(tasks.get(i), results.get(i));
         }
+        LOGGER.info("Done");
     }
 
     public void cleanup() {
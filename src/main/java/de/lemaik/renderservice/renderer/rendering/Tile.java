@@ -19,6 +19,8 @@ package de.lemaik.renderservice.renderer.rendering;
 
 import se.llbit.chunky.renderer.scene.Scene;
 
+import java.util.List;
+
 public class Tile {
     private int x;
 
@@ -28,6 +30,16 @@ public class Tile {
 
     private int height;
 
+    public Tile() {
+    }
+
+    public Tile(int x, int y, int width, int height) {
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+
     public int getX() {
         return x;
     }
@@ -51,4 +63,71 @@ public class Tile {
                 getX(), getY()
         );
     }
+
+    /**
+     * Check if this tile overlaps the given tile.
+     *
+     * @param other other tile
+     * @return true if the tiles overlap, false otherwise
+     */
+    public boolean intersects(Tile other) {
+        return x < other.x + other.width && other.x < x + width
+                && y < other.y + other.height && other.y < y + height;
+    }
+
+    /**
+     * Check if the given tile lies within this tile.
+     *
+     * @param other other tile
+     * @return true if the other tile lies within this tile, false otherwise
+     */
+    public boolean contains(Tile other) {
+        return other.x >= x && other.y >= y
+                && other.x + other.width <= x + width && other.y + other.height <= y + height;
+    }
+
+    /**
+     * Get the smallest tile that contains both of the given tiles.
+     *
+     * @param a first tile
+     * @param b second tile
+     * @return bounding box of both tiles
+     */
+    public static Tile boundingBox(Tile a, Tile b) {
+        int minX = Math.min(a.x, b.x);
+        int minY = Math.min(a.y, b.y);
+        return new Tile(minX, minY, Math.max(a.x + a.width, b.x + b.width) - minX,
+                Math.max(a.y + a.height, b.y + b.height) - minY);
+    }
+
+    /**
+     * Get the bounding box of the given tiles, if they cover it exactly, i.e. without gaps or overlaps.
+     *
+     * @param tiles tiles
+     * @return bounding tile or null if the tiles don't form a rectangle
+     */
+    public static Tile union(List<Tile> tiles) {
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        long area = 0;
+        for (int i = 0; i < tiles.size(); i++) {
+            Tile tile = tiles.get(i);
+            for (int j = 0; j < i; j++) {
+                if (tile.intersects(tiles.get(j))) {
+                    return null;
+                }
+            }
+            minX = Math.min(minX, tile.x);
+            minY = Math.min(minY, tile.y);
+            maxX = Math.max(maxX, tile.x + tile.width);
+            maxY = Math.max(maxY, tile.y + tile.height);
+            area += (long) tile.width * tile.height;
+        }
+        if (tiles.isEmpty() || area != (long) (maxX - minX) * (maxY - minY)) {
+            return null;
+        }
+        return new Tile(minX, minY, maxX - minX, maxY - minY);
+    }
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.lemaik.renderservice.renderer.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pins threads to CPUs, on Linux only.
+ * <p>
+ * Java has no API for thread affinity, so this uses {@code taskset} on the native thread. Threads inherit the affinity
+ * of the thread that starts them, so pinning a thread before it creates a thread pool pins the pool as well.
+ */
+public class CpuAffinity {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CpuAffinity.class);
+
+    private CpuAffinity() {
+    }
+
+    /**
+     * Pin the current thread to the given CPUs. Failures are logged and ignored.
+     *
+     * @param cpuSet CPU list in the format of {@code taskset}, e.g. {@code 0-7,16-23}
+     * @return true if the thread was pinned, false otherwise
+     */
+    public static boolean pinCurrentThread(String cpuSet) {
+        Path threadSelf = Path.of("/proc/thread-self");
+        if (!Files.exists(threadSelf)) {
+            LOGGER.warn("Can't pin threads to CPUs {} on this platform", cpuSet);
+            return false;
+        }
+        try {
+            // the link points to /proc/<pid>/task/<tid>
+            String threadId = Files.readSymbolicLink(threadSelf).getFileName().toString();
+            Process process = new ProcessBuilder("taskset", "-p", "-c", cpuSet, threadId)
+                    .redirectErrorStream(true)
+                    .start();
+            String output = new String(process.getInputStream().readAllBytes()).trim();
+            if (!process.waitFor(10, TimeUnit.SECONDS) || process.exitValue() != 0) {
+                LOGGER.warn("Pinning thread {} to CPUs {} failed: {}", threadId, cpuSet, output);
+                return false;
+            }
+            LOGGER.info("Pinned thread {} to CPUs {}", threadId, cpuSet);
+            return true;
+        } catch (IOException e) {
+            LOGGER.warn("Pinning to CPUs {} failed, is taskset installed?", cpuSet, e);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
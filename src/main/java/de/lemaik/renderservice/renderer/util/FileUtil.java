@@ -19,9 +19,13 @@
 package de.lemaik.renderservice.renderer.util;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Comparator;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.stream.Stream;
 
@@ -44,4 +48,36 @@ public class FileUtil {
             }
         }
     }
+
+    /**
+     * Computes the SHA-256 hash of the given file.
+     *
+     * @param file file to hash
+     * @return SHA-256 hash, as lowercase hex string
+     * @throws IOException if reading the file failed
+     */
+    public static String sha256(Path file) throws IOException {
+        MessageDigest digest = newSha256Digest();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Creates a new SHA-256 message digest.
+     *
+     * @return SHA-256 message digest
+     */
+    public static MessageDigest newSha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
 }
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package de.lemaik.renderservice.renderer.chunky;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveSamplerTest {
+    private static final int[][] SIZES = {{64, 64}, {100, 37}, {333, 250}, {17, 300}, {128, 1}};
+    private static final int[] TARGET_SPPS = {64, 100, 256, 1000};
+
+    @Test
+    public void plansExactlyTheBudget() {
+        for (int[] size : SIZES) {
+            for (int targetSpp : TARGET_SPPS) {
+                String name = size[0] + "x" + size[1] + " at " + targetSpp + " spp";
+                int width = size[0];
+                int height = size[1];
+                long pixels = (long) width * height;
+                AdaptiveSampler sampler = new AdaptiveSampler(width, height, targetSpp);
+                int spp = sampler.getUniformSpp();
+                sampler.update(render(width, height, spp / 2, 1), spp / 2);
+                List<AdaptiveSampler.Region> regions = sampler.plan(render(width, height, spp, 2), spp);
+
+                long total = pixels * spp;
+                for (AdaptiveSampler.Region region : regions) {
+                    assertTrue(name, region.getX() >= 0 && region.getY() >= 0);
+                    assertTrue(name, region.getWidth() > 0 && region.getHeight() > 0 && region.getSpp() > 0);
+                    assertTrue(name, region.getX() + region.getWidth() <= width);
+                    assertTrue(name, region.getY() + region.getHeight() <= height);
+                    total += (long) region.getSpp() * region.getWidth() * region.getHeight();
+                    sampler.add(region, new double[region.getWidth() * region.getHeight() * 3], region.getSpp());
+                }
+                assertEquals(name, pixels * targetSpp, total);
+                assertEquals(name, targetSpp, sampler.getAverageSpp());
+                assertEquals(name, pixels * targetSpp, Arrays.stream(sampler.getSampleCounts()).asLongStream().sum());
+            }
+        }
+    }
+
+    @Test
+    public void spendsMoreSamplesOnNoisyBlocks() {
+        int width = 256;
+        int height = 256;
+        AdaptiveSampler sampler = new AdaptiveSampler(width, height, 256);
+        int spp = sampler.getUniformSpp();
+        sampler.update(render(width, height, spp / 2, 1), spp / 2);
+        for (AdaptiveSampler.Region region : sampler.plan(render(width, height, spp, 2), spp)) {
+            sampler.add(region, new double[region.getWidth() * region.getHeight() * 3], region.getSpp());
+        }
+
+        int[] sampleCounts = sampler.getSampleCounts();
+        // the left quarter of the image is noisier
+        int noisy = sampleCounts[10 * width + 10];
+        int clean = sampleCounts[10 * width + 200];
+        assertTrue(noisy + " vs. " + clean, noisy > 2 * clean);
+        assertTrue(clean >= spp);
+    }
+
+    @Test
+    public void rendersUniformlyWithoutSnapshot() {
+        AdaptiveSampler sampler = new AdaptiveSampler(100, 50, 128);
+        List<AdaptiveSampler.Region> regions = sampler.plan(render(100, 50, 32, 1), 32);
+
+        assertEquals(1, regions.size());
+        AdaptiveSampler.Region region = regions.get(0);
+        assertEquals(0, region.getX());
+        assertEquals(0, region.getY());
+        assertEquals(100, region.getWidth());
+        assertEquals(50, region.getHeight());
+        assertEquals(96, region.getSpp());
+    }
+
+    @Test
+    public void plansNothingAtTargetSpp() {
+        AdaptiveSampler sampler = new AdaptiveSampler(100, 50, 64);
+        sampler.update(render(100, 50, 32, 1), 32);
+        assertTrue(sampler.plan(render(100, 50, 64, 2), 64).isEmpty());
+        assertEquals(64, sampler.getAverageSpp());
+    }
+
+    @Test
+    public void mergesRegionsWeightedBySamples() {
+        AdaptiveSampler sampler = new AdaptiveSampler(2, 1, 64);
+        double[] samples = {1, 1, 1, 1, 1, 1};
+        List<AdaptiveSampler.Region> regions = sampler.plan(samples, 16);
+        assertEquals(1, regions.size());
+
+        double[] regionSamples = {4, 4, 4, 7, 7, 7};
+        sampler.add(regions.get(0), regionSamples, 48);
+        assertEquals(3.25, samples[0], 1e-9);
+        assertEquals(5.5, samples[5], 1e-9);
+        assertEquals(64, sampler.getSampleCounts()[1]);
+    }
+
+    /**
+     * Simulate the sample buffer of a render of a grey image whose left quarter is noisier than the rest.
+     */
+    private static double[] render(int width, int height, int spp, long seed) {
+        Random random = new Random(seed);
+        double[] samples = new double[width * height * 3];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                double deviation = (x < width / 4 ? 2 : 0.25) / Math.sqrt(spp);
+                for (int c = 0; c < 3; c++) {
+                    samples[(y * width + x) * 3 + c] = Math.max(0, 1 + random.nextGaussian() * deviation);
+                }
+            }
+        }
+        return samples;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package de.lemaik.renderservice.renderer.chunky;
+
+import de.lemaik.renderservice.renderer.rendering.Tile;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class ChunkyWrapperTest {
+    @Test
+    public void copiesSamplesOfTile() {
+        Tile bounds = new Tile(10, 20, 4, 3);
+        double[] samples = new double[4 * 3 * 3];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = i;
+        }
+        double[] slice = new double[2 * 2 * 3];
+        ChunkyWrapper.copyTile(samples, bounds, new Tile(12, 21, 2, 2), slice, 3);
+
+        // pixels (2, 1), (3, 1), (2, 2) and (3, 2) of the bounds
+        assertArrayEquals(new double[]{18, 19, 20, 21, 22, 23, 30, 31, 32, 33, 34, 35}, slice, 0);
+    }
+
+    @Test
+    public void splitsBoundsIntoTiles() {
+        Tile bounds = new Tile(0, 0, 3, 2);
+        int[] sampleCounts = {1, 2, 3, 4, 5, 6};
+        int[] left = new int[2];
+        int[] right = new int[4];
+        ChunkyWrapper.copyTile(sampleCounts, bounds, new Tile(0, 0, 1, 2), left, 1);
+        ChunkyWrapper.copyTile(sampleCounts, bounds, new Tile(1, 0, 2, 2), right, 1);
+
+        assertArrayEquals(new int[]{1, 4}, left);
+        assertArrayEquals(new int[]{2, 3, 5, 6}, right);
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package de.lemaik.renderservice.renderer.chunky;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConvergenceCheckTest {
+    @Test
+    public void scalesErrorsBySpp() {
+        double[] samples = grey(1, 1, 1);
+        double[] snapshot = grey(1, 1, 1);
+        snapshot[0] = 1.3;
+        double error = 0.3 / Math.sqrt(3);
+
+        // the difference of the means at 16 and 32 spp has the variance of the mean at 32 spp
+        assertEquals(error, ConvergenceCheck.getBlockErrors(samples, 32, snapshot, 16, 1, 1, 8)[0], 1e-12);
+        assertEquals(error / 2, ConvergenceCheck.getBlockErrors(samples, 80, snapshot, 16, 1, 1, 8)[0], 1e-12);
+        assertEquals(error * 2, ConvergenceCheck.getBlockErrors(samples, 20, snapshot, 16, 1, 1, 8)[0], 1e-12);
+    }
+
+    @Test
+    public void weighsErrorsByBrightness() {
+        double[] samples = grey(1, 1, 4);
+        double[] snapshot = grey(1, 1, 4);
+        snapshot[1] = 4.3;
+        assertEquals(0.3 / Math.sqrt(12), ConvergenceCheck.getBlockErrors(samples, 32, snapshot, 16, 1, 1, 8)[0],
+                1e-12);
+    }
+
+    @Test
+    public void averagesErrorsPerBlock() {
+        // two blocks per row, the second one is only two pixels wide
+        int width = 10;
+        int height = 8;
+        double[] samples = grey(width, height, 1);
+        double[] snapshot = grey(width, height, 1);
+        snapshot[(3 * width + 2) * 3] += 0.64;
+        snapshot[(5 * width + 9) * 3 + 2] += 0.16;
+        double[] errors = ConvergenceCheck.getBlockErrors(samples, 32, snapshot, 16, width, height, 8);
+
+        assertArrayEquals(new double[]{0.64 / Math.sqrt(3) / 64, 0.16 / Math.sqrt(3) / 16}, errors, 1e-12);
+    }
+
+    @Test
+    public void ignoresBlackPixels() {
+        double[] errors = ConvergenceCheck.getBlockErrors(new double[3], 32, new double[3], 16, 1, 1, 8);
+        assertEquals(0, errors[0], 0);
+    }
+
+    @Test
+    public void stopsAtMinSpp() {
+        ConvergenceCheck check = new ConvergenceCheck(16, 16, 1);
+        double[] samples = grey(16, 16, 1);
+        for (int spp = 1; spp < ConvergenceCheck.MIN_SPP; spp++) {
+            assertFalse("Stopped at " + spp + " spp", check.update(samples, spp));
+            assertFalse(check.isConverged());
+        }
+        assertTrue(check.update(samples, ConvergenceCheck.MIN_SPP));
+        assertTrue(check.isConverged());
+    }
+
+    @Test
+    public void comparesWithTwiceTheSpp() {
+        ConvergenceCheck check = new ConvergenceCheck(16, 16, 0.001);
+        double[] samples = grey(16, 16, 1);
+        // the snapshot is taken at half of the minimum spp
+        assertFalse(check.update(samples, 10));
+        samples[0] = 2;
+        // too noisy, the snapshot is replaced and the next check is at twice the spp
+        assertFalse(check.update(samples, 20));
+        assertFalse(check.update(samples, 39));
+        assertFalse(check.isConverged());
+        assertTrue(check.update(samples, 40));
+    }
+
+    private static double[] grey(int width, int height, double value) {
+        double[] samples = new double[width * height * 3];
+        Arrays.fill(samples, value);
+        return samples;
+    }
+}
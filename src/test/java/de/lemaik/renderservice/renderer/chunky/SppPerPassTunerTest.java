@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package de.lemaik.renderservice.renderer.chunky;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SppPerPassTunerTest {
+    private static final long PIXELS = 128 * 128;
+
+    @Test
+    public void startsWithOneSamplePerPass() {
+        assertEquals(1, new SppPerPassTuner().choose(PIXELS, 100));
+    }
+
+    @Test
+    public void climbsWhileFaster() {
+        List<Integer> choices = render(new SppPerPassTuner(), 256, 100);
+        assertEquals(List.of(1, 2, 4, 8, 16, 32), choices.subList(0, 6));
+        assertEquals(32, (int) choices.get(choices.size() - 1));
+    }
+
+    @Test
+    public void staysWhenSlower() {
+        SppPerPassTuner tuner = new SppPerPassTuner();
+        tuner.record(PIXELS, 1, 64, 1000);
+        assertEquals(2, tuner.choose(PIXELS, 64));
+        tuner.record(PIXELS, 2, 64, 2000);
+        assertEquals(1, tuner.choose(PIXELS, 64));
+    }
+
+    @Test
+    public void choosesDivisorsOfTheSpp() {
+        for (int spp : new int[]{100, 96, 81, 1000}) {
+            List<Integer> choices = render(new SppPerPassTuner(), spp, 100);
+            for (int choice : choices) {
+                assertEquals(choice + " doesn't divide " + spp, 0, spp % choice);
+            }
+        }
+        List<Integer> choices = render(new SppPerPassTuner(), 100, 100);
+        assertEquals(4, (int) choices.get(choices.size() - 1));
+    }
+
+    @Test
+    public void choosesAtMost32SamplesPerPass() {
+        for (int choice : render(new SppPerPassTuner(), 4096, 100)) {
+            assertTrue(choice + " samples per pass", choice <= 32);
+        }
+    }
+
+    @Test
+    public void ignoresShortRenders() {
+        SppPerPassTuner tuner = new SppPerPassTuner();
+        tuner.record(PIXELS, 1, 64, 100);
+        assertEquals(1, tuner.choose(PIXELS, 64));
+        assertEquals(1, tuner.choose(PIXELS, 64));
+    }
+
+    /**
+     * Simulate renders that get faster with more samples per pass.
+     */
+    private static List<Integer> render(SppPerPassTuner tuner, int spp, int renders) {
+        List<Integer> choices = new ArrayList<>();
+        for (int i = 0; i < renders; i++) {
+            int sppPerPass = tuner.choose(PIXELS, spp);
+            choices.add(sppPerPass);
+            tuner.record(PIXELS, sppPerPass, spp, 1000 + 1000 / sppPerPass);
+        }
+        return choices;
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package de.lemaik.renderservice.renderer.encoding;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CompactDumpTest {
+    // several chunks of 291 rows
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 700;
+
+    @Test
+    public void roundTripsFloatSamples() throws IOException {
+        double[] samples = randomSamples();
+        CompactDump dump = roundTrip(new CompactDump(WIDTH, HEIGHT, 100, 12345, samples), CompactDump.Precision.FLOAT);
+
+        assertHeader(dump);
+        assertNull(dump.getSampleCounts());
+        for (int i = 0; i < samples.length; i++) {
+            assertEquals((float) samples[i], dump.getSamples()[i], 0);
+        }
+    }
+
+    @Test
+    public void roundTripsHalfSamples() throws IOException {
+        double[] samples = randomSamples();
+        CompactDump dump = roundTrip(new CompactDump(WIDTH, HEIGHT, 100, 12345, samples), CompactDump.Precision.HALF);
+
+        assertHeader(dump);
+        assertNull(dump.getSampleCounts());
+        for (int i = 0; i < samples.length; i++) {
+            assertEquals(samples[i], dump.getSamples()[i], samples[i] / 2048);
+        }
+    }
+
+    @Test
+    public void roundTripsSampleCounts() throws IOException {
+        double[] samples = randomSamples();
+        int[] sampleCounts = new Random(2).ints(WIDTH * HEIGHT, 0, 1 << 20).toArray();
+        for (CompactDump.Precision precision : CompactDump.Precision.values()) {
+            CompactDump dump = roundTrip(new CompactDump(WIDTH, HEIGHT, 100, 12345, samples, sampleCounts),
+                    precision);
+
+            assertHeader(dump);
+            assertArrayEquals(sampleCounts, dump.getSampleCounts());
+            assertEquals((float) samples[samples.length - 1], dump.getSamples()[samples.length - 1],
+                    precision == CompactDump.Precision.HALF ? samples[samples.length - 1] / 2048 : 0);
+        }
+    }
+
+    @Test
+    public void writesVersion() throws IOException {
+        double[] samples = new double[3];
+        assertEquals(1, version(new CompactDump(1, 1, 1, 0, samples)));
+        assertEquals(2, version(new CompactDump(1, 1, 1, 0, samples, new int[]{1})));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        CompactDump.read(new ByteArrayInputStream("not a dump".getBytes()));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedDumps() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new CompactDump(WIDTH, HEIGHT, 100, 0, randomSamples()).write(out, CompactDump.Precision.FLOAT);
+        byte[] bytes = out.toByteArray();
+        CompactDump.read(new ByteArrayInputStream(bytes, 0, bytes.length / 2));
+    }
+
+    @Test
+    public void convertsZeroToHalf() {
+        assertEquals(0x0000, CompactDump.floatToHalf(0f));
+        assertEquals(0x8000, CompactDump.floatToHalf(-0f));
+        assertEquals(Float.floatToRawIntBits(-0f), Float.floatToRawIntBits(CompactDump.halfToFloat(0x8000)));
+    }
+
+    @Test
+    public void convertsSubnormalsToHalf() {
+        float smallest = (float) Math.pow(2, -24);
+        assertEquals(0x0001, CompactDump.floatToHalf(smallest));
+        assertEquals(smallest, CompactDump.halfToFloat(0x0001), 0);
+        assertEquals(0x03ff, CompactDump.floatToHalf(1023 * smallest));
+        assertEquals(1023 * smallest, CompactDump.halfToFloat(0x03ff), 0);
+        // smallest normal value
+        assertEquals(0x0400, CompactDump.floatToHalf((float) Math.pow(2, -14)));
+        // half of the smallest subnormal rounds to even, i.e. zero, anything above it rounds up
+        assertEquals(0x0000, CompactDump.floatToHalf(smallest / 2));
+        assertEquals(0x0001, CompactDump.floatToHalf(smallest * 0.75f));
+        assertEquals(0x0000, CompactDump.floatToHalf(smallest / 4));
+        assertEquals(0x8001, CompactDump.floatToHalf(-smallest));
+    }
+
+    @Test
+    public void convertsLargeValuesToHalf() {
+        assertEquals(0x7bff, CompactDump.floatToHalf(65504f));
+        assertEquals(65504f, CompactDump.halfToFloat(0x7bff), 0);
+        // values above the largest half are clamped instead of becoming infinite
+        assertEquals(0x7bff, CompactDump.floatToHalf(65519f));
+        assertEquals(0x7bff, CompactDump.floatToHalf(65536f));
+        assertEquals(0x7bff, CompactDump.floatToHalf(1e30f));
+        assertEquals(0xfbff, CompactDump.floatToHalf(-1e30f));
+    }
+
+    @Test
+    public void convertsInfinityAndNaNToHalf() {
+        assertEquals(0x7c00, CompactDump.floatToHalf(Float.POSITIVE_INFINITY));
+        assertEquals(0xfc00, CompactDump.floatToHalf(Float.NEGATIVE_INFINITY));
+        assertEquals(Float.POSITIVE_INFINITY, CompactDump.halfToFloat(0x7c00), 0);
+        assertEquals(Float.NEGATIVE_INFINITY, CompactDump.halfToFloat(0xfc00), 0);
+        assertTrue(Float.isNaN(CompactDump.halfToFloat(CompactDump.floatToHalf(Float.NaN))));
+    }
+
+    @Test
+    public void roundsToNearestEvenHalf() {
+        float ulp = (float) Math.pow(2, -10);
+        assertEquals(0x3c00, CompactDump.floatToHalf(1f));
+        assertEquals(0x3c00, CompactDump.floatToHalf(1f + ulp / 2));
+        assertEquals(0x3c01, CompactDump.floatToHalf(1f + ulp * 0.75f));
+        assertEquals(0x3c02, CompactDump.floatToHalf(1f + ulp * 1.5f));
+        // rounding up carries into the exponent
+        assertEquals(0x4000, CompactDump.floatToHalf(2f - ulp / 4));
+    }
+
+    @Test
+    public void convertsEveryHalfExactly() {
+        for (int half = 0; half < 0x10000; half++) {
+            float value = CompactDump.halfToFloat(half);
+            if (!Float.isNaN(value)) {
+                assertEquals(Integer.toHexString(half), half, CompactDump.floatToHalf(value));
+            }
+        }
+    }
+
+    private static CompactDump roundTrip(CompactDump dump, CompactDump.Precision precision) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        dump.write(out, precision);
+        return CompactDump.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    private static int version(CompactDump dump) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        dump.write(out, CompactDump.Precision.FLOAT);
+        byte[] bytes = out.toByteArray();
+        return (bytes[4] & 0xff) << 24 | (bytes[5] & 0xff) << 16 | (bytes[6] & 0xff) << 8 | (bytes[7] & 0xff);
+    }
+
+    private static void assertHeader(CompactDump dump) {
+        assertEquals(WIDTH, dump.getWidth());
+        assertEquals(HEIGHT, dump.getHeight());
+        assertEquals(100, dump.getSpp());
+        assertEquals(12345, dump.getRenderTime());
+    }
+
+    /**
+     * Create samples with the range of a typical render, including dark and very bright pixels.
+     */
+    private static double[] randomSamples() {
+        Random random = new Random(1);
+        double[] samples = new double[WIDTH * HEIGHT * 3];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = Math.pow(10, random.nextDouble() * 6 - 3);
+        }
+        return samples;
+    }
+}
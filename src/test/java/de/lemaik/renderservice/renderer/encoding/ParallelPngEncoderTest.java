@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package de.lemaik.renderservice.renderer.encoding;
+
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Adler32;
+
+import static org.junit.Assert.assertEquals;
+
+public class ParallelPngEncoderTest {
+    // the last two sizes are split into several blocks of rows, the last one being shorter
+    private static final int[][] SIZES = {{1, 1}, {7, 3}, {64, 64}, {1000, 150}, {333, 1001}};
+
+    @Test
+    public void roundTripsOpaqueImages() throws IOException {
+        for (int level : new int[]{0, 1, 9}) {
+            for (int[] size : SIZES) {
+                assertRoundTrip(level, size[0], size[1], false);
+            }
+        }
+    }
+
+    @Test
+    public void roundTripsTransparentImages() throws IOException {
+        for (int level : new int[]{0, 1, 9}) {
+            for (int[] size : SIZES) {
+                assertRoundTrip(level, size[0], size[1], true);
+            }
+        }
+    }
+
+    @Test
+    public void combinesAdler32() {
+        Random random = new Random(42);
+        for (int length : new int[]{0, 1, 100, 5552, 65521, 300000}) {
+            byte[] first = new byte[random.nextInt(70000)];
+            byte[] second = new byte[length];
+            random.nextBytes(first);
+            random.nextBytes(second);
+            // long runs of 0xff push the sums close to the modulus
+            Arrays.fill(second, 0, length / 2, (byte) 0xff);
+
+            Adler32 expected = new Adler32();
+            expected.update(first);
+            expected.update(second);
+            assertEquals("Length " + length, expected.getValue(),
+                    ParallelPngEncoder.combineAdler32(adler32(first), adler32(second), second.length));
+        }
+    }
+
+    private static void assertRoundTrip(int level, int width, int height, boolean alpha) throws IOException {
+        int[] argb = randomImage(width, height, alpha);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ParallelPngEncoder(level).write(out, argb, width, height, alpha);
+
+        String name = width + "x" + height + " at level " + level + (alpha ? " with alpha" : "");
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(name, width, image.getWidth());
+        assertEquals(name, height, image.getHeight());
+        assertEquals(name, alpha, image.getColorModel().hasAlpha());
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int expected = alpha ? argb[y * width + x] : argb[y * width + x] | 0xff000000;
+                if (expected != image.getRGB(x, y)) {
+                    assertEquals(name + ", pixel " + x + "," + y, Integer.toHexString(expected),
+                            Integer.toHexString(image.getRGB(x, y)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Create an image of gradients and noise, so that all filters are used.
+     */
+    private static int[] randomImage(int width, int height, boolean alpha) {
+        Random random = new Random(width * 31L + height);
+        int[] argb = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int a = alpha ? (x * 7 + y) & 0xff : 0xff;
+                int r = x & 0xff;
+                int g = (y * 3) & 0xff;
+                int b = random.nextInt(256);
+                argb[y * width + x] = a << 24 | r << 16 | g << 8 | b;
+            }
+        }
+        return argb;
+    }
+
+    private static long adler32(byte[] data) {
+        Adler32 adler = new Adler32();
+        adler.update(data);
+        return adler.getValue();
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package de.lemaik.renderservice.renderer.metrics;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsTest {
+    @Test
+    public void writesCounter() {
+        Counter counter = new Counter("test_bytes_total", "Number of bytes", "kind");
+        counter.inc(3, "scene");
+        counter.inc(4.5, "scene");
+        assertEquals("# HELP test_bytes_total Number of bytes\n"
+                + "# TYPE test_bytes_total counter\n"
+                + "test_bytes_total{kind=\"scene\"} 7.5\n", write(counter));
+    }
+
+    @Test
+    public void writesGaugeWithoutLabels() {
+        Gauge gauge = new Gauge("test_speed", "Speed");
+        gauge.set(42);
+        assertEquals("# HELP test_speed Speed\n"
+                + "# TYPE test_speed gauge\n"
+                + "test_speed 42\n", write(gauge));
+
+        double[] value = {1};
+        gauge.set(() -> value[0]);
+        value[0] = 2.25;
+        assertTrue(write(gauge).endsWith("\ntest_speed 2.25\n"));
+    }
+
+    @Test
+    public void writesCumulativeHistogramBuckets() {
+        Histogram histogram = new Histogram("test_duration_seconds", "Duration", new double[]{0.5, 1, 10}, "phase");
+        histogram.observe(0.25, "render");
+        histogram.observe(1, "render");
+        histogram.observe(0.5, "render");
+        histogram.observe(20, "render");
+        assertEquals("# HELP test_duration_seconds Duration\n"
+                + "# TYPE test_duration_seconds histogram\n"
+                + "test_duration_seconds_bucket{phase=\"render\",le=\"0.5\"} 2\n"
+                + "test_duration_seconds_bucket{phase=\"render\",le=\"1\"} 3\n"
+                + "test_duration_seconds_bucket{phase=\"render\",le=\"10\"} 3\n"
+                + "test_duration_seconds_bucket{phase=\"render\",le=\"+Inf\"} 4\n"
+                + "test_duration_seconds_sum{phase=\"render\"} 21.75\n"
+                + "test_duration_seconds_count{phase=\"render\"} 4\n", write(histogram));
+        assertEquals(4, histogram.getCount("render"));
+        assertEquals(21.75, histogram.getSum("render"), 0);
+    }
+
+    @Test
+    public void writesHistogramWithoutLabels() {
+        Histogram histogram = new Histogram("test_idle_seconds", "Idle", new double[]{1});
+        histogram.observe(2);
+        List<String> lines = Arrays.asList(write(histogram).split("\n"));
+        assertTrue(lines.contains("test_idle_seconds_bucket{le=\"1\"} 0"));
+        assertTrue(lines.contains("test_idle_seconds_bucket{le=\"+Inf\"} 1"));
+        assertTrue(lines.contains("test_idle_seconds_sum 2"));
+        assertTrue(lines.contains("test_idle_seconds_count 1"));
+    }
+
+    @Test
+    public void writesOneSamplePerLabelValues() {
+        Counter counter = new Counter("test_requests_total", "Requests", "cache", "result");
+        counter.inc(1, "scene", "hit");
+        counter.inc(1, "scene", "hit");
+        counter.inc(1, "scene", "miss");
+        List<String> lines = Arrays.asList(write(counter).split("\n"));
+        assertEquals(4, lines.size());
+        assertTrue(lines.contains("test_requests_total{cache=\"scene\",result=\"hit\"} 2"));
+        assertTrue(lines.contains("test_requests_total{cache=\"scene\",result=\"miss\"} 1"));
+    }
+
+    @Test
+    public void escapesLabelValues() {
+        Counter counter = new Counter("test_total", "Test", "name");
+        counter.inc(1, "a\\b\"c\nd");
+        assertTrue(write(counter).endsWith("\ntest_total{name=\"a\\\\b\\\"c\\nd\"} 1\n"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsWrongNumberOfLabelValues() {
+        new Counter("test_total", "Test", "kind").inc(1);
+    }
+
+    @Test
+    public void formatsNumbers() {
+        assertEquals("0", Metric.format(0));
+        assertEquals("-3", Metric.format(-3));
+        assertEquals("1048576", Metric.format(1 << 20));
+        assertEquals("0.1", Metric.format(0.1));
+        assertEquals("1.0E20", Metric.format(1e20));
+        assertEquals("NaN", Metric.format(Double.NaN));
+        assertEquals("Infinity", Metric.format(Double.POSITIVE_INFINITY));
+    }
+
+    @Test
+    public void servesScrape() throws IOException {
+        Metrics.recordCacheLookup("test", true);
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        MetricsServer server = new MetricsServer("127.0.0.1", port);
+        server.start();
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + port + "/metrics")
+                    .openConnection();
+            assertEquals(200, connection.getResponseCode());
+            assertEquals("text/plain; version=0.0.4; charset=utf-8", connection.getContentType());
+            String body;
+            try (InputStream in = connection.getInputStream()) {
+                body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            assertTrue(body.contains("# TYPE chunkycloud_phase_duration_seconds histogram\n"));
+            assertTrue(body.contains("\nchunkycloud_cache_requests_total{cache=\"test\",result=\"hit\"} "));
+            assertTrue(body.contains("\nchunkycloud_jvm_heap_bytes{area=\"used\"} "));
+
+            connection = (HttpURLConnection) new URL("http://127.0.0.1:" + port + "/metrics").openConnection();
+            connection.setRequestMethod("POST");
+            assertEquals(405, connection.getResponseCode());
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static String write(Metric<?> metric) {
+        StringBuilder out = new StringBuilder();
+        metric.write(out);
+        return out.toString();
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package de.lemaik.renderservice.renderer.rendering;
+
+import de.lemaik.renderservice.renderer.metrics.FlightRecorderEvents;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FlightRecorderEventsTest {
+    private static final String TASK_LEASED = "de.lemaik.renderservice.TaskLeased";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private RenderServerApiClient apiClient;
+
+    @Before
+    public void setUp() throws IOException {
+        apiClient = new RenderServerApiClient("http://127.0.0.1:1", "key", folder.newFolder(), 1024 * 1024) {
+            @Override
+            public CompletableFuture<NextTaskResponse> getNextTasks(int count, String jobId, int waitSeconds) {
+                return CompletableFuture.completedFuture(new NextTaskResponse(List.of(
+                        Tasks.create(1, "job-a", 100, new Tile(0, 0, 10, 10)),
+                        Tasks.create(2, "job-b", 250, new Tile(10, 0, 10, 10))), 25, -1));
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        FlightRecorderEvents.setEnabled(false);
+    }
+
+    @Test
+    public void recordsLeasedTasks() throws Exception {
+        FlightRecorderEvents.setEnabled(true);
+        List<RecordedEvent> events = record(TASK_LEASED);
+
+        assertEquals(2, events.size());
+        RecordedEvent first = events.get(0);
+        assertEquals(TASK_LEASED, first.getEventType().getName());
+        assertEquals("Task Leased", first.getEventType().getLabel());
+        assertEquals(List.of("ChunkyCloud", "Render Node"), first.getEventType().getCategoryNames());
+        assertEquals(1, first.getInt("taskId"));
+        assertEquals("job-a", first.getString("jobId"));
+        assertEquals(100, first.getInt("spp"));
+        RecordedEvent second = events.get(1);
+        assertEquals(2, second.getInt("taskId"));
+        assertEquals("job-b", second.getString("jobId"));
+        assertEquals(250, second.getInt("spp"));
+    }
+
+    @Test
+    public void recordsNothingUnlessEnabled() throws Exception {
+        assertTrue(record(TASK_LEASED).isEmpty());
+
+        FlightRecorderEvents.setEnabled(true);
+        FlightRecorderEvents.setEnabled(false);
+        assertTrue(record(TASK_LEASED).isEmpty());
+    }
+
+    /**
+     * Lease tasks while recording the given event.
+     *
+     * @param eventName name of the event to record
+     * @return recorded events, in the order they were committed
+     */
+    private List<RecordedEvent> record(String eventName) throws Exception {
+        Path file = folder.newFile().toPath();
+        try (Recording recording = new Recording()) {
+            recording.enable(eventName);
+            recording.start();
+            // a new poller has no queued tasks, so it leases from the API
+            new TaskPoller(apiClient, 25, 2).poll();
+            recording.stop();
+            recording.dump(file);
+        }
+        List<RecordedEvent> events = new ArrayList<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+            if (event.getEventType().getName().equals(eventName)) {
+                events.add(event);
+            }
+        }
+        events.sort((a, b) -> a.getStartTime().compareTo(b.getStartTime()));
+        return events;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package de.lemaik.renderservice.renderer.rendering;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ProgressReporterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<Long> reportTimes = new CopyOnWriteArrayList<>();
+    private volatile RenderServerApiClient.ProgressReportResult reportResult = RenderServerApiClient.ProgressReportResult.OK;
+    private ProgressReporter reporter;
+
+    @Before
+    public void setUp() throws IOException {
+        RenderServerApiClient apiClient = new RenderServerApiClient("http://127.0.0.1:1", "key", folder.newFolder(),
+                1024 * 1024) {
+            @Override
+            public CompletableFuture<ProgressReportResult> reportTaskProgress(int taskId, int spp) {
+                reportTimes.add(System.currentTimeMillis());
+                return CompletableFuture.completedFuture(reportResult);
+            }
+        };
+        // never started, so it is not connected
+        reporter = new ProgressReporter(apiClient, new ControlChannel(apiClient));
+    }
+
+    @After
+    public void tearDown() {
+        reporter.shutdown();
+    }
+
+    @Test
+    public void reportsEveryFivePercent() {
+        // 10 of 100 spp in 10 s, so 5 spp take 5 s
+        assertEquals(5000, ProgressReporter.interval(100, 10, 10000, 30000));
+        assertEquals(20000, ProgressReporter.interval(1000, 10, 4000, 30000));
+    }
+
+    @Test
+    public void limitsInterval() {
+        assertEquals(1000, ProgressReporter.interval(100, 0, 10000, 30000));
+        assertEquals(1000, ProgressReporter.interval(100, 10, 0, 30000));
+        assertEquals(1000, ProgressReporter.interval(100, 50, 1000, 30000));
+        assertEquals(30000, ProgressReporter.interval(10000, 1, 10000, 30000));
+        assertEquals(5000, ProgressReporter.interval(10000, 1, 10000, 5000));
+    }
+
+    @Test
+    public void sendsHeartbeatWithoutControlChannel() throws InterruptedException {
+        Task task = Tasks.create(1, "job", 10000, new Tile(0, 0, 16, 16));
+        ProgressReporter.Reporting reporting = reporter.start(task, () -> 0, () -> {
+        });
+        Thread.sleep(6000);
+        reporting.stop();
+
+        // the spp didn't change, but aborts are only noticed by reports
+        assertEquals(2, reportTimes.size());
+        long interval = reportTimes.get(1) - reportTimes.get(0);
+        assertTrue("Heartbeat after " + interval + " ms", interval >= 5000 && interval < 5500);
+    }
+
+    @Test
+    public void abortsWhenTheApiStopsRendering() throws InterruptedException {
+        reportResult = RenderServerApiClient.ProgressReportResult.STOP_RENDERING;
+        CountDownLatch aborted = new CountDownLatch(1);
+        Task task = Tasks.create(1, "job", 100, new Tile(0, 0, 16, 16));
+        ProgressReporter.Reporting reporting = reporter.start(task, () -> 1, aborted::countDown);
+
+        assertTrue(aborted.await(5, TimeUnit.SECONDS));
+        reporting.stop();
+    }
+}
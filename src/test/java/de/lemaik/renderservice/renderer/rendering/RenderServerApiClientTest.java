@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package de.lemaik.renderservice.renderer.rendering;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RenderServerApiClientTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer server;
+    private RenderServerApiClient apiClient;
+    private volatile int status;
+    private volatile String body;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/nodes/me/tasks/next", this::handle);
+        server.start();
+        apiClient = new RenderServerApiClient("http://127.0.0.1:" + server.getAddress().getPort(), "key",
+                folder.newFolder(), 1024 * 1024);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void leasesSingleTask() throws Exception {
+        status = 200;
+        body = "{\"id\": 1, \"spp\": 100, \"job\": {\"id\": \"a\"}}";
+        NextTaskResponse response = apiClient.getNextTasks(1, null, 0).get(10, TimeUnit.SECONDS);
+
+        assertEquals(1, response.getTasks().size());
+        assertEquals(1, response.getTasks().get(0).getId());
+        assertEquals("a", response.getTasks().get(0).getJob().getId());
+    }
+
+    @Test
+    public void leasesMultipleTasks() throws Exception {
+        status = 200;
+        body = "[{\"id\": 1, \"job\": {\"id\": \"a\"}}, {\"id\": 2, \"job\": {\"id\": \"a\"}}]";
+        NextTaskResponse response = apiClient.getNextTasks(2, "a", 0).get(10, TimeUnit.SECONDS);
+
+        assertEquals(2, response.getTasks().size());
+        assertEquals(2, response.getTasks().get(1).getId());
+    }
+
+    @Test
+    public void treatsNoContentAsNoTask() throws Exception {
+        status = 204;
+        assertTrue(apiClient.getNextTasks(1, null, 0).get(10, TimeUnit.SECONDS).getTasks().isEmpty());
+    }
+
+    @Test
+    public void treatsEmptyBodyAsNoTask() throws Exception {
+        status = 200;
+        body = "";
+        assertTrue(apiClient.getNextTasks(1, null, 0).get(10, TimeUnit.SECONDS).getTasks().isEmpty());
+
+        body = "null";
+        assertTrue(apiClient.getNextTasks(1, null, 0).get(10, TimeUnit.SECONDS).getTasks().isEmpty());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (status == 204) {
+                exchange.sendResponseHeaders(204, -1);
+                return;
+            }
+            byte[] content = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, content.length == 0 ? -1 : content.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(content);
+            }
+        }
+    }
+}
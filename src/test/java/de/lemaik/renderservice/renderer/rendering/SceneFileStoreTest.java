@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package de.lemaik.renderservice.renderer.rendering;
+
+import de.lemaik.renderservice.renderer.util.FileUtil;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SceneFileStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path storeDirectory;
+    private SceneFileStore store;
+    private AtomicInteger downloads;
+
+    @Before
+    public void setUp() throws IOException {
+        storeDirectory = folder.newFolder("store").toPath();
+        store = new SceneFileStore(storeDirectory, 250);
+        downloads = new AtomicInteger();
+    }
+
+    @Test
+    public void linksDownloadedFiles() throws Exception {
+        byte[] content = content('a');
+        File target = fetch("http://localhost/a", null, content);
+
+        assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+        assertTrue(Files.exists(blob(content)));
+        assertEquals(2, ((Number) Files.getAttribute(target.toPath(), "unix:nlink")).intValue());
+    }
+
+    @Test
+    public void reusesFilesWithKnownHash() throws Exception {
+        byte[] content = content('a');
+        fetch("http://localhost/a", sha256(content), content);
+        File target = fetch("http://localhost/other-url", sha256(content), content);
+
+        assertEquals(1, downloads.get());
+        assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+    }
+
+    @Test
+    public void downloadsFilesWithoutHashAgain() throws Exception {
+        byte[] content = content('a');
+        fetch("http://localhost/a", null, content);
+        byte[] changed = content('b');
+        File target = fetch("http://localhost/a", null, changed);
+
+        assertEquals(2, downloads.get());
+        assertArrayEquals(changed, Files.readAllBytes(target.toPath()));
+    }
+
+    @Test(expected = Exception.class)
+    public void rejectsChecksumMismatch() throws Exception {
+        fetch("http://localhost/a", sha256(content('b')), content('a'));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedFiles() throws Exception {
+        byte[] a = content('a');
+        byte[] b = content('b');
+        byte[] c = content('c');
+        Files.delete(fetch("http://localhost/a", null, a).toPath());
+        Files.delete(fetch("http://localhost/b", null, b).toPath());
+        // a was used after b, so b is evicted when c exceeds the size budget
+        Files.setLastModifiedTime(blob(a), FileTime.fromMillis(2000));
+        Files.setLastModifiedTime(blob(b), FileTime.fromMillis(1000));
+        fetch("http://localhost/c", null, c);
+
+        assertTrue(Files.exists(blob(a)));
+        assertFalse(Files.exists(blob(b)));
+        assertTrue(Files.exists(blob(c)));
+    }
+
+    @Test
+    public void keepsLinkedFiles() throws Exception {
+        byte[] a = content('a');
+        byte[] b = content('b');
+        byte[] c = content('c');
+        // a stays linked into a task directory
+        File linked = fetch("http://localhost/a", null, a);
+        Files.delete(fetch("http://localhost/b", null, b).toPath());
+        Files.setLastModifiedTime(blob(a), FileTime.fromMillis(1000));
+        Files.setLastModifiedTime(blob(b), FileTime.fromMillis(2000));
+        fetch("http://localhost/c", null, c);
+
+        assertTrue(Files.exists(blob(a)));
+        assertTrue(linked.exists());
+        assertFalse(Files.exists(blob(b)));
+        assertTrue(Files.exists(blob(c)));
+    }
+
+    private File fetch(String url, String sha256, byte[] content) throws Exception {
+        File target = new File(folder.getRoot(), "target-" + downloads.get() + "-" + System.nanoTime());
+        return store.fetch(url, sha256, target, tmp -> {
+            downloads.incrementAndGet();
+            try {
+                Files.write(tmp.toPath(), content);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            // let the store hash the file itself
+            return CompletableFuture.completedFuture(null);
+        }).get();
+    }
+
+    private Path blob(byte[] content) {
+        return storeDirectory.resolve("blobs").resolve(sha256(content));
+    }
+
+    private static byte[] content(char c) {
+        return String.valueOf(c).repeat(100).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static String sha256(byte[] content) {
+        return HexFormat.of().formatHex(FileUtil.newSha256Digest().digest(content));
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package de.lemaik.renderservice.renderer.rendering;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+
+public class SceneJsonRewriterTest {
+    @Test
+    public void replacesNameAndSkymap() throws IOException {
+        assertEquals("{\"name\":\"scene\",\"sky\":{\"mode\":\"SKYMAP_PANORAMIC\",\"skymap\":\"/tmp/sky.png\"},"
+                        + "\"spp\":100}",
+                rewrite("{\"name\": \"My Scene\", \"sky\": {\"mode\": \"SKYMAP_PANORAMIC\", \"skymap\": \"a.png\"},"
+                        + " \"spp\": 100}", "/tmp/sky.png"));
+    }
+
+    @Test
+    public void insertsNameAndSkymap() throws IOException {
+        assertEquals("{\"spp\":100,\"name\":\"scene\",\"sky\":{\"skymap\":\"/tmp/sky.png\"}}",
+                rewrite("{\"spp\": 100}", "/tmp/sky.png"));
+        assertEquals("{\"sky\":{\"mode\":\"SIMULATED\",\"skymap\":\"/tmp/sky.png\"},\"name\":\"scene\"}",
+                rewrite("{\"sky\": {\"mode\": \"SIMULATED\"}}", "/tmp/sky.png"));
+    }
+
+    @Test
+    public void keepsSkyWithoutSkymap() throws IOException {
+        assertEquals("{\"name\":\"scene\",\"sky\":{\"skymap\":\"a.png\"}}",
+                rewrite("{\"name\": \"x\", \"sky\": {\"skymap\": \"a.png\"}}", null));
+        assertEquals("{\"name\":\"scene\"}", rewrite("{}", null));
+    }
+
+    @Test
+    public void replacesSkyThatIsNoObject() throws IOException {
+        assertEquals("{\"sky\":{\"skymap\":\"/tmp/sky.png\"},\"name\":\"scene\"}",
+                rewrite("{\"sky\": null}", "/tmp/sky.png"));
+        assertEquals("{\"sky\":{\"skymap\":\"/tmp/sky.png\"},\"name\":\"scene\"}",
+                rewrite("{\"sky\": \"simulated\"}", "/tmp/sky.png"));
+        assertEquals("{\"sky\":null,\"name\":\"scene\"}", rewrite("{\"sky\": null}", null));
+    }
+
+    @Test
+    public void copiesNumbersVerbatim() throws IOException {
+        assertEquals("{\"a\":0.1,\"b\":1.0E-7,\"c\":12345678901234567890,\"d\":-0.0,\"e\":1.00,\"name\":\"scene\"}",
+                rewrite("{\"a\": 0.1, \"b\": 1.0E-7, \"c\": 12345678901234567890, \"d\": -0.0, \"e\": 1.00}", null));
+    }
+
+    @Test
+    public void copiesNestedValues() throws IOException {
+        assertEquals("{\"chunkList\":[[0,1],[-1,2]],\"camera\":{\"name\":\"cam\",\"fov\":70,\"dof\":\"Infinity\"},"
+                        + "\"transparentSky\":false,\"x\":null,\"name\":\"scene\"}",
+                rewrite("{\"chunkList\": [[0, 1], [-1, 2]], \"camera\": {\"name\": \"cam\", \"fov\": 70,"
+                        + " \"dof\": \"Infinity\"}, \"transparentSky\": false, \"x\": null}", null));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsDescriptionsThatAreNoObject() throws IOException {
+        rewrite("[]", null);
+    }
+
+    private static String rewrite(String scene, String skymap) throws IOException {
+        StringWriter out = new StringWriter();
+        JsonReader reader = new JsonReader(new StringReader(scene));
+        // like the scene download
+        reader.setLenient(true);
+        SceneJsonRewriter.rewrite(reader, new JsonWriter(out), "scene", skymap);
+        return out.toString();
+    }
+}
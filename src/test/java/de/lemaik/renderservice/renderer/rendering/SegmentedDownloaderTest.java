@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package de.lemaik.renderservice.renderer.rendering;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.OkHttpClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentedDownloaderTest {
+    // large enough for two segments of 10 MB
+    private static final int LENGTH = 20_000_000;
+    private static final long SECOND_SEGMENT = LENGTH / 2;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer server;
+    private String url;
+    private SegmentedDownloader downloader;
+    private volatile byte[] data;
+    private volatile String etag;
+    private volatile boolean rangesSupported = true;
+    private volatile CountDownLatch gate;
+    private final Map<Long, Fault> faults = new ConcurrentHashMap<>();
+    private final List<Long> requestedStarts = new CopyOnWriteArrayList<>();
+    private final AtomicLong servedBytes = new AtomicLong();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    private enum Fault {
+        /**
+         * Close the connection after half of the requested bytes.
+         */
+        DROP,
+        /**
+         * Stop sending after a few bytes without closing the connection.
+         */
+        STALL,
+        /**
+         * Respond with bytes from the start of the file.
+         */
+        WRONG_RANGE
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        data = randomData(1);
+        etag = "\"v1\"";
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/file", this::handle);
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/file";
+        OkHttpClient client = new OkHttpClient.Builder().readTimeout(0, TimeUnit.SECONDS).build();
+        downloader = new SegmentedDownloader(client, 4, 1000, 1024);
+    }
+
+    @After
+    public void tearDown() {
+        stopped.countDown();
+        CountDownLatch currentGate = gate;
+        if (currentGate != null) {
+            currentGate.countDown();
+        }
+        server.stop(0);
+    }
+
+    @Test
+    public void downloadsSegments() throws Exception {
+        File file = folder.newFile("file");
+        downloader.download(url, file).get();
+
+        assertArrayEquals(data, Files.readAllBytes(file.toPath()));
+        assertTrue(requestedStarts.contains(SECOND_SEGMENT));
+    }
+
+    @Test
+    public void resumesDroppedAndStalledSegments() throws Exception {
+        faults.put(0L, Fault.STALL);
+        faults.put(SECOND_SEGMENT, Fault.DROP);
+        File file = folder.newFile("file");
+        downloader.download(url, file).get(1, TimeUnit.MINUTES);
+
+        assertArrayEquals(data, Files.readAllBytes(file.toPath()));
+        assertTrue(faults.isEmpty());
+        // both segments continued where they stopped instead of starting over
+        assertEquals(4, requestedStarts.size());
+        assertEquals(2, requestedStarts.stream().filter(start -> start != 0 && start != SECOND_SEGMENT).count());
+    }
+
+    @Test
+    public void rejectsRangesWithWrongStart() throws Exception {
+        faults.put(SECOND_SEGMENT, Fault.WRONG_RANGE);
+        File file = folder.newFile("file");
+        downloader.download(url, file).get(1, TimeUnit.MINUTES);
+
+        assertArrayEquals(data, Files.readAllBytes(file.toPath()));
+        assertTrue(faults.isEmpty());
+    }
+
+    @Test
+    public void resumesPartFile() throws Exception {
+        File file = folder.newFile("file");
+        interruptDownload(file);
+
+        requestedStarts.clear();
+        downloader.download(url, file).get(1, TimeUnit.MINUTES);
+
+        assertArrayEquals(data, Files.readAllBytes(file.toPath()));
+        // no probe request and no segment started from its beginning
+        assertEquals(2, requestedStarts.size());
+        assertTrue(requestedStarts.stream().allMatch(start -> start != 0 && start != SECOND_SEGMENT));
+        assertTrue(!new File(file.getPath() + ".part").exists() && !new File(file.getPath() + ".part.json").exists());
+    }
+
+    @Test
+    public void restartsIfTheFileChanged() throws Exception {
+        File file = folder.newFile("file");
+        interruptDownload(file);
+
+        data = randomData(2);
+        etag = "\"v2\"";
+        downloader.download(url, file).get(1, TimeUnit.MINUTES);
+
+        assertArrayEquals(data, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void downloadsWholeFileWithoutRangeSupport() throws Exception {
+        rangesSupported = false;
+        faults.put(0L, Fault.DROP);
+        File file = folder.newFile("file");
+        downloader.download(url, file).get(1, TimeUnit.MINUTES);
+
+        assertArrayEquals(data, Files.readAllBytes(file.toPath()));
+        assertTrue(faults.isEmpty());
+    }
+
+    /**
+     * Start a download and cancel it after both segments received some data, keeping the partial download.
+     */
+    private void interruptDownload(File file) throws Exception {
+        gate = new CountDownLatch(1);
+        CancellableDownload<File> download = downloader.download(url, file);
+        long deadline = System.currentTimeMillis() + 10000;
+        while (servedBytes.get() < 2 * 1024 * 1024 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(200);
+        download.cancel(true);
+        download.whenStopped().get(10, TimeUnit.SECONDS);
+        gate.countDown();
+        gate = null;
+        assertTrue(new File(file.getPath() + ".part").exists());
+        assertTrue(new File(file.getPath() + ".part.json").exists());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        byte[] content = data;
+        exchange.getResponseHeaders().set("ETag", etag);
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        try (exchange) {
+            if (range == null || !rangesSupported) {
+                exchange.sendResponseHeaders(200, content.length);
+                send(exchange.getResponseBody(), content, 0, content.length, faults.remove(0L));
+                return;
+            }
+            String[] bounds = range.substring("bytes=".length()).split("-");
+            long start = Long.parseLong(bounds[0]);
+            long end = Math.min(Long.parseLong(bounds[1]), content.length - 1);
+            boolean probe = start == 0 && end == 0;
+            if (!probe) {
+                requestedStarts.add(start);
+            }
+            Fault fault = probe ? null : faults.remove(start);
+            long rangeStart = fault == Fault.WRONG_RANGE ? 0 : start;
+            long rangeEnd = rangeStart + end - start;
+            exchange.getResponseHeaders().set("Content-Range",
+                    "bytes " + rangeStart + "-" + rangeEnd + "/" + content.length);
+            exchange.sendResponseHeaders(206, rangeEnd - rangeStart + 1);
+            send(exchange.getResponseBody(), content, (int) rangeStart, (int) (rangeEnd + 1), fault);
+        }
+    }
+
+    private void send(OutputStream out, byte[] content, int start, int end, Fault fault) throws IOException {
+        int position = start;
+        int limit = fault == Fault.DROP ? start + (end - start) / 2 : end;
+        CountDownLatch currentGate = gate;
+        while (position < limit) {
+            int count = Math.min(64 * 1024, limit - position);
+            out.write(content, position, count);
+            out.flush();
+            position += count;
+            servedBytes.addAndGet(count);
+            if (fault == Fault.STALL && position - start >= 64 * 1024) {
+                awaitQuietly(stopped);
+                return;
+            }
+            if (currentGate != null && position - start >= 1024 * 1024) {
+                awaitQuietly(currentGate);
+                currentGate = null;
+            }
+        }
+        if (fault == Fault.DROP) {
+            throw new IOException("Dropping the connection");
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static byte[] randomData(long seed) {
+        byte[] data = new byte[LENGTH];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+}
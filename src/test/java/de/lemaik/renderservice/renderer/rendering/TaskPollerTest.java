@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package de.lemaik.renderservice.renderer.rendering;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TaskPollerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Queue<NextTaskResponse> responses = new ArrayDeque<>();
+    private final List<String> requests = new ArrayList<>();
+    private final List<List<Integer>> releases = new ArrayList<>();
+    private RenderServerApiClient apiClient;
+
+    @Before
+    public void setUp() throws IOException {
+        apiClient = new RenderServerApiClient("http://127.0.0.1:1", "key", folder.newFolder(), 1024 * 1024) {
+            @Override
+            public CompletableFuture<NextTaskResponse> getNextTasks(int count, String jobId, int waitSeconds) {
+                requests.add(count + " " + jobId);
+                return CompletableFuture.completedFuture(responses.remove());
+            }
+
+            @Override
+            public CompletableFuture<Void> releaseTasks(Collection<Integer> taskIds) {
+                releases.add(new ArrayList<>(taskIds));
+                return CompletableFuture.completedFuture(null);
+            }
+        };
+    }
+
+    @Test
+    public void backsOffExponentiallyWithJitter() {
+        TaskPoller poller = new TaskPoller(apiClient, 0, 1);
+        long[] backoffs = {1000, 2000, 4000, 8000, 10000, 10000};
+        for (long backoff : backoffs) {
+            long delay = poller.nextBackoffDelay();
+            assertTrue("Delay " + delay + " for backoff " + backoff, delay >= backoff / 2 && delay <= backoff);
+        }
+    }
+
+    @Test
+    public void spreadsDelaysOfIdleNodes() {
+        Set<Long> delays = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            delays.add(new TaskPoller(apiClient, 0, 1).nextBackoffDelay());
+        }
+        // nodes that start polling at the same time don't poll in lockstep
+        assertTrue(delays.size() > 50);
+    }
+
+    @Test
+    public void resetsBackoffAfterTask() throws Exception {
+        TaskPoller poller = new TaskPoller(apiClient, 0, 1);
+        poller.nextBackoffDelay();
+        poller.nextBackoffDelay();
+        responses.add(new NextTaskResponse(List.of(task(1, "job")), -1, -1));
+        poller.poll();
+
+        assertTrue(poller.nextBackoffDelay() <= 1000);
+    }
+
+    @Test
+    public void pollsAgainRightAwayWhenLongPolling() throws Exception {
+        TaskPoller poller = new TaskPoller(apiClient, 25, 1);
+        for (int i = 0; i < 10; i++) {
+            responses.add(new NextTaskResponse(Collections.emptyList(), 25, -1));
+        }
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 10; i++) {
+            assertNull(poller.poll());
+        }
+        assertTrue(System.currentTimeMillis() - start < 500);
+    }
+
+    @Test
+    public void waitsForRetryAfter() throws Exception {
+        TaskPoller poller = new TaskPoller(apiClient, 25, 1);
+        responses.add(new NextTaskResponse(Collections.emptyList(), 25, 300));
+        long start = System.currentTimeMillis();
+        assertNull(poller.poll());
+        assertTrue(System.currentTimeMillis() - start >= 300);
+    }
+
+    @Test
+    public void queuesLeasedTasks() throws Exception {
+        TaskPoller poller = new TaskPoller(apiClient, 25, 3);
+        responses.add(new NextTaskResponse(List.of(task(1, "a"), task(2, "a"), task(3, "a")), 25, -1));
+        responses.add(new NextTaskResponse(List.of(task(4, "a")), 25, -1));
+
+        assertEquals(1, poller.poll().getId());
+        assertEquals(2, poller.poll().getId());
+        assertEquals(3, poller.poll().getId());
+        assertEquals(4, poller.poll().getId());
+        // the queued tasks were returned without asking the API, which then prefers the job of the previous task
+        assertEquals(List.of("3 null", "3 a"), requests);
+    }
+
+    @Test
+    public void releasesQueuedTasksOfJob() throws Exception {
+        TaskPoller poller = new TaskPoller(apiClient, 25, 4);
+        responses.add(new NextTaskResponse(List.of(task(1, "a"), task(2, "b"), task(3, "a"), task(4, "b")), 25, -1));
+        assertEquals(1, poller.poll().getId());
+
+        poller.release("a");
+        assertEquals(List.of(List.of(3)), releases);
+        assertEquals(2, poller.poll().getId());
+
+        poller.releaseAll();
+        assertEquals(List.of(List.of(3), List.of(4)), releases);
+        poller.releaseAll();
+        assertEquals(2, releases.size());
+    }
+
+    @Test
+    public void releasesGivenTasks() {
+        TaskPoller poller = new TaskPoller(apiClient, 25, 1);
+        poller.release(List.of(task(1, "a"), task(2, "a")));
+        poller.release(Collections.emptyList());
+
+        assertEquals(List.of(List.of(1, 2)), releases);
+    }
+
+    @Test
+    public void takesTasksThatFormARectangle() throws Exception {
+        TaskPoller poller = new TaskPoller(apiClient, 25, 6);
+        responses.add(new NextTaskResponse(List.of(
+                Tasks.create(1, "a", 100, new Tile(0, 0, 10, 10)),
+                Tasks.create(2, "a", 100, new Tile(10, 0, 10, 10)),
+                Tasks.create(3, "a", 100, new Tile(0, 10, 10, 10)),
+                Tasks.create(4, "a", 100, new Tile(10, 10, 10, 10)),
+                // would extend the rectangle to an L shape
+                Tasks.create(5, "a", 100, new Tile(20, 0, 10, 10)),
+                // different spp
+                Tasks.create(6, "a", 200, new Tile(0, 20, 10, 10))), 25, -1));
+        Task task = poller.poll();
+
+        List<Task> merged = poller.takeMergeable(task);
+        assertEquals(List.of(1, 2, 3, 4), merged.stream().map(Task::getId).sorted().toList());
+        assertEquals(1, merged.get(0).getId());
+        assertEquals(5, poller.poll().getId());
+        assertEquals(6, poller.poll().getId());
+    }
+
+    @Test
+    public void takesNoTasksOfOtherJobs() throws Exception {
+        TaskPoller poller = new TaskPoller(apiClient, 25, 2);
+        responses.add(new NextTaskResponse(List.of(
+                Tasks.create(1, "a", 100, new Tile(0, 0, 10, 10)),
+                Tasks.create(2, "b", 100, new Tile(10, 0, 10, 10))), 25, -1));
+        Task task = poller.poll();
+
+        assertEquals(List.of(task), poller.takeMergeable(task));
+        assertEquals(2, poller.poll().getId());
+    }
+
+    private static Task task(int id, String jobId) {
+        return Tasks.create(id, jobId, 100, new Tile(0, 0, 16, 16));
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package de.lemaik.renderservice.renderer.rendering;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+/**
+ * Helpers for creating tasks in tests.
+ */
+final class Tasks {
+    private static final Gson gson = new Gson();
+
+    private Tasks() {
+    }
+
+    /**
+     * Create a task like the API would send it.
+     *
+     * @param id    task ID
+     * @param jobId job ID
+     * @param spp   target spp
+     * @param tile  tile of the task
+     * @return task
+     */
+    static Task create(int id, String jobId, int spp, Tile tile) {
+        JsonObject job = new JsonObject();
+        job.addProperty("id", jobId);
+        job.addProperty("width", 1920);
+        job.addProperty("height", 1080);
+        JsonObject task = new JsonObject();
+        task.addProperty("id", id);
+        task.addProperty("spp", spp);
+        task.add("tile", gson.toJsonTree(tile));
+        task.add("job", job);
+        return gson.fromJson(task, Task.class);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2026 leMaik and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package de.lemaik.renderservice.renderer.rendering;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TileTest {
+    @Test
+    public void detectsOverlaps() {
+        Tile tile = new Tile(0, 0, 10, 10);
+        assertTrue(tile.intersects(new Tile(5, 5, 10, 10)));
+        assertTrue(tile.intersects(new Tile(2, 2, 2, 2)));
+        // adjacent tiles only touch
+        assertFalse(tile.intersects(new Tile(10, 0, 10, 10)));
+        assertFalse(tile.intersects(new Tile(0, 10, 10, 10)));
+    }
+
+    @Test
+    public void detectsContainedTiles() {
+        Tile tile = new Tile(10, 10, 20, 20);
+        assertTrue(tile.contains(tile));
+        assertTrue(tile.contains(new Tile(20, 20, 10, 10)));
+        assertFalse(tile.contains(new Tile(20, 20, 11, 10)));
+        assertFalse(tile.contains(new Tile(9, 10, 5, 5)));
+    }
+
+    @Test
+    public void computesBoundingBox() {
+        assertTile(0, 0, 30, 25, Tile.boundingBox(new Tile(0, 5, 10, 20), new Tile(20, 0, 10, 10)));
+    }
+
+    @Test
+    public void mergesTilesThatFormARectangle() {
+        assertTile(0, 0, 20, 20, Tile.union(List.of(
+                new Tile(0, 0, 10, 10), new Tile(10, 0, 10, 10),
+                new Tile(0, 10, 10, 10), new Tile(10, 10, 10, 10))));
+        // tiles of different sizes
+        assertTile(5, 5, 30, 10, Tile.union(List.of(new Tile(5, 5, 10, 10), new Tile(15, 5, 20, 10))));
+        assertTile(0, 0, 10, 10, Tile.union(List.of(new Tile(0, 0, 10, 10))));
+    }
+
+    @Test
+    public void doesNotMergeOtherTiles() {
+        assertNull(Tile.union(Collections.emptyList()));
+        // gap
+        assertNull(Tile.union(List.of(new Tile(0, 0, 10, 10), new Tile(11, 0, 10, 10))));
+        // L shape
+        assertNull(Tile.union(List.of(new Tile(0, 0, 10, 10), new Tile(10, 0, 10, 10), new Tile(0, 10, 10, 10))));
+        // overlap
+        assertNull(Tile.union(List.of(new Tile(0, 0, 20, 10), new Tile(0, 0, 10, 20), new Tile(10, 10, 10, 10))));
+        // overlap, although the tiles have the area of their bounding box
+        assertNull(Tile.union(List.of(new Tile(0, 0, 10, 10), new Tile(5, 0, 10, 5), new Tile(15, 0, 5, 10))));
+    }
+
+    private static void assertTile(int x, int y, int width, int height, Tile tile) {
+        assertEquals(x, tile.getX());
+        assertEquals(y, tile.getY());
+        assertEquals(width, tile.getWidth());
+        assertEquals(height, tile.getHeight());
+    }
+}